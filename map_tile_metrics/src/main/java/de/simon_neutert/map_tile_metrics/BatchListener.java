@@ -0,0 +1,33 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * Receives the results of a {@link BatchMetricsEngine} run as soon as each
+ * source is done.
+ *
+ * <p>
+ * The methods are called from the worker threads, concurrently and in no
+ * particular order, so implementations must be thread-safe.
+ * </p>
+ *
+ * @see BatchMetricsEngine
+ *
+ */
+public interface BatchListener {
+    /**
+     * Called when the metrics of a source are calculated.
+     *
+     * @param result the metrics of the source
+     */
+    void completed(BatchResult result);
+
+    /**
+     * Called when loading a source or calculating its metrics failed, or when
+     * {@link #completed(BatchResult)} threw for the source. Errors such as an
+     * {@link OutOfMemoryError} are reported here as well, and are rethrown on
+     * the worker thread afterwards.
+     *
+     * @param sourceId the id of the source
+     * @param error    the cause
+     */
+    void failed(String sourceId, Throwable error);
+}
@@ -0,0 +1,292 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The BatchMetricsEngine calculates the clusters and max squares of many
+ * independent {@link TileSource}s under a global memory budget.
+ *
+ * <p>
+ * Every source reserves {@link #BYTES_PER_TILE} bytes per estimated tile of
+ * the budget before it is loaded, and releases them when its result has been
+ * passed to the {@link BatchListener}. The sources are admitted in their
+ * order, but when the next source does not fit into the remaining budget,
+ * smaller sources further back are admitted first, so small users do not
+ * queue behind big ones. To keep big sources from starving, the next source
+ * can only be passed {@link #MAX_BYPASSES} times. A source larger than the
+ * whole budget runs alone.
+ * </p>
+ *
+ * <p>
+ * On Java 21 and later the sources run on virtual threads, one per admitted
+ * source. On older runtimes they run on a pool with one thread per processor.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * try (BatchMetricsEngine engine = new BatchMetricsEngine(2L << 30)) {
+ *     engine.run(sources, new BatchListener() {
+ *         public void completed(BatchResult result) {
+ *             store(result);
+ *         }
+ *
+ *         public void failed(String sourceId, Throwable error) {
+ *             log(sourceId, error);
+ *         }
+ *     });
+ * }
+ * }
+ * </pre>
+ *
+ * @see TileSource
+ * @see BatchListener
+ *
+ */
+public class BatchMetricsEngine implements AutoCloseable {
+    /**
+     * The estimated peak heap needed per tile while calculating the metrics of
+     * a source, covering the TileSet, the cluster tiles and their labels.
+     */
+    public static final long BYTES_PER_TILE = 160;
+    /**
+     * How often the next source can be passed by smaller sources before no
+     * other source is admitted until it fits.
+     */
+    public static final int MAX_BYPASSES = 64;
+    /**
+     * How many waiting sources are looked at for one that fits.
+     */
+    static final int LOOKAHEAD = 256;
+
+    private final long memoryBudget;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+
+    /**
+     * Constructs a new BatchMetricsEngine running on virtual threads if the
+     * runtime supports them.
+     *
+     * @param memoryBudget the bytes all running sources may reserve together
+     */
+    public BatchMetricsEngine(long memoryBudget) {
+        this(memoryBudget, newExecutor(), true);
+    }
+
+    /**
+     * Constructs a new BatchMetricsEngine running on the given executor, which
+     * is not shut down by {@link #close()}.
+     *
+     * @param memoryBudget the bytes all running sources may reserve together
+     * @param executor     the executor to run the sources on
+     */
+    public BatchMetricsEngine(long memoryBudget, ExecutorService executor) {
+        this(memoryBudget, executor, false);
+    }
+
+    private BatchMetricsEngine(long memoryBudget, ExecutorService executor, boolean ownsExecutor) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget must be positive");
+        }
+        this.memoryBudget = memoryBudget;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Calculates the metrics of all sources, passing each result to the
+     * listener as soon as it is done. Returns when all sources of this run
+     * are done. Concurrent runs on the same engine share its memory budget,
+     * but each only waits for its own sources.
+     *
+     * @param sources  the sources
+     * @param listener receives the results
+     * @throws InterruptedException if interrupted while waiting for the memory
+     *                              budget, sources already started keep running
+     */
+    public void run(Collection<? extends TileSource> sources, BatchListener listener) throws InterruptedException {
+        TileSource[] waiting = sources.toArray(new TileSource[0]);
+        long[] reservations = new long[waiting.length];
+        for (int i = 0; i < waiting.length; i++) {
+            try {
+                long bytes = (long) waiting[i].estimatedTileCount() * BYTES_PER_TILE;
+                reservations[i] = Math.min(Math.max(bytes, BYTES_PER_TILE), memoryBudget);
+            } catch (IOException | RuntimeException e) {
+                listener.failed(waiting[i].id(), e);
+                waiting[i] = null;
+            }
+        }
+
+        Run run = new Run();
+        int next = 0;
+        int bypasses = 0;
+        lock.lock();
+        try {
+            while (true) {
+                while (next < waiting.length && waiting[next] == null) {
+                    next++;
+                    bypasses = 0;
+                }
+                if (next == waiting.length) {
+                    break;
+                }
+                int admitted = admit(waiting, reservations, next, bypasses < MAX_BYPASSES);
+                if (admitted < 0) {
+                    released.await();
+                    continue;
+                }
+                if (admitted != next) {
+                    bypasses++;
+                }
+                start(run, waiting[admitted], reservations[admitted], listener);
+                waiting[admitted] = null;
+            }
+            while (run.runningSources > 0) {
+                released.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the first waiting source that fits into the remaining budget.
+     *
+     * @return the index of the source, or -1 if none fits
+     */
+    private int admit(TileSource[] waiting, long[] reservations, int next, boolean mayBypass) {
+        int looked = 0;
+        for (int i = next; i < waiting.length && looked < LOOKAHEAD; i++) {
+            if (waiting[i] == null) {
+                continue;
+            }
+            if (reservedBytes + reservations[i] <= memoryBudget) {
+                return i;
+            }
+            if (!mayBypass) {
+                return -1;
+            }
+            looked++;
+        }
+        return -1;
+    }
+
+    private void start(Run run, TileSource source, long reservation, BatchListener listener) {
+        reservedBytes += reservation;
+        run.runningSources++;
+        try {
+            executor.execute(() -> {
+                try {
+                    calculate(source, listener);
+                } finally {
+                    release(run, reservation);
+                }
+            });
+        } catch (RuntimeException e) {
+            reservedBytes -= reservation;
+            run.runningSources--;
+            listener.failed(source.id(), e);
+        }
+    }
+
+    private void calculate(TileSource source, BatchListener listener) {
+        BatchResult result;
+        try {
+            long start = System.nanoTime();
+            TileSet tiles = source.load();
+            HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+            ArrayList<HashMap<Point, Integer>> maxSquares = new MaxSquares(clusters.get("clusters"), tiles).calculate();
+            result = new BatchResult(
+                    source.id(),
+                    tiles.size(),
+                    clusters.get("clusters").size(),
+                    clusters.get("maxClusters"),
+                    maxSquares,
+                    System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            listener.failed(source.id(), e);
+            return;
+        } catch (Error e) {
+            listener.failed(source.id(), e);
+            throw e;
+        }
+        try {
+            listener.completed(result);
+        } catch (RuntimeException e) {
+            listener.failed(source.id(), e);
+        } catch (Error e) {
+            listener.failed(source.id(), e);
+            throw e;
+        }
+    }
+
+    private void release(Run run, long reservation) {
+        lock.lock();
+        try {
+            reservedBytes -= reservation;
+            run.runningSources--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes reserved by the sources running right now
+     */
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes all running sources may reserve together
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The sources of one {@link #run} that are still running, guarded by the
+     * engine's lock.
+     */
+    private static final class Run {
+        int runningSources;
+    }
+
+    /**
+     * Shuts the executor down if it was created by this engine.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A record holding the metrics of one {@link TileSource} calculated by the
+ * {@link BatchMetricsEngine}.
+ *
+ * @param sourceId     the id of the source
+ * @param tileCount    the number of tiles of the source
+ * @param clusterCount the number of clusters
+ * @param maxClusters  the clusters of the max size
+ * @param maxSquares   the max squares in the shape
+ *                     {@link MaxSquares#calculate()} returns
+ * @param elapsedNanos the time spent loading and calculating, without waiting
+ *                     for the memory budget
+ */
+public record BatchResult(
+        String sourceId,
+        int tileCount,
+        int clusterCount,
+        ArrayList<TileSet> maxClusters,
+        ArrayList<HashMap<Point, Integer>> maxSquares,
+        long elapsedNanos) {
+}
@@ -0,0 +1,65 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Signals one or more running calculations to stop, e.g. once the request
+ * they serve is abandoned.
+ *
+ * <p>
+ * A token can only be cancelled once and never reset. Use one token per
+ * request.
+ * </p>
+ *
+ * @see ProgressiveTileMetrics
+ *
+ */
+public final class CancellationToken {
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final CopyOnWriteArrayList<Runnable> callbacks = new CopyOnWriteArrayList<Runnable>();
+
+    /**
+     * Cancels all calculations using this token.
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * @return true if the token was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Runs the callback once the token is cancelled, right away if it already
+     * is.
+     */
+    void onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (isCancelled()) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Forgets a callback passed to {@link #onCancel(Runnable)}, e.g. once the
+     * calculation it stops is done.
+     */
+    void removeOnCancel(Runnable callback) {
+        callbacks.remove(callback);
+    }
+
+    /**
+     * @return the number of callbacks waiting for the token to be cancelled
+     */
+    int callbackCount() {
+        return callbacks.size();
+    }
+}
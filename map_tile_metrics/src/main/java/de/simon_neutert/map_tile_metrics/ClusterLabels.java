@@ -0,0 +1,126 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Labels the clusters of a set of cluster tiles.
+ *
+ * <p>
+ * Every cluster tile is united with its right and lower neighbor in a
+ * {@link DisjointSets} forest indexed by the dense indices of the
+ * {@link TileSet}. Afterwards each tile gets the label of its cluster. Labels
+ * run from 0 to count() - 1 in the order in which the clusters are first
+ * reached when walking the tiles by index, which is the order in which a flood
+ * fill started from each tile would find them. The sizes of all clusters, and
+ * therefore the max clusters, are known without collecting any tiles.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * ClusterLabels labels = new ClusterLabels(clusterTiles);
+ * int largest = labels.maxSize();
+ * ArrayList<TileSet> clusters = labels.clusters(clusterTiles);
+ * }
+ * </pre>
+ *
+ * @see DisjointSets
+ * @see Clusters
+ *
+ */
+public class ClusterLabels {
+    private final int[] labels;
+    private final int[] sizes;
+    private final int maxSize;
+
+    /**
+     * Labels the clusters of the given cluster tiles.
+     *
+     * @param clusterTiles the cluster tiles
+     */
+    public ClusterLabels(TileSet clusterTiles) {
+        int tileCount = clusterTiles.size();
+        DisjointSets sets = new DisjointSets(tileCount);
+        for (int i = 0; i < tileCount; i++) {
+            int x = clusterTiles.xAt(i);
+            int y = clusterTiles.yAt(i);
+            int right = clusterTiles.indexOf(x + 1, y);
+            if (right >= 0) {
+                sets.union(i, right);
+            }
+            int lower = clusterTiles.indexOf(x, y + 1);
+            if (lower >= 0) {
+                sets.union(i, lower);
+            }
+        }
+
+        int[] rootLabels = new int[tileCount];
+        Arrays.fill(rootLabels, -1);
+        this.labels = new int[tileCount];
+        this.sizes = new int[sets.setCount()];
+        int count = 0;
+        int largest = 0;
+        for (int i = 0; i < tileCount; i++) {
+            int root = sets.find(i);
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = count;
+                sizes[count] = sets.setSize(root);
+                largest = Math.max(largest, sizes[count]);
+                count++;
+            }
+            labels[i] = rootLabels[root];
+        }
+        this.maxSize = largest;
+    }
+
+    /**
+     * @return the number of clusters
+     */
+    public int count() {
+        return sizes.length;
+    }
+
+    /**
+     * @param index the index of a tile in the labelled TileSet
+     * @return the label of the cluster the tile belongs to
+     */
+    public int label(int index) {
+        return labels[index];
+    }
+
+    /**
+     * @param label a cluster label
+     * @return the number of tiles of the cluster
+     */
+    public int size(int label) {
+        return sizes[label];
+    }
+
+    /**
+     * @return the size of the largest clusters, or 0 if there are no clusters
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Collects the tiles of every cluster.
+     *
+     * @param clusterTiles the labelled cluster tiles
+     * @return one TileSet per cluster, ordered by label
+     */
+    public ArrayList<TileSet> clusters(TileSet clusterTiles) {
+        ArrayList<TileSet> clusters = new ArrayList<TileSet>(count());
+        for (int label = 0; label < count(); label++) {
+            clusters.add(new TileSet(sizes[label]));
+        }
+        for (int i = 0; i < labels.length; i++) {
+            clusters.get(labels[i]).add(clusterTiles.xAt(i), clusterTiles.yAt(i));
+        }
+        return clusters;
+    }
+}
@@ -0,0 +1,280 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * The ClusterStatistics class summarizes the clusters of a set of tiles
+ * without collecting their tiles.
+ *
+ * <p>
+ * The tiles are scanned once, like {@link TileMetrics} does. Instead of
+ * copying every cluster tile into a {@link TileSet} per cluster, the scan
+ * only sums up the size, the bounding box and the coordinates of every
+ * cluster into a few arrays indexed by the cluster id, and counts the max
+ * squares lying within every cluster and its border. The number of clusters,
+ * the size histogram and the largest clusters are derived from these arrays.
+ * </p>
+ *
+ * <p>
+ * The cluster of every tile is kept, so the tiles of a single cluster can
+ * still be collected on demand with {@link #tiles(int)}.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * ClusterStatistics statistics = new ClusterStatistics(tiles);
+ * int clusterCount = statistics.clusterCount();
+ * ArrayList<ClusterSummary> largest = statistics.topK(10);
+ * TileSet largestTiles = statistics.tiles(largest.get(0).id());
+ * }
+ * </pre>
+ *
+ * @see ClusterSummary
+ * @see TileMetrics
+ *
+ */
+public class ClusterStatistics {
+    private final TileRows rows;
+    private final int[] labels;
+    private final SquareScan squares;
+
+    private final int clusterCount;
+    private final int[] firstTiles;
+    private final int[] sizes;
+    private final int[] minXs;
+    private final int[] minYs;
+    private final int[] maxXs;
+    private final int[] maxYs;
+    private final long[] sumXs;
+    private final long[] sumYs;
+    private final int[] squareCounts;
+    private int maxClusterSize;
+
+    /**
+     * Constructs a new ClusterStatistics object.
+     *
+     * @param tiles the tiles
+     */
+    public ClusterStatistics(TileSet tiles) {
+        this(new TileRows(tiles));
+    }
+
+    /**
+     * Constructs a new ClusterStatistics object.
+     *
+     * @param points the points
+     */
+    public ClusterStatistics(Collection<Point> points) {
+        this(new TileSet(points));
+    }
+
+    /**
+     * Constructs a new ClusterStatistics object for tiles already sorted into
+     * rows.
+     *
+     * @param rows the tiles
+     */
+    public ClusterStatistics(TileRows rows) {
+        this.rows = rows;
+        TileMetrics.Scan scan = new TileMetrics(rows).scan();
+        DisjointSets clusterSets = scan.clusterSets();
+        this.labels = scan.elements();
+        this.squares = scan.squares();
+
+        this.clusterCount = clusterSets.setCount();
+        this.firstTiles = new int[clusterCount];
+        this.sizes = new int[clusterCount];
+        this.minXs = new int[clusterCount];
+        this.minYs = new int[clusterCount];
+        this.maxXs = new int[clusterCount];
+        this.maxYs = new int[clusterCount];
+        this.sumXs = new long[clusterCount];
+        this.sumYs = new long[clusterCount];
+        this.squareCounts = new int[clusterCount];
+
+        int[] rootLabels = new int[clusterSets.size()];
+        Arrays.fill(rootLabels, -1);
+        int next = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] < 0) {
+                continue;
+            }
+            int root = clusterSets.find(labels[i]);
+            int label = rootLabels[root];
+            int x = rows.xAt(i);
+            int y = rows.yAt(i);
+            if (label < 0) {
+                label = next++;
+                rootLabels[root] = label;
+                firstTiles[label] = i;
+                minXs[label] = x;
+                minYs[label] = y;
+                maxXs[label] = x;
+                maxYs[label] = y;
+            }
+            labels[i] = label;
+            sizes[label]++;
+            minXs[label] = Math.min(minXs[label], x);
+            maxXs[label] = Math.max(maxXs[label], x);
+            maxYs[label] = y;
+            sumXs[label] += x;
+            sumYs[label] += y;
+            maxClusterSize = Math.max(maxClusterSize, sizes[label]);
+        }
+
+        for (long topLeft : squares.topLefts()) {
+            // the tile diagonally inside the corner of a square of at least 3
+            // tiles is a cluster tile
+            int inner = rows.indexOf(TileSet.x(topLeft) + 1, TileSet.y(topLeft) + 1);
+            squareCounts[labels[inner]]++;
+        }
+    }
+
+    /**
+     * @return the number of clusters
+     */
+    public int clusterCount() {
+        return clusterCount;
+    }
+
+    /**
+     * @return the size of the largest clusters, or 0 if there is no cluster
+     */
+    public int maxClusterSize() {
+        return maxClusterSize;
+    }
+
+    /**
+     * Returns the summary of a cluster.
+     *
+     * @param id the id of the cluster
+     * @return the summary of the cluster
+     * @throws IllegalArgumentException if there is no cluster with the id
+     */
+    public ClusterSummary summary(int id) {
+        checkId(id);
+        return new ClusterSummary(
+                id,
+                sizes[id],
+                minXs[id],
+                minYs[id],
+                maxXs[id],
+                maxYs[id],
+                (double) sumXs[id] / sizes[id],
+                (double) sumYs[id] / sizes[id],
+                squareCounts[id]);
+    }
+
+    /**
+     * @return the summaries of all clusters, ordered by their id
+     */
+    public ArrayList<ClusterSummary> summaries() {
+        ArrayList<ClusterSummary> summaries = new ArrayList<ClusterSummary>(clusterCount);
+        for (int id = 0; id < clusterCount; id++) {
+            summaries.add(summary(id));
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the summaries of the clusters of the max size, ordered by their
+     *         id
+     */
+    public ArrayList<ClusterSummary> maxClusters() {
+        ArrayList<ClusterSummary> maxClusters = new ArrayList<ClusterSummary>();
+        for (int id = 0; id < clusterCount; id++) {
+            if (sizes[id] == maxClusterSize) {
+                maxClusters.add(summary(id));
+            }
+        }
+        return maxClusters;
+    }
+
+    /**
+     * Returns the summaries of the largest clusters.
+     *
+     * @param k the number of clusters
+     * @return the summaries of the k largest clusters, largest first, clusters
+     *         of the same size ordered by their id
+     * @throws IllegalArgumentException if k is negative
+     */
+    public ArrayList<ClusterSummary> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        // sorts by size and then by descending id, so the largest clusters
+        // with the smallest ids end up last
+        long[] order = new long[clusterCount];
+        for (int id = 0; id < clusterCount; id++) {
+            order[id] = ((long) sizes[id] << 32) | (Integer.MAX_VALUE - id);
+        }
+        Arrays.sort(order);
+
+        int count = Math.min(k, clusterCount);
+        ArrayList<ClusterSummary> largest = new ArrayList<ClusterSummary>(count);
+        for (int i = 0; i < count; i++) {
+            largest.add(summary(Integer.MAX_VALUE - (int) order[clusterCount - 1 - i]));
+        }
+        return largest;
+    }
+
+    /**
+     * @return a TreeMap mapping every cluster size to the number of clusters
+     *         of that size
+     */
+    public TreeMap<Integer, Integer> sizeHistogram() {
+        TreeMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+        for (int id = 0; id < clusterCount; id++) {
+            histogram.merge(sizes[id], 1, Integer::sum);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the size of the max squares, or 0 if there is no square larger
+     *         than 3
+     */
+    public int maxSquareSize() {
+        return squares.maxSize();
+    }
+
+    /**
+     * @return the max squares in the shape {@link MaxSquares#calculate()}
+     *         returns
+     */
+    public ArrayList<HashMap<Point, Integer>> maxSquares() {
+        return squares.maxSquares();
+    }
+
+    /**
+     * Collects the tiles of a cluster.
+     *
+     * @param id the id of the cluster
+     * @return a new TileSet holding the tiles of the cluster
+     * @throws IllegalArgumentException if there is no cluster with the id
+     */
+    public TileSet tiles(int id) {
+        checkId(id);
+        TileSet tiles = new TileSet(sizes[id]);
+        for (int i = firstTiles[id]; tiles.size() < sizes[id]; i++) {
+            if (labels[i] == id) {
+                tiles.add(rows.xAt(i), rows.yAt(i));
+            }
+        }
+        return tiles;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= clusterCount) {
+            throw new IllegalArgumentException("no cluster with id " + id);
+        }
+    }
+}
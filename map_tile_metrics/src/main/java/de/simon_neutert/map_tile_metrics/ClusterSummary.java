@@ -0,0 +1,29 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record summarizing one cluster found by {@link ClusterStatistics},
+ * without holding its tiles.
+ *
+ * @param id             the id of the cluster, its position in row-major order
+ *                       of the first tiles of all clusters
+ * @param size           the number of tiles of the cluster
+ * @param minX           the smallest x-coordinate of the cluster's tiles
+ * @param minY           the smallest y-coordinate of the cluster's tiles
+ * @param maxX           the largest x-coordinate of the cluster's tiles
+ * @param maxY           the largest y-coordinate of the cluster's tiles
+ * @param centroidX      the mean x-coordinate of the cluster's tiles
+ * @param centroidY      the mean y-coordinate of the cluster's tiles
+ * @param maxSquareCount the number of max squares lying within the cluster
+ *                       and its border
+ */
+public record ClusterSummary(
+        int id,
+        int size,
+        int minX,
+        int minY,
+        int maxX,
+        int maxY,
+        double centroidX,
+        double centroidY,
+        int maxSquareCount) {
+}
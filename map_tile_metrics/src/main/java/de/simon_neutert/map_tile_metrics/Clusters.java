@@ -5,8 +5,8 @@ package de.simon_neutert.map_tile_metrics;
 
 import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.stream.Collectors;
 
 /**
  * The Clusters class provides methods to calculate and process clusters of
@@ -33,43 +33,136 @@ import java.util.stream.Collectors;
  * }
  * </pre>
  * 
+ * <p>
+ * For large inputs, construct it with a {@link TileSet} and call
+ * {@link #calculateTiles()} instead, which avoids boxing every tile into a
+ * Point.
+ * </p>
+ * 
  * @see Point
+ * @see TileSet
  * 
  */
 public class Clusters {
     private HashSet<Point> points;
+    private TileSet tiles;
 
     public Clusters(HashSet<Point> points) {
         this.points = points;
     }
 
+    public Clusters(TileSet tiles) {
+        this.tiles = tiles;
+    }
+
     public HashMap<String, ArrayList<HashSet<Point>>> calculate() {
         HashMap<String, ArrayList<HashSet<Point>>> results = new HashMap<>();
 
         // Calculate clusters
+        Instrumentation.Timer timer = Instrumentation.start(Phase.DETECT_CLUSTER_POINTS);
         HashSet<Point> clusterPoints = detectClusterPoints(getPoints());
-        ArrayList<HashSet<Point>> clusters = groupClusters(clusterPoints);
+        timer.stop(getPoints().size(), 0, getPoints().size());
+
+        timer = Instrumentation.start(Phase.GROUP_CLUSTERS);
+        Point[] orderedPoints = clusterPoints.toArray(new Point[0]);
+        TileSet clusterTiles = new TileSet(Arrays.asList(orderedPoints));
+        ClusterLabels labels = new ClusterLabels(clusterTiles);
+        ArrayList<HashSet<Point>> clusters = groupClusters(orderedPoints, labels);
+        timer.stop(orderedPoints.length, clusters.size(), orderedPoints.length);
         results.put("clusters", clusters);
 
         // Calculate max clusters
-        results.put("maxClusters", maxClusters(clusters));
+        results.put("maxClusters", maxClusters(clusters, labels));
 
         return results;
     }
 
-    ArrayList<HashSet<Point>> maxClusters(ArrayList<HashSet<Point>> clusters) {
-        if (clusters.isEmpty()) {
-            return clusters;
+    /**
+     * Calculates the clusters on a {@link TileSet}.
+     * 
+     * <p>
+     * Works like {@link #calculate()}, but neither the input nor the resulting
+     * clusters are materialized as {@code HashSet<Point>}.
+     * </p>
+     * 
+     * @return a HashMap with the keys "clusters" and "maxClusters"
+     */
+    public HashMap<String, ArrayList<TileSet>> calculateTiles() {
+        HashMap<String, ArrayList<TileSet>> results = new HashMap<>();
+
+        Instrumentation.Timer timer = Instrumentation.start(Phase.DETECT_CLUSTER_POINTS);
+        TileSet clusterTiles = detectClusterPoints(getTiles());
+        timer.stop(getTiles().size(), 0, getTiles().size());
+
+        timer = Instrumentation.start(Phase.GROUP_CLUSTERS);
+        ClusterLabels labels = new ClusterLabels(clusterTiles);
+        ArrayList<TileSet> clusters = labels.clusters(clusterTiles);
+        timer.stop(clusterTiles.size(), clusters.size(), clusterTiles.size());
+        results.put("clusters", clusters);
+        results.put("maxClusters", maxClusters(clusters, labels));
+
+        return results;
+    }
+
+    /**
+     * Calculates the clusters as runs of tiles.
+     *
+     * <p>
+     * The tiles are converted into {@link TileIntervals} once, the cluster
+     * tiles and the clusters are then found on the runs, so the work and the
+     * size of the results grow with the number of runs instead of the number
+     * of tiles.
+     * </p>
+     *
+     * @return a HashMap with the keys "clusters" and "maxClusters", the
+     *         clusters ordered by their first tile in row-major order
+     */
+    public HashMap<String, ArrayList<TileIntervals>> calculateIntervals() {
+        HashMap<String, ArrayList<TileIntervals>> results = new HashMap<>();
+
+        ArrayList<TileIntervals> clusters = TileIntervals.of(getTiles()).clusterTiles().components();
+        int maxSize = 0;
+        for (TileIntervals cluster : clusters) {
+            maxSize = Math.max(maxSize, cluster.size());
+        }
+        ArrayList<TileIntervals> maxClusters = new ArrayList<TileIntervals>();
+        for (TileIntervals cluster : clusters) {
+            if (cluster.size() == maxSize) {
+                maxClusters.add(cluster);
+            }
         }
+        results.put("clusters", clusters);
+        results.put("maxClusters", maxClusters);
 
-        int maxSizeCluster = clusters.stream()
-                .max((a, b) -> a.size() - b.size())
-                .get()
-                .size();
+        return results;
+    }
 
-        return clusters.stream()
-                .filter(cluster -> cluster.size() == maxSizeCluster)
-                .collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * Summarizes the clusters without collecting their tiles.
+     *
+     * <p>
+     * Use this instead of {@link #calculate()} when only the number, the sizes
+     * or the bounding boxes of the clusters are needed.
+     * </p>
+     *
+     * @return the cluster statistics
+     */
+    public ClusterStatistics calculateStatistics() {
+        return new ClusterStatistics(getTiles());
+    }
+
+    /**
+     * Picks the max clusters using the sizes known from labelling, without
+     * looking at the clusters themselves.
+     */
+    <T> ArrayList<T> maxClusters(ArrayList<T> clusters, ClusterLabels labels) {
+        ArrayList<T> maxClusters = new ArrayList<T>();
+        for (int label = 0; label < labels.count(); label++) {
+            if (labels.size(label) == labels.maxSize()) {
+                maxClusters.add(clusters.get(label));
+            }
+        }
+        return maxClusters;
     }
 
     HashSet<Point> detectClusterPoints(HashSet<Point> points) {
@@ -82,37 +175,38 @@ public class Clusters {
         return clusters;
     }
 
+    TileSet detectClusterPoints(TileSet tiles) {
+        TileSet clusterTiles = new TileSet();
+        for (int i = 0; i < tiles.size(); i++) {
+            int x = tiles.xAt(i);
+            int y = tiles.yAt(i);
+            if (tiles.contains(x - 1, y)
+                    && tiles.contains(x, y - 1)
+                    && tiles.contains(x + 1, y)
+                    && tiles.contains(x, y + 1)) {
+                clusterTiles.add(x, y);
+            }
+        }
+        return clusterTiles;
+    }
+
     ArrayList<HashSet<Point>> groupClusters(HashSet<Point> clusterPoints) {
-        ArrayList<HashSet<Point>> clusters = new ArrayList<>();
-        HashSet<Point> visited = new HashSet<>();
+        Point[] orderedPoints = clusterPoints.toArray(new Point[0]);
+        TileSet clusterTiles = new TileSet(Arrays.asList(orderedPoints));
+        return groupClusters(orderedPoints, new ClusterLabels(clusterTiles));
+    }
 
-        for (Point point : clusterPoints) {
-            if (visited.contains(point)) {
-                continue;
-            }
-            HashSet<Point> cluster = new HashSet<Point>();
-            HashSet<Point> toVisit = new HashSet<Point>();
-            toVisit.add(point);
-
-            while (!toVisit.isEmpty()) {
-                Point current = toVisit.iterator().next();
-                toVisit.remove(current);
-
-                if (visited.contains(current)) {
-                    continue;
-                }
-
-                visited.add(current);
-                cluster.add(current);
-
-                ArrayList<Point> neighbors = getNeighborsForPoint(current);
-                for (Point neighbor : neighbors) {
-                    if (clusterPoints.contains(neighbor)) {
-                        toVisit.add(neighbor);
-                    }
-                }
-            }
-            clusters.add(cluster);
+    ArrayList<TileSet> groupClusters(TileSet clusterTiles) {
+        return new ClusterLabels(clusterTiles).clusters(clusterTiles);
+    }
+
+    private ArrayList<HashSet<Point>> groupClusters(Point[] orderedPoints, ClusterLabels labels) {
+        ArrayList<HashSet<Point>> clusters = new ArrayList<>(labels.count());
+        for (int label = 0; label < labels.count(); label++) {
+            clusters.add(new HashSet<Point>(labels.size(label) * 2));
+        }
+        for (int i = 0; i < orderedPoints.length; i++) {
+            clusters.get(labels.label(i)).add(orderedPoints[i]);
         }
         return clusters;
     }
@@ -120,15 +214,11 @@ public class Clusters {
     ArrayList<Point> getNeighborsForPoint(Point point) {
         ArrayList<Point> neighbors = new ArrayList<Point>();
 
-        try {
+        if (point.x() > 0) {
             neighbors.add(new Point(point.x() - 1, point.y()));
-        } catch (Exception e) {
-            // skip this point
         }
-        try {
+        if (point.y() > 0) {
             neighbors.add(new Point(point.x(), point.y() - 1));
-        } catch (Exception e) {
-            // skip this point
         }
         neighbors.add(new Point(point.x() + 1, point.y()));
         neighbors.add(new Point(point.x(), point.y() + 1));
@@ -144,6 +234,16 @@ public class Clusters {
     }
 
     public HashSet<Point> getPoints() {
+        if (this.points == null) {
+            this.points = this.tiles.toPoints();
+        }
         return this.points;
     }
+
+    public TileSet getTiles() {
+        if (this.tiles == null) {
+            this.tiles = new TileSet(this.points);
+        }
+        return this.tiles;
+    }
 }
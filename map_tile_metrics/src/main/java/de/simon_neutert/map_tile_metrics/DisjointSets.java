@@ -0,0 +1,137 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest (union-find) over the elements 0 to size() - 1.
+ *
+ * <p>
+ * Uses path halving and union by size, so a sequence of operations runs in
+ * practically linear time. The size of every set is tracked while merging,
+ * which makes the size of a cluster available without ever collecting its
+ * tiles. Elements can be appended at any time, so the forest also serves
+ * incremental labelling.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * DisjointSets sets = new DisjointSets(3);
+ * sets.union(0, 2);
+ * sets.find(2); // same root as sets.find(0)
+ * sets.setSize(0); // 2
+ * }
+ * </pre>
+ *
+ * @see ClusterLabels
+ *
+ */
+public class DisjointSets {
+    private int[] parents;
+    private int[] sizes;
+    private int size;
+    private int setCount;
+    private int maxSetSize;
+
+    /**
+     * Constructs a forest of the given number of singleton sets.
+     *
+     * @param size the number of elements
+     */
+    public DisjointSets(int size) {
+        this.parents = new int[Math.max(size, 1)];
+        this.sizes = new int[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            add();
+        }
+    }
+
+    /**
+     * Appends a new singleton set.
+     *
+     * @return the new element
+     */
+    public int add() {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size * 2);
+            sizes = Arrays.copyOf(sizes, size * 2);
+        }
+        parents[size] = size;
+        sizes[size] = 1;
+        setCount++;
+        maxSetSize = Math.max(maxSetSize, 1);
+        return size++;
+    }
+
+    /**
+     * Finds the representative of the set containing an element.
+     *
+     * @param element the element
+     * @return the root element of its set
+     */
+    public int find(int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets containing the two elements.
+     *
+     * @param a an element
+     * @param b another element
+     * @return the root of the merged set
+     */
+    public int union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (sizes[rootA] < sizes[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parents[rootB] = rootA;
+        sizes[rootA] += sizes[rootB];
+        setCount--;
+        maxSetSize = Math.max(maxSetSize, sizes[rootA]);
+        return rootA;
+    }
+
+    /**
+     * @param element an element
+     * @return the number of elements in the set containing the element
+     */
+    public int setSize(int element) {
+        return sizes[find(element)];
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of disjoint sets
+     */
+    public int setCount() {
+        return setCount;
+    }
+
+    /**
+     * @return the number of elements in the largest set, or 0 if there is no
+     *         element
+     */
+    public int maxSetSize() {
+        return maxSetSize;
+    }
+}
@@ -0,0 +1,174 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The Instrumentation class measures the phases of the calculations and
+ * reports them to the registered {@link MetricsListener}s and as JDK Flight
+ * Recorder events named {@code de.simon_neutert.map_tile_metrics.Phase}.
+ *
+ * <p>
+ * Every phase reports its input size, the number of clusters, the number of
+ * tiles it looked at, its elapsed time and the bytes the calling thread
+ * allocated during it. As long as no listener is registered and no recording
+ * enables the event, starting a phase only checks both and measures nothing.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * MetricsListener listener = m -> log.debug("{} took {} ns", m.phase(), m.elapsedNanos());
+ * Instrumentation.addListener(listener);
+ * new Clusters(points).calculate();
+ * Instrumentation.removeListener(listener);
+ * }
+ * </pre>
+ *
+ * <p>
+ * Or, without any code, record the events with
+ * {@code java -XX:StartFlightRecording:settings=profile ...} and enable
+ * {@code de.simon_neutert.map_tile_metrics.Phase} in the recording settings.
+ * </p>
+ *
+ * @see Phase
+ * @see MetricsListener
+ *
+ */
+public final class Instrumentation {
+    private static final CopyOnWriteArrayList<MetricsListener> LISTENERS = new CopyOnWriteArrayList<MetricsListener>();
+    private static final Timer DISABLED = new Timer(null, null, 0, 0);
+
+    private Instrumentation() {
+    }
+
+    /**
+     * Registers a listener for the phases of all calculations.
+     *
+     * @param listener the listener
+     */
+    public static void addListener(MetricsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener
+     * @return true if the listener was registered
+     */
+    public static boolean removeListener(MetricsListener listener) {
+        return LISTENERS.remove(listener);
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @param phase the phase
+     * @return the timer to stop once the phase is done
+     */
+    static Timer start(Phase phase) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            if (LISTENERS.isEmpty()) {
+                return DISABLED;
+            }
+            event = null;
+        } else {
+            event.begin();
+        }
+        return new Timer(phase, event, System.nanoTime(), Allocation.currentThreadBytes());
+    }
+
+    /**
+     * Measures one run of a phase.
+     */
+    static final class Timer {
+        private final Phase phase;
+        private final PhaseEvent event;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer(Phase phase, PhaseEvent event, long startNanos, long startBytes) {
+            this.phase = phase;
+            this.event = event;
+            this.startNanos = startNanos;
+            this.startBytes = startBytes;
+        }
+
+        /**
+         * Stops measuring the phase and reports it.
+         *
+         * @param inputSize    the number of tiles the phase started from
+         * @param clusterCount the number of clusters known after the phase
+         * @param iterations   the number of tiles the phase looked at
+         */
+        void stop(int inputSize, int clusterCount, long iterations) {
+            if (phase == null) {
+                return;
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long allocatedBytes = startBytes < 0 ? -1 : Allocation.currentThreadBytes() - startBytes;
+
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.phase = phase.name();
+                    event.inputSize = inputSize;
+                    event.clusterCount = clusterCount;
+                    event.iterations = iterations;
+                    event.allocatedBytes = allocatedBytes;
+                    event.commit();
+                }
+            }
+
+            if (!LISTENERS.isEmpty()) {
+                PhaseMeasurement measurement = new PhaseMeasurement(
+                        phase, inputSize, clusterCount, iterations, elapsedNanos, allocatedBytes);
+                for (MetricsListener listener : LISTENERS) {
+                    try {
+                        listener.phaseCompleted(measurement);
+                    } catch (RuntimeException e) {
+                        // a listener only observes, it must not fail the
+                        // calculation or keep the others from being notified
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the thread bean only once a phase is measured, so
+     * calculations without instrumentation never initialize JMX.
+     */
+    private static final class Allocation {
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean allocationThreads
+                    && allocationThreads.isThreadAllocatedMemorySupported()
+                    && allocationThreads.isThreadAllocatedMemoryEnabled()) {
+                return allocationThreads;
+            }
+            return null;
+        }
+
+        /**
+         * @return the bytes allocated by the current thread so far, or -1 if
+         *         the JVM cannot measure them
+         */
+        static long currentThreadBytes() {
+            return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+        }
+    }
+}
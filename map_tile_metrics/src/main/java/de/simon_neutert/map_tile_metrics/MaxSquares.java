@@ -3,10 +3,8 @@ package de.simon_neutert.map_tile_metrics;
 
 import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.stream.Collectors;
-
-import java.util.Comparator;
 
 /**
  * The MaxSquares class is responsible for calculating the maximum square sizes
@@ -49,6 +47,24 @@ public class MaxSquares {
      * A flag indicating whether borders have been added to the clusters.
      */
     public boolean bordersAdded;
+    /**
+     * A list of clusters, where each cluster is represented as a TileSet. Only
+     * set when constructed from TileSets.
+     */
+    public ArrayList<TileSet> tileClusters;
+    /**
+     * A set of tiles that are part of the clusters. Only set when constructed
+     * from TileSets.
+     */
+    public TileSet tiles;
+
+    /**
+     * The smallest size a square needs to count as a max square.
+     */
+    static final int MIN_SQUARE_SIZE = 4;
+
+    private static final int[] BORDER_DX = { -1, 0, -1, 1, -1, 1, 1, 0 };
+    private static final int[] BORDER_DY = { 0, -1, -1, -1, 1, 1, 0, 1 };
 
     /**
      * Constructs a new MaxSquares object with the specified clusters and points.
@@ -62,74 +78,190 @@ public class MaxSquares {
         this.bordersAdded = false;
     }
 
+    /**
+     * Constructs a new MaxSquares object working on TileSets. The calculation
+     * then runs without creating any Point besides the resulting top left
+     * corners.
+     * 
+     * @param clusters the list of clusters, see {@link Clusters#calculateTiles()}
+     * @param tiles    the set of tiles
+     */
+    public MaxSquares(ArrayList<TileSet> clusters, TileSet tiles) {
+        this.tileClusters = clusters;
+        this.tiles = tiles;
+        this.bordersAdded = false;
+    }
+
     /**
      * Calculates the maximum square sizes for each cluster.
      * 
      * <p>
-     * This method adds borders to the clusters and then calculates the maximum
-     * square sizes that can be formed within each cluster. The result is returned
-     * as a list of HashMaps, where each HashMap maps a Point to the size of the
-     * maximum square that can be formed at that point.
+     * This method adds borders to the clusters, unless that already happened,
+     * and then finds the largest squares that can be formed within each
+     * bordered cluster using a {@link SquareScan}. Only squares larger than 3
+     * count. The result is returned as a list of HashMaps, where each HashMap
+     * maps the top left Point of a square of the maximal size to that size, in
+     * row-major order of the points. The list is empty if there is no such
+     * square.
      * </p>
      * 
      * @return a list of HashMaps containing the maximum square sizes for each
      *         cluster
      */
     public ArrayList<HashMap<Point, Integer>> calculate() {
-        if (getClusters().isEmpty()) {
-            return new ArrayList<HashMap<Point, Integer>>();
-        }
+        return scanClusters(MIN_SQUARE_SIZE, false).maxSquares();
+    }
 
-        addBorderToClusters();
-        ArrayList<HashMap<Point, Integer>> maxSquares = new ArrayList<HashMap<Point, Integer>>();
-        ArrayList<Integer> maxSquaresSizes = new ArrayList<Integer>();
+    /**
+     * Calculates the maximum square sizes if they are at least of the given
+     * size.
+     *
+     * <p>
+     * The result has the shape of {@link #calculate()}, or is empty if there is
+     * no square of the given size. Clusters and runs of tiles too small to hold
+     * such a square are skipped from the start, so a large size is cheaper to
+     * check than the full calculation. Sizes below 4 are raised to 4.
+     * </p>
+     *
+     * @param size the smallest square size that counts
+     * @return a list of HashMaps containing the maximum square sizes, or an
+     *         empty list
+     */
+    public ArrayList<HashMap<Point, Integer>> squaresAtLeast(int size) {
+        return scanClusters(size, false).maxSquares();
+    }
 
-        for (HashSet<Point> cluster : clusters) {
-            for (Point point : cluster) {
-                int maxSquareSize = 0;
-                while (validSquare(point, cluster, maxSquareSize)) {
-                    maxSquareSize++;
-                }
-                if (maxSquareSize > 3) {
-                    HashMap<Point, Integer> newTile = new HashMap<Point, Integer>();
-                    newTile.put(point, maxSquareSize);
-                    maxSquares.add(newTile);
-                    maxSquaresSizes.add(maxSquareSize);
+    /**
+     * Checks whether the clusters hold a square of at least the given size,
+     * stopping at the first one found. Sizes below 4 are raised to 4.
+     *
+     * @param size the smallest square size that counts
+     * @return true if there is such a square
+     */
+    public boolean hasSquareAtLeast(int size) {
+        return scanClusters(size, true).maxSize() > 0;
+    }
+
+    /**
+     * Scans the bordered clusters for squares of at least the given size.
+     *
+     * <p>
+     * No square is larger than the width, the height or the square root of
+     * the size of its cluster. The clusters are scanned in descending order of
+     * that bound, and the scan stops at the first cluster whose bound is below
+     * the largest square found so far, as no later cluster can hold a square
+     * of the maximal size either.
+     * </p>
+     *
+     * @param size       the smallest square size that counts
+     * @param untilFound whether to stop at the first square found
+     * @return the scan holding the largest squares found
+     */
+    private SquareScan scanClusters(int size, boolean untilFound) {
+        int minSize = Math.max(size, MIN_SQUARE_SIZE);
+        Instrumentation.Timer timer = Instrumentation.start(Phase.ADD_BORDERS);
+        ArrayList<TileSet> borderedClusters = borderedTileClusters();
+        int borderedSize = 0;
+        long[] bounds = new long[borderedClusters.size()];
+        for (int i = 0; i < borderedClusters.size(); i++) {
+            borderedSize += borderedClusters.get(i).size();
+            bounds[i] = ((long) sizeBound(borderedClusters.get(i)) << 32) | i;
+        }
+        timer.stop(inputSize(), borderedClusters.size(), borderedSize);
+
+        timer = Instrumentation.start(Phase.SCAN_SQUARES);
+        Arrays.sort(bounds);
+        SquareScan scan = new SquareScan(minSize);
+        for (int i = bounds.length - 1; i >= 0; i--) {
+            if ((int) (bounds[i] >>> 32) < Math.max(minSize, scan.maxSize())) {
+                break;
+            }
+            TileRows rows = new TileRows(borderedClusters.get((int) bounds[i]));
+            if (untilFound) {
+                if (scan.scanUntilFound(rows)) {
+                    break;
                 }
+            } else {
+                scan.scan(rows);
             }
         }
+        timer.stop(borderedSize, borderedClusters.size(), scan.tileCount());
+        return scan;
+    }
 
-        int maxSquareSize = maxSquaresSizes.stream()
-                .max(Comparator.naturalOrder())
-                .get();
-        maxSquares = maxSquares.stream()
-                .filter(tile -> tile.values().contains(maxSquareSize))
-                .collect(Collectors.toCollection(ArrayList::new));
-        return maxSquares;
+    /**
+     * @return an upper bound for the size of the squares within the cluster:
+     *         the smallest of its width, its height and the square root of its
+     *         size
+     */
+    private static int sizeBound(TileSet cluster) {
+        if (cluster.isEmpty()) {
+            return 0;
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < cluster.size(); i++) {
+            minX = Math.min(minX, cluster.xAt(i));
+            minY = Math.min(minY, cluster.yAt(i));
+            maxX = Math.max(maxX, cluster.xAt(i));
+            maxY = Math.max(maxY, cluster.yAt(i));
+        }
+        long width = (long) maxX - minX + 1;
+        long height = (long) maxY - minY + 1;
+        return (int) Math.min(Math.min(width, height), (long) Math.sqrt(cluster.size()));
     }
 
     /**
-     * Creates a grid of points starting from the given point and extending
-     * a specified number of steps in both the x and y directions.
+     * Collects the clusters including their borders as TileSets, without
+     * changing the clusters of this object.
      * 
-     * <p>
-     * This method generates a square grid of points with the top-left corner
-     * at the specified point. The size of the grid is determined by the number
-     * of steps provided.
-     * </p>
-     * 
-     * @param point the starting point of the grid
-     * @param steps the number of steps to extend the grid in both x and y
-     *              directions
-     * @return true if all points in the grid are part of the cluster, false
-     */
-    Boolean validSquare(Point point, HashSet<Point> cluster, int steps) {
-        HashSet<Point> grid = new HashSet<Point>();
-        for (int i = 0; i < steps; i++) {
-            grid.add(new Point(point.x() + i, point.y() + steps));
-            grid.add(new Point(point.x() + steps, point.y() + i));
+     * @return the bordered clusters
+     */
+    ArrayList<TileSet> borderedTileClusters() {
+        ArrayList<TileSet> borderedClusters = new ArrayList<TileSet>();
+        if (getTiles() != null) {
+            for (TileSet cluster : getTileClusters()) {
+                TileSet borderedCluster = new TileSet(cluster.size() * 2);
+                for (int i = 0; i < cluster.size(); i++) {
+                    addWithBorder(borderedCluster, cluster.xAt(i), cluster.yAt(i), getTiles());
+                }
+                borderedClusters.add(borderedCluster);
+            }
+            return borderedClusters;
+        }
+
+        TileSet tiles = getBordersAdded() || getClusters().isEmpty()
+                ? null
+                : new TileSet(getPoints());
+        for (HashSet<Point> cluster : getClusters()) {
+            TileSet borderedCluster = new TileSet(cluster.size() * 2);
+            for (Point point : cluster) {
+                addWithBorder(borderedCluster, point.x(), point.y(), tiles);
+            }
+            borderedClusters.add(borderedCluster);
+        }
+        return borderedClusters;
+    }
+
+    private int inputSize() {
+        if (getTiles() != null) {
+            return getTiles().size();
+        }
+        return getPoints() == null ? 0 : getPoints().size();
+    }
+
+    private void addWithBorder(TileSet borderedCluster, int x, int y, TileSet tiles) {
+        borderedCluster.add(x, y);
+        if (tiles == null) {
+            return;
+        }
+        for (int n = 0; n < BORDER_DX.length; n++) {
+            if (tiles.contains(x + BORDER_DX[n], y + BORDER_DY[n])) {
+                borderedCluster.add(x + BORDER_DX[n], y + BORDER_DY[n]);
+            }
         }
-        return grid.stream().allMatch(p -> cluster.contains(p));
     }
 
     /**
@@ -175,8 +307,8 @@ public class MaxSquares {
      * <p>
      * This method generates a list of neighboring points surrounding the specified
      * point. It includes points to the left, right, above, below, and diagonally
-     * adjacent to the given point. If an exception occurs while creating a point,
-     * it is silently ignored.
+     * adjacent to the given point. Neighbors with negative coordinates are
+     * skipped.
      * </p>
      * 
      * @param point the point for which to find the neighbors
@@ -184,35 +316,13 @@ public class MaxSquares {
      */
     ArrayList<Point> getNeighborsForPoint(Point point) {
         ArrayList<Point> neighbors = new ArrayList<Point>();
-        try {
-            neighbors.add(new Point(point.x() - 1, point.y()));
-        } catch (Exception e) {
-            // do nothing if point is invalid
-        }
-        try {
-            neighbors.add(new Point(point.x(), point.y() - 1));
-        } catch (Exception e) {
-            // do nothing if point is invalid
-        }
-        try {
-            neighbors.add(new Point(point.x() - 1, point.y() - 1));
-        } catch (Exception e) {
-            // do nothing if point is invalid
-        }
-        try {
-            neighbors.add(new Point(point.x() + 1, point.y() - 1));
-        } catch (Exception e) {
-            // do nothing if point is invalid
-        }
-        try {
-            neighbors.add(new Point(point.x() - 1, point.y() + 1));
-        } catch (Exception e) {
-            // do nothing if point is invalid
+        for (int n = 0; n < BORDER_DX.length; n++) {
+            int x = point.x() + BORDER_DX[n];
+            int y = point.y() + BORDER_DY[n];
+            if (x >= 0 && y >= 0) {
+                neighbors.add(new Point(x, y));
+            }
         }
-
-        neighbors.add(new Point(point.x() + 1, point.y() + 1));
-        neighbors.add(new Point(point.x() + 1, point.y()));
-        neighbors.add(new Point(point.x(), point.y() + 1));
         return neighbors;
     }
 
@@ -220,6 +330,14 @@ public class MaxSquares {
         return points;
     }
 
+    public TileSet getTiles() {
+        return tiles;
+    }
+
+    public ArrayList<TileSet> getTileClusters() {
+        return tileClusters;
+    }
+
     public boolean getBordersAdded() {
         return bordersAdded;
     }
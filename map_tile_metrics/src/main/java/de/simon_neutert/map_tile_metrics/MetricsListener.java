@@ -0,0 +1,31 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * Receives a {@link PhaseMeasurement} whenever a {@link Phase} of a
+ * calculation is done, once registered with
+ * {@link Instrumentation#addListener(MetricsListener)}.
+ *
+ * <p>
+ * The method is called on the thread running the calculation, possibly from
+ * several threads at once, so implementations must be thread-safe. They
+ * should return quickly, as the calculation waits for them.
+ * </p>
+ *
+ * <p>
+ * A listener that throws does not fail the calculation or keep the other
+ * listeners from being notified. Its exception is passed to the uncaught
+ * exception handler of the calculating thread instead.
+ * </p>
+ *
+ * @see Instrumentation
+ *
+ */
+@FunctionalInterface
+public interface MetricsListener {
+    /**
+     * Called when a phase is done.
+     *
+     * @param measurement the measurements of the phase
+     */
+    void phaseCompleted(PhaseMeasurement measurement);
+}
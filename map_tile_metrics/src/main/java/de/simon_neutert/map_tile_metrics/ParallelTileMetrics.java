@@ -0,0 +1,534 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The ParallelTileMetrics class calculates clusters and max squares on a
+ * {@link ForkJoinPool}.
+ *
+ * <p>
+ * The tiles are sorted into rows and the rows are split into horizontal
+ * stripes holding about the same number of tiles. Each stripe is processed by
+ * its own task, reading the row above and below the stripe as a one tile halo:
+ * </p>
+ * <ul>
+ * <li>Cluster tiles are detected per stripe and labelled with a
+ * {@link DisjointSets} forest local to the stripe. A short sequential merge
+ * phase then joins the clusters that touch across the seams between
+ * stripes.</li>
+ * <li>For max squares every stripe counts for each tile how many tiles are
+ * stacked directly above it within the stripe. The counts are carried over the
+ * seams in a sequential pass that only looks at the last row of every stripe.
+ * With complete counts the largest square ending at each tile only depends on
+ * the tile's own row, so all rows are finished in parallel.</li>
+ * </ul>
+ *
+ * <p>
+ * The results equal those of {@link Clusters#calculateTiles()} and
+ * {@link MaxSquares#calculate()}, with clusters ordered by their first tile in
+ * row-major order.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * ParallelTileMetrics metrics = new ParallelTileMetrics(tiles, new ForkJoinPool(32));
+ * HashMap<String, ArrayList<TileSet>> clusters = metrics.calculateClusters();
+ * ArrayList<HashMap<Point, Integer>> maxSquares = metrics.calculateMaxSquares();
+ * }
+ * </pre>
+ *
+ * @see Clusters
+ * @see MaxSquares
+ *
+ */
+public class ParallelTileMetrics {
+    private final TileSet tiles;
+    private final ForkJoinPool pool;
+    private final int stripeCount;
+
+    private TileRows rows;
+    private int[] stripeRows;
+
+    /**
+     * Constructs a new ParallelTileMetrics object running on the common pool.
+     *
+     * @param tiles the tiles
+     */
+    public ParallelTileMetrics(TileSet tiles) {
+        this(tiles, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new ParallelTileMetrics object with four stripes per worker
+     * of the pool.
+     *
+     * @param tiles the tiles
+     * @param pool  the pool to run the stripes on
+     */
+    public ParallelTileMetrics(TileSet tiles, ForkJoinPool pool) {
+        this(tiles, pool, pool.getParallelism() * 4);
+    }
+
+    /**
+     * Constructs a new ParallelTileMetrics object.
+     *
+     * @param tiles       the tiles
+     * @param pool        the pool to run the stripes on
+     * @param stripeCount the number of stripes to split the rows into
+     */
+    public ParallelTileMetrics(TileSet tiles, ForkJoinPool pool, int stripeCount) {
+        this.tiles = tiles;
+        this.pool = pool;
+        this.stripeCount = Math.max(stripeCount, 1);
+    }
+
+    /**
+     * Constructs a new ParallelTileMetrics object for tiles that are already
+     * sorted into rows, e.g. read by {@link TileFile#read(java.nio.file.Path)}.
+     *
+     * @param rows        the tiles
+     * @param pool        the pool to run the stripes on
+     * @param stripeCount the number of stripes to split the rows into
+     */
+    public ParallelTileMetrics(TileRows rows, ForkJoinPool pool, int stripeCount) {
+        this((TileSet) null, pool, stripeCount);
+        this.rows = rows;
+    }
+
+    /**
+     * Calculates the clusters.
+     *
+     * @return a HashMap with the keys "clusters" and "maxClusters", like
+     *         {@link Clusters#calculateTiles()}
+     */
+    public HashMap<String, ArrayList<TileSet>> calculateClusters() {
+        prepareStripes();
+        int tileCount = rows.size();
+        boolean[] clusterTiles = new boolean[tileCount];
+        int[] roots = new int[tileCount];
+        int[] rootSizes = new int[tileCount];
+
+        forEachStripe(stripe -> {
+            detectClusterTiles(stripe, clusterTiles);
+            labelStripe(stripe, clusterTiles, roots, rootSizes);
+        });
+
+        DisjointSets seams = new DisjointSets(tileCount);
+        for (int stripe = 1; stripe < stripeRows.length - 1; stripe++) {
+            joinSeam(stripeRows[stripe], clusterTiles, roots, seams);
+        }
+
+        int[] rootLabels = new int[tileCount];
+        Arrays.fill(rootLabels, -1);
+        int[] labels = new int[tileCount];
+        int[] sizes = new int[tileCount];
+        int count = 0;
+        int maxSize = 0;
+        for (int i = 0; i < tileCount; i++) {
+            if (!clusterTiles[i]) {
+                continue;
+            }
+            int root = seams.find(roots[i]);
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = count++;
+            }
+            labels[i] = rootLabels[root];
+            if (roots[i] == i) {
+                sizes[labels[i]] += rootSizes[i];
+                maxSize = Math.max(maxSize, sizes[labels[i]]);
+            }
+        }
+
+        ArrayList<TileSet> clusters = new ArrayList<TileSet>(count);
+        ArrayList<TileSet> maxClusters = new ArrayList<TileSet>();
+        for (int label = 0; label < count; label++) {
+            TileSet cluster = new TileSet(sizes[label]);
+            clusters.add(cluster);
+            if (sizes[label] == maxSize) {
+                maxClusters.add(cluster);
+            }
+        }
+        for (int i = 0; i < tileCount; i++) {
+            if (clusterTiles[i]) {
+                clusters.get(labels[i]).add(rows.xAt(i), rows.yAt(i));
+            }
+        }
+
+        HashMap<String, ArrayList<TileSet>> results = new HashMap<>();
+        results.put("clusters", clusters);
+        results.put("maxClusters", maxClusters);
+        return results;
+    }
+
+    /**
+     * Calculates the max squares.
+     *
+     * @return a list of HashMaps mapping the top left corner of every max
+     *         square to its size, like {@link MaxSquares#calculate()}
+     */
+    public ArrayList<HashMap<Point, Integer>> calculateMaxSquares() {
+        prepareStripes();
+        ArrayList<HashMap<Point, Integer>> maxSquares = new ArrayList<HashMap<Point, Integer>>();
+        if (rows.size() == 0) {
+            return maxSquares;
+        }
+        int stripes = stripeRows.length - 1;
+        int[] heights = new int[rows.size()];
+        int[][] lastRowHeights = new int[stripes][];
+        SquareResult[] results = new SquareResult[stripes];
+
+        forEachStripe(stripe -> countHeights(stripe, heights));
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            lastRowHeights[stripe] = carryLastRow(stripe, heights, stripe > 0 ? lastRowHeights[stripe - 1] : null);
+        }
+        forEachStripe(stripe -> {
+            carryHeights(stripe, heights, stripe > 0 ? lastRowHeights[stripe - 1] : null);
+            results[stripe] = findSquares(stripe, heights);
+        });
+
+        int maxSize = 0;
+        for (SquareResult result : results) {
+            maxSize = Math.max(maxSize, result.maxSize);
+        }
+        if (maxSize < MaxSquares.MIN_SQUARE_SIZE) {
+            return maxSquares;
+        }
+        long[] topLefts = new long[0];
+        for (SquareResult result : results) {
+            if (result.maxSize != maxSize) {
+                continue;
+            }
+            int offset = topLefts.length;
+            topLefts = Arrays.copyOf(topLefts, offset + result.cornerCount);
+            for (int i = 0; i < result.cornerCount; i++) {
+                long corner = result.corners[i];
+                topLefts[offset + i] = TileSet.pack(TileSet.x(corner) - maxSize + 1, TileSet.y(corner) - maxSize + 1);
+            }
+        }
+        Arrays.sort(topLefts);
+        for (long topLeft : topLefts) {
+            HashMap<Point, Integer> tile = new HashMap<Point, Integer>();
+            tile.put(new Point(TileSet.x(topLeft), TileSet.y(topLeft)), maxSize);
+            maxSquares.add(tile);
+        }
+        return maxSquares;
+    }
+
+    private void prepareStripes() {
+        if (stripeRows != null) {
+            return;
+        }
+        if (rows == null) {
+            long[] keys = new long[tiles.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = tiles.keyAt(i);
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(keys)));
+            rows = new TileRows(keys);
+        }
+
+        int tilesPerStripe = Math.max(rows.size() / stripeCount, 1);
+        int[] boundaries = new int[Math.min(stripeCount, Math.max(rows.rowCount(), 1)) + 1];
+        int stripes = 0;
+        int stripeStart = 0;
+        for (int row = 0; row < rows.rowCount(); row++) {
+            boolean full = rows.rowEnd(row) - stripeStart >= tilesPerStripe;
+            if (full && stripes < boundaries.length - 2) {
+                boundaries[++stripes] = row + 1;
+                stripeStart = rows.rowEnd(row);
+            }
+        }
+        if (stripes == 0 || boundaries[stripes] != rows.rowCount()) {
+            boundaries[++stripes] = rows.rowCount();
+        }
+        stripeRows = Arrays.copyOf(boundaries, stripes + 1);
+    }
+
+    private void forEachStripe(IntConsumer work) {
+        pool.invoke(new StripeTask(0, stripeRows.length - 1, work));
+    }
+
+    private void detectClusterTiles(int stripe, boolean[] clusterTiles) {
+        for (int row = stripeRows[stripe]; row < stripeRows[stripe + 1]; row++) {
+            int above = adjacentRow(row, -1);
+            int below = adjacentRow(row, 1);
+            int aboveCursor = above >= 0 ? rows.rowStart(above) : 0;
+            int belowCursor = below >= 0 ? rows.rowStart(below) : 0;
+            for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+                int x = rows.xAt(i);
+                boolean horizontal = i > rows.rowStart(row) && rows.xAt(i - 1) == x - 1
+                        && i + 1 < rows.rowEnd(row) && rows.xAt(i + 1) == x + 1;
+                if (above >= 0) {
+                    aboveCursor = seek(above, aboveCursor, x);
+                }
+                if (below >= 0) {
+                    belowCursor = seek(below, belowCursor, x);
+                }
+                clusterTiles[i] = horizontal
+                        && above >= 0 && aboveCursor < rows.rowEnd(above) && rows.xAt(aboveCursor) == x
+                        && below >= 0 && belowCursor < rows.rowEnd(below) && rows.xAt(belowCursor) == x;
+            }
+        }
+    }
+
+    private void labelStripe(int stripe, boolean[] clusterTiles, int[] roots, int[] rootSizes) {
+        int firstRow = stripeRows[stripe];
+        int start = rows.rowStart(firstRow);
+        int end = rows.rowStart(stripeRows[stripe + 1]);
+        DisjointSets sets = new DisjointSets(end - start);
+
+        for (int row = firstRow; row < stripeRows[stripe + 1]; row++) {
+            int above = row > firstRow ? adjacentRow(row, -1) : -1;
+            int aboveCursor = above >= 0 ? rows.rowStart(above) : 0;
+            for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+                if (!clusterTiles[i]) {
+                    continue;
+                }
+                int x = rows.xAt(i);
+                if (i > rows.rowStart(row) && clusterTiles[i - 1] && rows.xAt(i - 1) == x - 1) {
+                    sets.union(i - start, i - 1 - start);
+                }
+                if (above >= 0) {
+                    aboveCursor = seek(above, aboveCursor, x);
+                    if (clusterTiles[aboveCursor] && rows.xAt(aboveCursor) == x) {
+                        sets.union(i - start, aboveCursor - start);
+                    }
+                }
+            }
+        }
+
+        for (int i = start; i < end; i++) {
+            if (clusterTiles[i]) {
+                int root = sets.find(i - start);
+                roots[i] = start + root;
+                if (root == i - start) {
+                    rootSizes[i] = sets.setSize(root);
+                }
+            }
+        }
+    }
+
+    private void joinSeam(int firstRow, boolean[] clusterTiles, int[] roots, DisjointSets seams) {
+        int above = adjacentRow(firstRow, -1);
+        if (above < 0) {
+            return;
+        }
+        int aboveCursor = rows.rowStart(above);
+        for (int i = rows.rowStart(firstRow); i < rows.rowEnd(firstRow); i++) {
+            if (!clusterTiles[i]) {
+                continue;
+            }
+            aboveCursor = seek(above, aboveCursor, rows.xAt(i));
+            if (clusterTiles[aboveCursor] && rows.xAt(aboveCursor) == rows.xAt(i)) {
+                seams.union(roots[i], roots[aboveCursor]);
+            }
+        }
+    }
+
+    private void countHeights(int stripe, int[] heights) {
+        int firstRow = stripeRows[stripe];
+        for (int row = firstRow; row < stripeRows[stripe + 1]; row++) {
+            int above = row > firstRow ? adjacentRow(row, -1) : -1;
+            int aboveCursor = above >= 0 ? rows.rowStart(above) : 0;
+            for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+                heights[i] = 1;
+                if (above >= 0) {
+                    aboveCursor = seek(above, aboveCursor, rows.xAt(i));
+                    if (rows.xAt(aboveCursor) == rows.xAt(i)) {
+                        heights[i] += heights[aboveCursor];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the complete heights of the last row of a stripe, given the
+     * complete heights of the last row of the stripe above.
+     */
+    private int[] carryLastRow(int stripe, int[] heights, int[] aboveHeights) {
+        int lastRow = stripeRows[stripe + 1] - 1;
+        int start = rows.rowStart(lastRow);
+        int[] lastRowHeights = Arrays.copyOfRange(heights, start, rows.rowEnd(lastRow));
+        if (aboveHeights == null) {
+            return lastRowHeights;
+        }
+        int stripeHeight = rows.rowY(lastRow) - rows.rowY(stripeRows[stripe]) + 1;
+        for (int i = start; i < rows.rowEnd(lastRow); i++) {
+            if (heights[i] == stripeHeight) {
+                lastRowHeights[i - start] += carry(stripe, rows.xAt(i), aboveHeights);
+            }
+        }
+        return lastRowHeights;
+    }
+
+    private void carryHeights(int stripe, int[] heights, int[] aboveHeights) {
+        if (aboveHeights == null) {
+            return;
+        }
+        int firstRow = stripeRows[stripe];
+        int firstY = rows.rowY(firstRow);
+        for (int row = firstRow; row < stripeRows[stripe + 1]; row++) {
+            int stripeHeight = rows.rowY(row) - firstY + 1;
+            for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+                if (heights[i] == stripeHeight) {
+                    heights[i] += carry(stripe, rows.xAt(i), aboveHeights);
+                }
+            }
+        }
+    }
+
+    private int carry(int stripe, int x, int[] aboveHeights) {
+        int aboveRow = stripeRows[stripe] - 1;
+        if (rows.rowY(aboveRow) != rows.rowY(stripeRows[stripe]) - 1) {
+            return 0;
+        }
+        int index = seek(aboveRow, rows.rowStart(aboveRow), x, true);
+        if (index < rows.rowEnd(aboveRow) && rows.xAt(index) == x) {
+            return aboveHeights[index - rows.rowStart(aboveRow)];
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the largest square ending at every tile of the stripe. A square of
+     * size k ends at a tile if the k tiles ending at it in its row all have a
+     * height of at least k. The size at a tile is at most one more than at its
+     * left neighbor, and only that extra step needs the minimum height of the
+     * window left of the tile, which a monotonic deque provides.
+     */
+    private SquareResult findSquares(int stripe, int[] heights) {
+        SquareResult result = new SquareResult();
+        int[] window = new int[16];
+        for (int row = stripeRows[stripe]; row < stripeRows[stripe + 1]; row++) {
+            int start = rows.rowStart(row);
+            int end = rows.rowEnd(row);
+            if (window.length < end - start) {
+                window = new int[end - start];
+            }
+            int head = 0;
+            int tail = 0;
+            int previousSize = 0;
+            for (int i = start; i < end; i++) {
+                if (i == start || rows.xAt(i - 1) != rows.xAt(i) - 1) {
+                    previousSize = 0;
+                    head = 0;
+                    tail = 0;
+                } else {
+                    while (tail > head && heights[window[tail - 1]] >= heights[i - 1]) {
+                        tail--;
+                    }
+                    window[tail++] = i - 1;
+                }
+                while (head < tail && window[head] < i - previousSize) {
+                    head++;
+                }
+                int size = Math.min(heights[i], previousSize + 1);
+                if (size == previousSize + 1 && previousSize > 0 && heights[window[head]] < size) {
+                    size = previousSize;
+                }
+                previousSize = size;
+                result.track(rows.keyAt(i), size);
+            }
+        }
+        return result;
+    }
+
+    private int adjacentRow(int row, int direction) {
+        int adjacent = row + direction;
+        if (adjacent < 0 || adjacent >= rows.rowCount() || rows.rowY(adjacent) != rows.rowY(row) + direction) {
+            return -1;
+        }
+        return adjacent;
+    }
+
+    private int seek(int row, int cursor, int x) {
+        return seek(row, cursor, x, false);
+    }
+
+    /**
+     * Moves a cursor forward to the first tile of the row with an x-coordinate
+     * of at least x, using a binary search instead of stepping if asked to.
+     */
+    private int seek(int row, int cursor, int x, boolean search) {
+        int end = rows.rowEnd(row);
+        if (search) {
+            int low = cursor;
+            int high = end;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rows.xAt(middle) < x) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+        while (cursor < end - 1 && rows.xAt(cursor) < x) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * The largest squares found in one stripe, by their bottom right corners.
+     */
+    private static class SquareResult {
+        private int maxSize;
+        private long[] corners = new long[4];
+        private int cornerCount;
+
+        void track(long corner, int size) {
+            if (size < MaxSquares.MIN_SQUARE_SIZE || size < maxSize) {
+                return;
+            }
+            if (size > maxSize) {
+                maxSize = size;
+                cornerCount = 0;
+            }
+            if (cornerCount == corners.length) {
+                corners = Arrays.copyOf(corners, cornerCount * 2);
+            }
+            corners[cornerCount++] = corner;
+        }
+    }
+
+    /**
+     * Runs some work for a range of stripes, splitting the range in halves
+     * until every task holds a single stripe.
+     */
+    private static class StripeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer work;
+
+        StripeTask(int from, int to, IntConsumer work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                work.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StripeTask(from, middle, work), new StripeTask(middle, to, work));
+        }
+    }
+}
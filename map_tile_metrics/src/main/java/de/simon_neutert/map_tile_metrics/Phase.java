@@ -0,0 +1,40 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * The phases of a calculation reported to {@link MetricsListener}s and as
+ * JDK Flight Recorder events.
+ *
+ * @see Instrumentation
+ *
+ */
+public enum Phase {
+    /**
+     * Finding the tiles whose four neighbors are visited, see
+     * {@link Clusters#calculate()}.
+     */
+    DETECT_CLUSTER_POINTS,
+    /**
+     * Grouping the cluster tiles into clusters, see {@link Clusters#calculate()}.
+     */
+    GROUP_CLUSTERS,
+    /**
+     * Adding the visited neighbors of the clusters as their border, see
+     * {@link MaxSquares#calculate()}.
+     */
+    ADD_BORDERS,
+    /**
+     * Finding the max squares within the bordered clusters, see
+     * {@link MaxSquares#calculate()}.
+     */
+    SCAN_SQUARES,
+    /**
+     * The ordered scan of {@link TileMetrics}, finding cluster tiles, joining
+     * them and finding the max squares at once.
+     */
+    SCAN,
+    /**
+     * Collecting the cluster tiles of a {@link TileMetrics} scan into their
+     * clusters.
+     */
+    COLLECT_CLUSTERS
+}
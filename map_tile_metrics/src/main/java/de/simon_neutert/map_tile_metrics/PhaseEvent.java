@@ -0,0 +1,36 @@
+package de.simon_neutert.map_tile_metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event committed for every {@link Phase}, see
+ * {@link Instrumentation}.
+ */
+@Name("de.simon_neutert.map_tile_metrics.Phase")
+@Label("Tile Metrics Phase")
+@Category("Map Tile Metrics")
+@Description("A phase of a cluster or max square calculation")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Input Size")
+    int inputSize;
+
+    @Label("Cluster Count")
+    int clusterCount;
+
+    @Label("Iterations")
+    long iterations;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
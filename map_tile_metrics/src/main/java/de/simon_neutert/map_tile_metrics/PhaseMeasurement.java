@@ -0,0 +1,23 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record holding the measurements of one run of a {@link Phase}.
+ *
+ * @param phase          the phase
+ * @param inputSize      the number of tiles the phase started from
+ * @param clusterCount   the number of clusters known after the phase, or 0 if
+ *                       the phase does not know them yet
+ * @param iterations     the number of tiles the phase looked at, e.g. the
+ *                       tiles fed into the square scan
+ * @param elapsedNanos   the wall clock time of the phase in nanoseconds
+ * @param allocatedBytes the bytes allocated by the calling thread during the
+ *                       phase, or -1 if the JVM cannot measure them
+ */
+public record PhaseMeasurement(
+        Phase phase,
+        int inputSize,
+        int clusterCount,
+        long iterations,
+        long elapsedNanos,
+        long allocatedBytes) {
+}
@@ -0,0 +1,257 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The ProgressiveTileMetrics class calculates the metrics of {@link TileMetrics}
+ * in the background, publishing bounds while it runs and giving up at a
+ * deadline.
+ *
+ * <p>
+ * A calculation publishes {@link TileMetricsEstimate}s in three steps:
+ * </p>
+ * <ul>
+ * <li>cheap bounds before the scan starts: no cluster is larger than the
+ * number of tiles, and no square is longer than the longest horizontal run of
+ * tiles or the longest run of consecutive rows,</li>
+ * <li>bounds while the scan runs: the largest cluster and square found so far
+ * are lower bounds, and no cluster is larger than the cluster tiles found so
+ * far plus the tiles not scanned yet,</li>
+ * <li>the exact metrics once the clusters are collected.</li>
+ * </ul>
+ *
+ * <p>
+ * The returned future completes with the exact metrics, or with the latest
+ * estimate once the deadline passes. It completes exceptionally with a
+ * {@link CancellationException} as soon as the token is cancelled. A future
+ * that is done stops the calculation at its next check, every
+ * {@value TileMetrics#CHECK_INTERVAL} tiles scanned or collected.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * ProgressiveTileMetrics metrics = new ProgressiveTileMetrics(tiles, executor);
+ * TileMetricsEstimate estimate = metrics
+ *         .calculate(Duration.ofMillis(200), token, e -> log.debug("{}", e))
+ *         .join();
+ * int maxSquareSize = estimate.isExact()
+ *         ? estimate.result().maxSquareSize()
+ *         : estimate.maxSquareSizeAtLeast();
+ * }
+ * </pre>
+ *
+ * @see TileMetricsEstimate
+ * @see CancellationToken
+ *
+ */
+public class ProgressiveTileMetrics {
+    /**
+     * The number of estimates published while scanning, at most.
+     */
+    private static final int ESTIMATES = 16;
+    /**
+     * Completes the futures at their deadlines. Deadlines of calculations done
+     * before are cancelled and removed right away.
+     */
+    static final ScheduledThreadPoolExecutor DEADLINES = createDeadlines();
+
+    private final TileRows rows;
+    private final Executor executor;
+
+    /**
+     * Constructs a new ProgressiveTileMetrics object.
+     *
+     * @param tiles    the tiles
+     * @param executor runs the calculations
+     */
+    public ProgressiveTileMetrics(TileSet tiles, Executor executor) {
+        this(new TileRows(tiles), executor);
+    }
+
+    /**
+     * Constructs a new ProgressiveTileMetrics object for tiles already sorted
+     * into rows.
+     *
+     * @param rows     the tiles
+     * @param executor runs the calculations
+     */
+    public ProgressiveTileMetrics(TileRows rows, Executor executor) {
+        this.rows = rows;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts calculating the metrics.
+     *
+     * @param timeout  the time after which the future completes with the
+     *                 latest estimate
+     * @param token    cancels the calculation
+     * @param listener receives every estimate on the calculating thread, the
+     *                 exact one last, or null
+     * @return a future completing with the exact metrics, or the latest
+     *         estimate once the timeout passed
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public CompletableFuture<TileMetricsEstimate> calculate(Duration timeout, CancellationToken token,
+            Consumer<TileMetricsEstimate> listener) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        long timeoutNanos = toNanos(timeout);
+        Run run = new Run(token, listener);
+        Runnable cancel = () -> run.future.completeExceptionally(new CancellationException("Calculation cancelled"));
+        token.onCancel(cancel);
+        ScheduledFuture<?> deadline = DEADLINES.schedule(() -> run.future.complete(run.latest),
+                timeoutNanos, TimeUnit.NANOSECONDS);
+        // neither the token nor the deadline may keep the run and its result
+        // once the future is done
+        run.future.whenComplete((estimate, error) -> {
+            token.removeOnCancel(cancel);
+            deadline.cancel(false);
+        });
+        executor.execute(run::calculate);
+        return run.future;
+    }
+
+    /**
+     * @return the timeout in nanoseconds, at most {@link Long#MAX_VALUE} for
+     *         timeouts too long to mean anything but no deadline
+     */
+    private static long toNanos(Duration timeout) {
+        try {
+            return timeout.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlines() {
+        ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "progressive-tile-metrics-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+        return deadlines;
+    }
+
+    /**
+     * @return an upper bound for the size of the max squares: the length of
+     *         the longest run of tiles in a row or of consecutive rows
+     */
+    int squareSizeBound() {
+        int longestRow = 0;
+        int longestColumn = 0;
+        int column = 0;
+        for (int row = 0; row < rows.rowCount(); row++) {
+            column = row > 0 && rows.rowY(row) == rows.rowY(row - 1) + 1 ? column + 1 : 1;
+            longestColumn = Math.max(longestColumn, column);
+            int run = 0;
+            for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+                run = i > rows.rowStart(row) && rows.xAt(i) == rows.xAt(i - 1) + 1 ? run + 1 : 1;
+                longestRow = Math.max(longestRow, run);
+            }
+        }
+        int bound = Math.min(longestRow, longestColumn);
+        return bound >= MaxSquares.MIN_SQUARE_SIZE ? bound : 0;
+    }
+
+    /**
+     * The state of one calculation.
+     */
+    private class Run implements TileMetrics.ScanListener {
+        final CompletableFuture<TileMetricsEstimate> future = new CompletableFuture<TileMetricsEstimate>();
+        final CancellationToken token;
+        final Consumer<TileMetricsEstimate> listener;
+        volatile TileMetricsEstimate latest;
+
+        int squareSizeBound;
+        int nextEstimate = Math.max(TileMetrics.CHECK_INTERVAL, rows.size() / ESTIMATES);
+
+        Run(CancellationToken token, Consumer<TileMetricsEstimate> listener) {
+            this.token = token;
+            this.listener = listener;
+            this.latest = new TileMetricsEstimate(0, 0, rows.size(), 0, (int) Math.sqrt(rows.size()), null);
+        }
+
+        void calculate() {
+            try {
+                checkStopped();
+                squareSizeBound = squareSizeBound();
+                publish(new TileMetricsEstimate(0, 0, rows.size(), 0, squareSizeBound, null));
+
+                TileMetrics metrics = new TileMetrics(rows);
+                TileMetrics.Scan scan = metrics.scan(this);
+                checkStopped();
+                TileMetricsResult result = metrics.collect(scan, this);
+                TileMetricsEstimate exact = new TileMetricsEstimate(1, result.maxClusterSize(),
+                        result.maxClusterSize(), result.maxSquareSize(), result.maxSquareSize(), result);
+                publish(exact);
+                future.complete(exact);
+            } catch (Stopped e) {
+                // the future is already done
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void rowScanned(int row, DisjointSets clusterSets, SquareScan squares) {
+            int scanned = rows.rowEnd(row);
+            if (scanned < nextEstimate || scanned == rows.size()) {
+                return;
+            }
+            nextEstimate = scanned + Math.max(TileMetrics.CHECK_INTERVAL, rows.size() / ESTIMATES);
+            publish(new TileMetricsEstimate(
+                    (double) scanned / rows.size(),
+                    clusterSets.maxSetSize(),
+                    clusterSets.size() + rows.size() - scanned,
+                    squares.maxSize(),
+                    squareSizeBound,
+                    null));
+        }
+
+        @Override
+        public void tilesScanned() {
+            checkStopped();
+        }
+
+        private void publish(TileMetricsEstimate estimate) {
+            latest = estimate;
+            if (listener != null) {
+                listener.accept(estimate);
+            }
+        }
+
+        private void checkStopped() {
+            if (token.isCancelled()) {
+                future.completeExceptionally(new CancellationException("Calculation cancelled"));
+            }
+            if (future.isDone()) {
+                throw new Stopped();
+            }
+        }
+    }
+
+    /**
+     * Unwinds a calculation whose future is done.
+     */
+    private static class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The SquareScan class finds the largest squares of tiles with the classic
+ * largest square dynamic program, in a single top-down sweep over the rows.
+ *
+ * <p>
+ * For every tile the size of the largest square having this tile as its
+ * bottom right corner is one more than the smallest of the values of its left,
+ * upper and upper left neighbors. Only the values of the previous row are
+ * kept, so a scan needs memory proportional to the widest row and touches
+ * every tile exactly once. Each square of the maximal size is reported by its
+ * top left corner, in row-major order, which is the same shape
+ * {@link MaxSquares#calculate()} returns.
+ * </p>
+ *
+ * <p>
+ * A SquareScan may scan several independent sets of rows one after another,
+ * for example one per cluster. The maximum and its squares are tracked across
+ * all of them.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * SquareScan scan = new SquareScan(4);
+ * scan.scan(new TileRows(tiles));
+ * ArrayList<HashMap<Point, Integer>> maxSquares = scan.maxSquares();
+ * }
+ * </pre>
+ *
+ * @see TileRows
+ * @see MaxSquares
+ *
+ */
+public class SquareScan {
+    private final int minSize;
+
+    private int maxSize;
+    private long[] topLefts = new long[8];
+    private int topLeftCount;
+    private long tileCount;
+
+    private int[] previousXs = new int[16];
+    private int[] previousSizes = new int[16];
+    private int previousLength;
+    private int[] currentXs = new int[16];
+    private int[] currentSizes = new int[16];
+    private int currentLength;
+    private int currentY;
+    private int cursor;
+
+    /**
+     * Constructs a new SquareScan.
+     *
+     * @param minSize the smallest square size that is reported at all
+     */
+    public SquareScan(int minSize) {
+        this.minSize = Math.max(minSize, 1);
+    }
+
+    /**
+     * Finds the largest squares of at least the given size.
+     *
+     * @param rows    the tiles to scan
+     * @param minSize the smallest square size that is reported at all
+     * @return a list of HashMaps mapping the top left corner of every largest
+     *         square to its size
+     */
+    public static ArrayList<HashMap<Point, Integer>> calculate(TileRows rows, int minSize) {
+        SquareScan scan = new SquareScan(minSize);
+        scan.scan(rows);
+        return scan.maxSquares();
+    }
+
+    /**
+     * Scans all rows of the given tiles. Rows of earlier scans are not
+     * connected to these rows.
+     *
+     * <p>
+     * A square of a size spans that many consecutive rows and that many
+     * consecutive tiles in each of them. Runs of tiles shorter than the
+     * largest square found so far, or than the minimum size, are therefore
+     * skipped, as are blocks of consecutive rows that are too short. Skipping
+     * them only loses smaller squares.
+     * </p>
+     *
+     * @param rows the tiles to scan
+     */
+    public void scan(TileRows rows) {
+        scan(rows, false);
+    }
+
+    /**
+     * Scans the rows of the given tiles until the first square of at least the
+     * minimum size is found. Rows of earlier scans are not connected to these
+     * rows.
+     *
+     * @param rows the tiles to scan
+     * @return true if the tiles hold a square of at least the minimum size
+     */
+    public boolean scanUntilFound(TileRows rows) {
+        return scan(rows, true);
+    }
+
+    private boolean scan(TileRows rows, boolean untilFound) {
+        restart();
+        int blockEnd = 0;
+        for (int row = 0; row < rows.rowCount(); row++) {
+            if (row == blockEnd) {
+                blockEnd = row + 1;
+                while (blockEnd < rows.rowCount() && rows.rowY(blockEnd) == rows.rowY(blockEnd - 1) + 1) {
+                    blockEnd++;
+                }
+                if (blockEnd - row < Math.max(minSize, maxSize)) {
+                    row = blockEnd - 1;
+                    continue;
+                }
+            }
+            startRow(rows.rowY(row));
+            int end = rows.rowEnd(row);
+            int runStart = rows.rowStart(row);
+            while (runStart < end) {
+                int runEnd = runStart + 1;
+                while (runEnd < end && rows.xAt(runEnd) == rows.xAt(runEnd - 1) + 1) {
+                    runEnd++;
+                }
+                if (runEnd - runStart >= Math.max(minSize, maxSize)) {
+                    for (int i = runStart; i < runEnd; i++) {
+                        if (add(rows.xAt(i)) >= minSize && untilFound) {
+                            return true;
+                        }
+                    }
+                }
+                runStart = runEnd;
+            }
+        }
+        return maxSize > 0;
+    }
+
+    /**
+     * Forgets the rolling row so the next row starts a new, unconnected set of
+     * tiles. The maximum found so far is kept.
+     */
+    public void restart() {
+        previousLength = 0;
+        currentLength = 0;
+    }
+
+    /**
+     * Starts a new row. Rows must be started in ascending order of y, the tiles
+     * of a row must be added in ascending order of x.
+     *
+     * @param y the y-coordinate of the row
+     */
+    public void startRow(int y) {
+        boolean adjacent = currentLength > 0 && y == currentY + 1;
+        int[] xs = previousXs;
+        int[] sizes = previousSizes;
+        previousXs = currentXs;
+        previousSizes = currentSizes;
+        previousLength = adjacent ? currentLength : 0;
+        currentXs = xs;
+        currentSizes = sizes;
+        currentLength = 0;
+        currentY = y;
+        cursor = 0;
+    }
+
+    /**
+     * Adds the next tile of the current row.
+     *
+     * @param x the x-coordinate of the tile
+     * @return the size of the largest square having the tile as its bottom
+     *         right corner
+     */
+    public int add(int x) {
+        tileCount++;
+        int left = 0;
+        if (currentLength > 0 && currentXs[currentLength - 1] == x - 1) {
+            left = currentSizes[currentLength - 1];
+        }
+
+        while (cursor < previousLength && previousXs[cursor] < x - 1) {
+            cursor++;
+        }
+        int upperLeft = 0;
+        int upper = 0;
+        if (cursor < previousLength && previousXs[cursor] == x - 1) {
+            upperLeft = previousSizes[cursor];
+            if (cursor + 1 < previousLength && previousXs[cursor + 1] == x) {
+                upper = previousSizes[cursor + 1];
+            }
+        } else if (cursor < previousLength && previousXs[cursor] == x) {
+            upper = previousSizes[cursor];
+        }
+
+        int size = 1 + Math.min(left, Math.min(upper, upperLeft));
+        if (currentLength == currentXs.length) {
+            currentXs = Arrays.copyOf(currentXs, currentLength * 2);
+            currentSizes = Arrays.copyOf(currentSizes, currentLength * 2);
+        }
+        currentXs[currentLength] = x;
+        currentSizes[currentLength] = size;
+        currentLength++;
+
+        if (size >= minSize && size >= maxSize) {
+            if (size > maxSize) {
+                maxSize = size;
+                topLeftCount = 0;
+            }
+            if (topLeftCount == topLefts.length) {
+                topLefts = Arrays.copyOf(topLefts, topLeftCount * 2);
+            }
+            topLefts[topLeftCount++] = TileSet.pack(x - size + 1, currentY - size + 1);
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the largest square found so far, or 0 if there is
+     *         none of at least the minimum size
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of tiles added so far, over all scans
+     */
+    public long tileCount() {
+        return tileCount;
+    }
+
+    /**
+     * @return the packed top left corners of all squares of the maximal size,
+     *         sorted in row-major order
+     */
+    public long[] topLefts() {
+        long[] sorted = Arrays.copyOf(topLefts, topLeftCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @return a list of HashMaps mapping the top left corner of every largest
+     *         square to its size, in row-major order of the corners
+     */
+    public ArrayList<HashMap<Point, Integer>> maxSquares() {
+        ArrayList<HashMap<Point, Integer>> maxSquares = new ArrayList<HashMap<Point, Integer>>();
+        for (long key : topLefts()) {
+            HashMap<Point, Integer> tile = new HashMap<Point, Integer>();
+            tile.put(new Point(TileSet.x(key), TileSet.y(key)), maxSize);
+            maxSquares.add(tile);
+        }
+        return maxSquares;
+    }
+}
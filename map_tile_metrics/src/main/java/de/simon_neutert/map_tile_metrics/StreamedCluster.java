@@ -0,0 +1,33 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record summarizing one cluster found by {@link StreamingTileMetrics},
+ * reported as soon as no later row can add to it.
+ *
+ * @param firstX        the x-coordinate of the cluster's first tile in
+ *                      row-major order
+ * @param firstY        the y-coordinate of the cluster's first tile in
+ *                      row-major order
+ * @param size          the number of tiles of the cluster
+ * @param minX          the smallest x-coordinate of the cluster's tiles
+ * @param minY          the smallest y-coordinate of the cluster's tiles
+ * @param maxX          the largest x-coordinate of the cluster's tiles
+ * @param maxY          the largest y-coordinate of the cluster's tiles
+ * @param centroidX     the mean x-coordinate of the cluster's tiles
+ * @param centroidY     the mean y-coordinate of the cluster's tiles
+ * @param maxSquareSize the size of the largest square lying within the cluster
+ *                      and its border, or 0 if there is no square larger than
+ *                      3
+ */
+public record StreamedCluster(
+        int firstX,
+        int firstY,
+        int size,
+        int minX,
+        int minY,
+        int maxX,
+        int maxY,
+        double centroidX,
+        double centroidY,
+        int maxSquareSize) {
+}
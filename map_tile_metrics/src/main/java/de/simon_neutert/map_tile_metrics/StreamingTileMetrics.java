@@ -0,0 +1,435 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The StreamingTileMetrics class calculates the clusters and the max squares
+ * of tiles streamed in row-major order, keeping only three rows in memory.
+ *
+ * <p>
+ * Whether a tile is a cluster tile is known once the row below it is
+ * complete. The rows are therefore labelled one row behind the input, as
+ * {@link TileMetrics} does, but with a union-find forest over cluster slots
+ * instead of over all cluster tiles. A slot holds the size, the bounding box
+ * and the coordinate sums of its cluster. After every row all labels of the
+ * row point to the roots of their clusters, so merged slots and slots of
+ * clusters without tiles in the row can be recycled. A cluster without tiles
+ * in the latest labelled row cannot grow anymore; it is reported to the
+ * listener right away. The max squares are tracked by a {@link SquareScan},
+ * which only keeps the previous row.
+ * </p>
+ *
+ * <p>
+ * The memory needed is proportional to the widest rows and the clusters
+ * crossing them, not to the number of tiles, so tile sets larger than the
+ * heap can be streamed from a {@link TileFile} or from sorted
+ * newline-delimited JSON. Instead of the tiles of the max clusters only their
+ * summaries are kept.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * StreamingTileMetricsResult result = StreamingTileMetrics.calculate(
+ *         Paths.get("tiles/all-users.bin"), cluster -> clusterLog.write(cluster));
+ * int maxClusterSize = result.maxClusterSize();
+ * }
+ * </pre>
+ *
+ * @see StreamedCluster
+ * @see StreamingTileMetricsResult
+ * @see TileMetrics
+ *
+ */
+public class StreamingTileMetrics {
+    private final Consumer<StreamedCluster> listener;
+    private final SquareScan squares = new SquareScan(MaxSquares.MIN_SQUARE_SIZE);
+
+    private Row labelled = new Row();
+    private Row middle = new Row();
+    private Row incoming = new Row();
+    private long lastKey;
+    private long tileCount;
+    private boolean finished;
+
+    private int[] parents = new int[16];
+    private int[] sizes = new int[16];
+    private int[] minXs = new int[16];
+    private int[] minYs = new int[16];
+    private int[] maxXs = new int[16];
+    private int[] maxYs = new int[16];
+    private long[] sumXs = new long[16];
+    private long[] sumYs = new long[16];
+    private long[] firstKeys = new long[16];
+    private int[] squareSizes = new int[16];
+    private int[] marks = new int[16];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int[] liveSlots = new int[16];
+    private int liveCount;
+    private int stamp;
+
+    private int clusterCount;
+    private int maxClusterSize;
+    private final ArrayList<StreamedCluster> maxClusters = new ArrayList<StreamedCluster>();
+
+    /**
+     * Constructs a new StreamingTileMetrics object.
+     *
+     * @param listener receives every cluster once it is closed, or null
+     */
+    public StreamingTileMetrics(Consumer<StreamedCluster> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Calculates the metrics of a tile file, streaming it.
+     *
+     * @param path     the file written by {@link TileFile}
+     * @param listener receives every cluster once it is closed, or null
+     * @return the metrics
+     * @throws IOException if the file cannot be read or is not a valid tile
+     *                     file
+     */
+    public static StreamingTileMetricsResult calculate(Path path, Consumer<StreamedCluster> listener)
+            throws IOException {
+        StreamingTileMetrics metrics = new StreamingTileMetrics(listener);
+        TileFile.forEach(path, metrics::add);
+        return metrics.finish();
+    }
+
+    /**
+     * Calculates the metrics of newline-delimited JSON tiles sorted in
+     * row-major order, see {@link TileJsonReader#forEachLine}. The stream is
+     * not closed.
+     *
+     * @param in       the stream to read
+     * @param listener receives every cluster once it is closed, or null
+     * @return the metrics
+     * @throws IOException if the stream cannot be read, holds something else
+     *                     than tiles or is not sorted
+     */
+    public static StreamingTileMetricsResult calculateLines(InputStream in, Consumer<StreamedCluster> listener)
+            throws IOException {
+        StreamingTileMetrics metrics = new StreamingTileMetrics(listener);
+        try {
+            TileJsonReader.forEachLine(in, metrics::add);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Tiles are not sorted in row-major order", e);
+        }
+        return metrics.finish();
+    }
+
+    /**
+     * Adds the next tile. Tiles must be added in row-major order, i.e. sorted
+     * by y and then by x. A tile equal to the previous one is ignored.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @throws IllegalArgumentException if a coordinate is negative or the tile
+     *                                  comes before the previous one
+     * @throws IllegalStateException    if the stream is finished
+     */
+    public void add(int x, int y) {
+        if (finished) {
+            throw new IllegalStateException("Stream already finished");
+        }
+        if (x < 0 || y < 0) {
+            throw new IllegalArgumentException("Tiles must not have negative coordinates: " + x + ", " + y);
+        }
+        long key = TileSet.pack(x, y);
+        if (tileCount > 0 && key <= lastKey) {
+            if (key == lastKey) {
+                return;
+            }
+            throw new IllegalArgumentException("Tile " + x + ", " + y + " is not in row-major order");
+        }
+        if (tileCount == 0 || y != incoming.y) {
+            startRow(y);
+        }
+        incoming.append(x, squares.add(x));
+        lastKey = key;
+        tileCount++;
+    }
+
+    /**
+     * Labels the remaining rows, closes all clusters and returns the metrics.
+     *
+     * @return the metrics
+     * @throws IllegalStateException if the stream is finished already
+     */
+    public StreamingTileMetricsResult finish() {
+        if (finished) {
+            throw new IllegalStateException("Stream already finished");
+        }
+        finished = true;
+        for (int i = 0; i < 2; i++) {
+            labelMiddleRow();
+            rotate();
+        }
+        stamp++;
+        closeClusters();
+        return new StreamingTileMetricsResult(tileCount, clusterCount, maxClusters, maxClusterSize,
+                squares.maxSquares(), squares.maxSize());
+    }
+
+    /**
+     * @return the number of cluster slots allocated so far, recycled slots
+     *         counted once
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    private void startRow(int y) {
+        if (tileCount > 0) {
+            labelMiddleRow();
+            rotate();
+        }
+        incoming.y = y;
+        squares.startRow(y);
+    }
+
+    private void rotate() {
+        Row recycled = labelled;
+        labelled = middle;
+        middle = incoming;
+        incoming = recycled;
+        incoming.length = 0;
+    }
+
+    /**
+     * Labels the cluster tiles of the middle row, assigns the squares ending
+     * in the incoming row to their clusters and closes the clusters that have
+     * no tile in the middle row.
+     */
+    private void labelMiddleRow() {
+        boolean labelling = middle.length > 0;
+        Row above = labelling && labelled.length > 0 && labelled.y == middle.y - 1 ? labelled : null;
+        Row below = labelling && incoming.length > 0 && incoming.y == middle.y + 1 ? incoming : null;
+        stamp++;
+
+        int aboveCursor = 0;
+        int belowCursor = 0;
+        for (int i = 0; i < middle.length; i++) {
+            int x = middle.xs[i];
+            middle.labels[i] = -1;
+            if (above == null || below == null
+                    || i == 0 || middle.xs[i - 1] != x - 1
+                    || i + 1 == middle.length || middle.xs[i + 1] != x + 1) {
+                continue;
+            }
+            aboveCursor = above.seek(aboveCursor, x);
+            if (aboveCursor == above.length || above.xs[aboveCursor] != x) {
+                continue;
+            }
+            belowCursor = below.seek(belowCursor, x);
+            if (belowCursor == below.length || below.xs[belowCursor] != x) {
+                continue;
+            }
+
+            int root = middle.labels[i - 1] >= 0 ? find(middle.labels[i - 1]) : -1;
+            if (above.labels[aboveCursor] >= 0) {
+                int aboveRoot = find(above.labels[aboveCursor]);
+                root = root < 0 ? aboveRoot : union(root, aboveRoot);
+            }
+            if (root < 0) {
+                root = allocate(TileSet.pack(x, middle.y));
+            }
+            sizes[root]++;
+            minXs[root] = Math.min(minXs[root], x);
+            minYs[root] = Math.min(minYs[root], middle.y);
+            maxXs[root] = Math.max(maxXs[root], x);
+            maxYs[root] = Math.max(maxYs[root], middle.y);
+            sumXs[root] += x;
+            sumYs[root] += middle.y;
+            middle.labels[i] = root;
+        }
+
+        for (int i = 0; i < middle.length; i++) {
+            if (middle.labels[i] >= 0) {
+                middle.labels[i] = find(middle.labels[i]);
+                marks[middle.labels[i]] = stamp;
+            }
+        }
+
+        if (below != null && above != null) {
+            int cursor = 0;
+            for (int i = 0; i < below.length; i++) {
+                if (below.sizes[i] < MaxSquares.MIN_SQUARE_SIZE) {
+                    continue;
+                }
+                cursor = middle.seek(cursor, below.xs[i] - 1);
+                int label = middle.labels[cursor];
+                squareSizes[label] = Math.max(squareSizes[label], below.sizes[i]);
+            }
+        }
+        closeClusters();
+    }
+
+    /**
+     * Reports the clusters not marked in the latest labelled row and recycles
+     * their slots together with the slots merged into other clusters.
+     */
+    private void closeClusters() {
+        int kept = 0;
+        for (int i = 0; i < liveCount; i++) {
+            int slot = liveSlots[i];
+            if (parents[slot] == slot && marks[slot] == stamp) {
+                liveSlots[kept++] = slot;
+                continue;
+            }
+            if (parents[slot] == slot) {
+                close(slot);
+            }
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+        liveCount = kept;
+    }
+
+    private void close(int slot) {
+        StreamedCluster cluster = new StreamedCluster(
+                TileSet.x(firstKeys[slot]),
+                TileSet.y(firstKeys[slot]),
+                sizes[slot],
+                minXs[slot],
+                minYs[slot],
+                maxXs[slot],
+                maxYs[slot],
+                (double) sumXs[slot] / sizes[slot],
+                (double) sumYs[slot] / sizes[slot],
+                squareSizes[slot]);
+        clusterCount++;
+        if (cluster.size() > maxClusterSize) {
+            maxClusterSize = cluster.size();
+            maxClusters.clear();
+        }
+        if (cluster.size() == maxClusterSize) {
+            maxClusters.add(cluster);
+        }
+        if (listener != null) {
+            listener.accept(cluster);
+        }
+    }
+
+    private int allocate(long firstKey) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == parents.length) {
+                grow(slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        parents[slot] = slot;
+        sizes[slot] = 0;
+        minXs[slot] = Integer.MAX_VALUE;
+        minYs[slot] = Integer.MAX_VALUE;
+        maxXs[slot] = Integer.MIN_VALUE;
+        maxYs[slot] = Integer.MIN_VALUE;
+        sumXs[slot] = 0;
+        sumYs[slot] = 0;
+        firstKeys[slot] = firstKey;
+        squareSizes[slot] = 0;
+        marks[slot] = 0;
+        if (liveCount == liveSlots.length) {
+            liveSlots = Arrays.copyOf(liveSlots, liveCount * 2);
+        }
+        liveSlots[liveCount++] = slot;
+        return slot;
+    }
+
+    private void grow(int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        minXs = Arrays.copyOf(minXs, capacity);
+        minYs = Arrays.copyOf(minYs, capacity);
+        maxXs = Arrays.copyOf(maxXs, capacity);
+        maxYs = Arrays.copyOf(maxYs, capacity);
+        sumXs = Arrays.copyOf(sumXs, capacity);
+        sumYs = Arrays.copyOf(sumYs, capacity);
+        firstKeys = Arrays.copyOf(firstKeys, capacity);
+        squareSizes = Arrays.copyOf(squareSizes, capacity);
+        marks = Arrays.copyOf(marks, capacity);
+    }
+
+    private int find(int slot) {
+        while (parents[slot] != slot) {
+            parents[slot] = parents[parents[slot]];
+            slot = parents[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Joins two roots, keeping the larger cluster's slot as the root.
+     *
+     * @return the root of the joined cluster
+     */
+    private int union(int a, int b) {
+        if (a == b) {
+            return a;
+        }
+        int root = sizes[a] >= sizes[b] ? a : b;
+        int child = root == a ? b : a;
+        parents[child] = root;
+        sizes[root] += sizes[child];
+        minXs[root] = Math.min(minXs[root], minXs[child]);
+        minYs[root] = Math.min(minYs[root], minYs[child]);
+        maxXs[root] = Math.max(maxXs[root], maxXs[child]);
+        maxYs[root] = Math.max(maxYs[root], maxYs[child]);
+        sumXs[root] += sumXs[child];
+        sumYs[root] += sumYs[child];
+        firstKeys[root] = Math.min(firstKeys[root], firstKeys[child]);
+        squareSizes[root] = Math.max(squareSizes[root], squareSizes[child]);
+        return root;
+    }
+
+    /**
+     * One row of the sliding window: the x-coordinates of its tiles, their
+     * cluster slots once labelled and the size of the largest square ending
+     * at each of them.
+     */
+    private static class Row {
+        int y;
+        int length;
+        int[] xs = new int[16];
+        int[] labels = new int[16];
+        int[] sizes = new int[16];
+
+        void append(int x, int size) {
+            if (length == xs.length) {
+                xs = Arrays.copyOf(xs, length * 2);
+                labels = Arrays.copyOf(labels, length * 2);
+                sizes = Arrays.copyOf(sizes, length * 2);
+            }
+            xs[length] = x;
+            sizes[length] = size;
+            length++;
+        }
+
+        /**
+         * @return the index of the first tile with an x-coordinate of at least
+         *         x, starting at the cursor
+         */
+        int seek(int cursor, int x) {
+            while (cursor < length && xs[cursor] < x) {
+                cursor++;
+            }
+            return cursor;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A record holding the metrics calculated by {@link StreamingTileMetrics}.
+ *
+ * @param tileCount      the number of distinct tiles streamed
+ * @param clusterCount   the number of clusters
+ * @param maxClusters    the summaries of the clusters of the max size, in the
+ *                       order they were closed
+ * @param maxClusterSize the size of the max clusters, or 0 if there is no
+ *                       cluster
+ * @param maxSquares     the max squares in the shape
+ *                       {@link MaxSquares#calculate()} returns
+ * @param maxSquareSize  the size of the max squares, or 0 if there is no square
+ *                       larger than 3
+ */
+public record StreamingTileMetricsResult(
+        long tileCount,
+        int clusterCount,
+        ArrayList<StreamedCluster> maxClusters,
+        int maxClusterSize,
+        ArrayList<HashMap<Point, Integer>> maxSquares,
+        int maxSquareSize) {
+}
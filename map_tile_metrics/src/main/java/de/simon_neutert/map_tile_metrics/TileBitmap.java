@@ -0,0 +1,626 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of tiles stored as bitmaps outside of the Java heap, for tile sets
+ * too large for a {@link TileSet}.
+ *
+ * <p>
+ * The tile space is split into chunks of 256 x 256 tiles. A chunk is only
+ * allocated once it holds a tile, and then needs one bit per tile, 8 KiB in
+ * total, no matter how many of its tiles are visited. Chunks are allocated in
+ * slabs of 64 from direct {@link ByteBuffer}s, so the tiles themselves never
+ * add to the heap. The chunks are found through a sparse directory, a
+ * {@link TileSet} of chunk coordinates whose index is the chunk's position in
+ * the slabs.
+ * </p>
+ *
+ * <p>
+ * The cluster tiles are found 64 tiles at a time by combining every word of a
+ * chunk with its neighboring words. Each chunk is first copied into a heap
+ * array padded with the adjacent edges of its eight neighboring chunks, so
+ * the kernel is a plain loop of shifts and ands without any bounds checks,
+ * which the JIT compiler can unroll and vectorize. The eight neighbor border
+ * of a set of tiles is found the same way by {@link #expandBorder(TileBitmap)}.
+ * The max squares are found by feeding
+ * the tiles to a {@link SquareScan} straight from the chunks, in row-major
+ * order. Only the cluster tiles are copied onto the heap, to collect them into
+ * their clusters.
+ * </p>
+ *
+ * <p>
+ * Bitmaps of several users are combined chunk by chunk with
+ * {@link #union(Collection)}, {@link #intersection(Collection)} and
+ * {@link #difference(Collection)}, a word at a time, and the metrics of the
+ * result are calculated on the result directly.
+ * </p>
+ *
+ * <p>
+ * The direct memory is released once the TileBitmap is garbage collected. A
+ * TileBitmap is not thread-safe.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileBitmap tiles = new TileBitmap();
+ * tiles.add(x, y);
+ * TileMetricsResult result = tiles.calculate();
+ * }
+ * </pre>
+ *
+ * @see TileMetrics
+ * @see TileSet
+ *
+ */
+public class TileBitmap {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int WORDS_PER_ROW = CHUNK_SIZE / Long.SIZE;
+    private static final int WORDS_PER_CHUNK = CHUNK_SIZE * WORDS_PER_ROW;
+    private static final int SLAB_SHIFT = 6;
+    private static final int CHUNKS_PER_SLAB = 1 << SLAB_SHIFT;
+    private static final int PADDED_ROW = WORDS_PER_ROW + 2;
+    private static final int PADDED_WORDS = (CHUNK_SIZE + 2) * PADDED_ROW;
+
+    private final TileSet directory = new TileSet();
+    private final ArrayList<LongBuffer> slabs = new ArrayList<LongBuffer>();
+    private long size;
+
+    /**
+     * Constructs an empty TileBitmap.
+     */
+    public TileBitmap() {
+    }
+
+    /**
+     * Constructs a TileBitmap holding the given tiles.
+     *
+     * @param tiles the tiles
+     */
+    public TileBitmap(TileSet tiles) {
+        for (int i = 0; i < tiles.size(); i++) {
+            add(tiles.xAt(i), tiles.yAt(i));
+        }
+    }
+
+    /**
+     * Adds a tile.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile was not part of the bitmap yet
+     * @throws IllegalArgumentException if a coordinate is negative
+     */
+    public boolean add(int x, int y) {
+        if (x < 0 || y < 0) {
+            throw new IllegalArgumentException("coordinates must not be negative");
+        }
+        int chunk = chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, true);
+        int index = wordIndex(chunk, y & CHUNK_MASK, (x & CHUNK_MASK) >> 6);
+        LongBuffer slab = slabs.get(chunk >> SLAB_SHIFT);
+        long word = slab.get(index);
+        long bit = 1L << x;
+        if ((word & bit) != 0) {
+            return false;
+        }
+        slab.put(index, word | bit);
+        size++;
+        return true;
+    }
+
+    /**
+     * Checks whether a tile is part of the bitmap.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile is part of the bitmap
+     */
+    public boolean contains(int x, int y) {
+        if (x < 0 || y < 0) {
+            return false;
+        }
+        int chunk = chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, false);
+        return chunk >= 0 && (word(chunk, y & CHUNK_MASK, (x & CHUNK_MASK) >> 6) & (1L << x)) != 0;
+    }
+
+    /**
+     * @return the number of tiles
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the bitmap holds no tile
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of allocated chunks
+     */
+    public int chunkCount() {
+        return directory.size();
+    }
+
+    /**
+     * Passes every tile to the consumer, in row-major order.
+     *
+     * @param consumer the consumer
+     */
+    public void forEach(TileSet.TileConsumer consumer) {
+        long[] chunkKeys = directory.toSortedKeys();
+        int[] chunks = new int[chunkKeys.length];
+        for (int i = 0; i < chunkKeys.length; i++) {
+            chunks[i] = directory.indexOf(TileSet.x(chunkKeys[i]), TileSet.y(chunkKeys[i]));
+        }
+
+        int start = 0;
+        while (start < chunkKeys.length) {
+            int chunkY = TileSet.y(chunkKeys[start]);
+            int end = start;
+            while (end < chunkKeys.length && TileSet.y(chunkKeys[end]) == chunkY) {
+                end++;
+            }
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                int y = (chunkY << CHUNK_SHIFT) + row;
+                for (int i = start; i < end; i++) {
+                    int baseX = TileSet.x(chunkKeys[i]) << CHUNK_SHIFT;
+                    for (int w = 0; w < WORDS_PER_ROW; w++) {
+                        long bits = word(chunks[i], row, w);
+                        while (bits != 0) {
+                            consumer.accept(baseX + w * Long.SIZE + Long.numberOfTrailingZeros(bits), y);
+                            bits &= bits - 1;
+                        }
+                    }
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Finds the tiles whose four neighbors are part of the bitmap.
+     *
+     * @return a new TileBitmap holding the cluster tiles
+     */
+    public TileBitmap clusterTiles() {
+        TileBitmap clusterTiles = new TileBitmap();
+        long[] padded = new long[PADDED_WORDS];
+        long[] words = new long[WORDS_PER_CHUNK];
+        for (int chunk = 0; chunk < directory.size(); chunk++) {
+            int chunkX = directory.xAt(chunk);
+            int chunkY = directory.yAt(chunk);
+            loadPadded(chunkX, chunkY, padded);
+            if (clusterKernel(padded, words)) {
+                clusterTiles.storeChunk(chunkX, chunkY, words);
+            }
+        }
+        return clusterTiles;
+    }
+
+    /**
+     * Adds the border to the tiles of this bitmap: every one of the given tiles
+     * among the eight neighbors of a tile of this bitmap. For the cluster tiles
+     * and all visited tiles this yields all clusters with their borders at
+     * once, which {@link MaxSquares#calculate()} collects cluster by cluster.
+     *
+     * @param tiles the tiles the border may consist of, usually all visited
+     *              tiles, holding all tiles of this bitmap
+     * @return a new TileBitmap holding the given tiles that are a tile of this
+     *         bitmap or one of its neighbors
+     */
+    public TileBitmap expandBorder(TileBitmap tiles) {
+        TileBitmap bordered = new TileBitmap();
+        long[] padded = new long[PADDED_WORDS];
+        long[] words = new long[WORDS_PER_CHUNK];
+        for (int chunk = 0; chunk < tiles.directory.size(); chunk++) {
+            int chunkX = tiles.directory.xAt(chunk);
+            int chunkY = tiles.directory.yAt(chunk);
+            // a border tile lies in a chunk of the given tiles, next to a
+            // chunk of this bitmap
+            if (!loadPadded(chunkX, chunkY, padded)) {
+                continue;
+            }
+            dilateKernel(padded, words);
+            LongBuffer slab = tiles.slabs.get(chunk >> SLAB_SHIFT);
+            int offset = wordIndex(chunk, 0, 0);
+            boolean any = false;
+            for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+                words[i] &= slab.get(offset + i);
+                any |= words[i] != 0;
+            }
+            if (any) {
+                bordered.storeChunk(chunkX, chunkY, words);
+            }
+        }
+        return bordered;
+    }
+
+    /**
+     * Combines bitmaps into the tiles visited in any of them, e.g. the tiles of
+     * a team.
+     *
+     * @param bitmaps the bitmaps
+     * @return a new TileBitmap holding the union of the bitmaps
+     */
+    public static TileBitmap union(Collection<TileBitmap> bitmaps) {
+        TileSet chunks = new TileSet();
+        for (TileBitmap bitmap : bitmaps) {
+            for (int chunk = 0; chunk < bitmap.directory.size(); chunk++) {
+                chunks.add(bitmap.directory.xAt(chunk), bitmap.directory.yAt(chunk));
+            }
+        }
+
+        TileBitmap union = new TileBitmap();
+        long[] words = new long[WORDS_PER_CHUNK];
+        long[] other = new long[WORDS_PER_CHUNK];
+        for (int i = 0; i < chunks.size(); i++) {
+            Arrays.fill(words, 0);
+            for (TileBitmap bitmap : bitmaps) {
+                if (bitmap.loadChunk(chunks.xAt(i), chunks.yAt(i), other)) {
+                    for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                        words[w] |= other[w];
+                    }
+                }
+            }
+            union.storeChunk(chunks.xAt(i), chunks.yAt(i), words);
+        }
+        return union;
+    }
+
+    /**
+     * Combines bitmaps into the tiles visited in all of them, e.g. the tiles
+     * shared by a group of friends.
+     *
+     * @param bitmaps the bitmaps
+     * @return a new TileBitmap holding the intersection of the bitmaps
+     * @throws IllegalArgumentException if there is no bitmap
+     */
+    public static TileBitmap intersection(Collection<TileBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            throw new IllegalArgumentException("bitmaps must not be empty");
+        }
+        // only chunks of the bitmap with the fewest chunks can be shared
+        TileBitmap smallest = null;
+        for (TileBitmap bitmap : bitmaps) {
+            if (smallest == null || bitmap.directory.size() < smallest.directory.size()) {
+                smallest = bitmap;
+            }
+        }
+
+        TileBitmap intersection = new TileBitmap();
+        long[] words = new long[WORDS_PER_CHUNK];
+        long[] other = new long[WORDS_PER_CHUNK];
+        for (int chunk = 0; chunk < smallest.directory.size(); chunk++) {
+            int chunkX = smallest.directory.xAt(chunk);
+            int chunkY = smallest.directory.yAt(chunk);
+            smallest.loadChunk(chunkX, chunkY, words);
+            long any = -1;
+            for (TileBitmap bitmap : bitmaps) {
+                if (bitmap == smallest) {
+                    continue;
+                }
+                if (!bitmap.loadChunk(chunkX, chunkY, other)) {
+                    any = 0;
+                    break;
+                }
+                any = 0;
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    words[w] &= other[w];
+                    any |= words[w];
+                }
+                if (any == 0) {
+                    break;
+                }
+            }
+            if (any != 0) {
+                intersection.storeChunk(chunkX, chunkY, words);
+            }
+        }
+        return intersection;
+    }
+
+    /**
+     * Removes the tiles of another bitmap, e.g. to find the tiles only one
+     * user has.
+     *
+     * @param other the bitmap whose tiles to remove
+     * @return a new TileBitmap holding the tiles of this bitmap that are not
+     *         part of the other
+     */
+    public TileBitmap difference(TileBitmap other) {
+        return difference(List.of(other));
+    }
+
+    /**
+     * Removes the tiles of other bitmaps, e.g. to find the tiles no one else
+     * of a team has.
+     *
+     * @param others the bitmaps whose tiles to remove
+     * @return a new TileBitmap holding the tiles of this bitmap that are not
+     *         part of any of the others
+     */
+    public TileBitmap difference(Collection<TileBitmap> others) {
+        TileBitmap difference = new TileBitmap();
+        long[] words = new long[WORDS_PER_CHUNK];
+        long[] other = new long[WORDS_PER_CHUNK];
+        for (int chunk = 0; chunk < directory.size(); chunk++) {
+            int chunkX = directory.xAt(chunk);
+            int chunkY = directory.yAt(chunk);
+            loadChunk(chunkX, chunkY, words);
+            for (TileBitmap bitmap : others) {
+                if (bitmap.loadChunk(chunkX, chunkY, other)) {
+                    for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                        words[w] &= ~other[w];
+                    }
+                }
+            }
+            long any = 0;
+            for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                any |= words[w];
+            }
+            if (any != 0) {
+                difference.storeChunk(chunkX, chunkY, words);
+            }
+        }
+        return difference;
+    }
+
+    /**
+     * Counts the tiles this bitmap shares with another, without building the
+     * intersection.
+     *
+     * @param other the other bitmap
+     * @return the number of tiles part of both bitmaps
+     */
+    public long intersectionSize(TileBitmap other) {
+        long count = 0;
+        long[] words = new long[WORDS_PER_CHUNK];
+        long[] otherWords = new long[WORDS_PER_CHUNK];
+        for (int chunk = 0; chunk < directory.size(); chunk++) {
+            int chunkX = directory.xAt(chunk);
+            int chunkY = directory.yAt(chunk);
+            if (!other.loadChunk(chunkX, chunkY, otherWords)) {
+                continue;
+            }
+            loadChunk(chunkX, chunkY, words);
+            for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                count += Long.bitCount(words[w] & otherWords[w]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes the cluster tiles of a chunk.
+     *
+     * @param padded the chunk with its neighbors, see
+     *               {@link #loadPadded(int, int, long[])}
+     * @param words  receives the cluster tiles of the chunk, one row after the
+     *               other
+     * @return true if the chunk holds a cluster tile
+     */
+    static boolean clusterKernel(long[] padded, long[] words) {
+        long any = 0;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            int base = (row + 1) * PADDED_ROW + 1;
+            for (int w = 0; w < WORDS_PER_ROW; w++) {
+                int i = base + w;
+                long center = padded[i];
+                long cluster = center
+                        & ((center << 1) | (padded[i - 1] >>> 63))
+                        & ((center >>> 1) | (padded[i + 1] << 63))
+                        & padded[i - PADDED_ROW]
+                        & padded[i + PADDED_ROW];
+                words[row * WORDS_PER_ROW + w] = cluster;
+                any |= cluster;
+            }
+        }
+        return any != 0;
+    }
+
+    /**
+     * Computes the tiles of a chunk that are a tile or one of its eight
+     * neighbors.
+     *
+     * @param padded the chunk with its neighbors, see
+     *               {@link #loadPadded(int, int, long[])}
+     * @param words  receives the dilated chunk, one row after the other
+     */
+    static void dilateKernel(long[] padded, long[] words) {
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            int base = (row + 1) * PADDED_ROW + 1;
+            for (int w = 0; w < WORDS_PER_ROW; w++) {
+                int i = base + w;
+                words[row * WORDS_PER_ROW + w] = horizontal(padded, i - PADDED_ROW)
+                        | horizontal(padded, i)
+                        | horizontal(padded, i + PADDED_ROW);
+            }
+        }
+    }
+
+    /**
+     * @return the tiles of a padded word and their left and right neighbors
+     */
+    private static long horizontal(long[] padded, int i) {
+        long word = padded[i];
+        return word | (word << 1) | (padded[i - 1] >>> 63) | (word >>> 1) | (padded[i + 1] << 63);
+    }
+
+    /**
+     * Copies a chunk into a padded array of 258 rows of 6 words, surrounded by
+     * the adjacent row, column and corner of its eight neighboring chunks, so
+     * the kernels need no bounds checks. Missing chunks read as empty.
+     *
+     * @return true if the chunk or any of its neighbors is allocated
+     */
+    private boolean loadPadded(int chunkX, int chunkY, long[] padded) {
+        Arrays.fill(padded, 0);
+        boolean any = false;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (chunkX + dx < 0 || chunkY + dy < 0) {
+                    continue;
+                }
+                int chunk = chunk(chunkX + dx, chunkY + dy, false);
+                if (chunk < 0) {
+                    continue;
+                }
+                any = true;
+                int firstRow = dy < 0 ? CHUNK_MASK : 0;
+                int rowCount = dy == 0 ? CHUNK_SIZE : 1;
+                int paddedRow = dy < 0 ? 0 : dy == 0 ? 1 : CHUNK_SIZE + 1;
+                int firstWord = dx < 0 ? WORDS_PER_ROW - 1 : 0;
+                int wordCount = dx == 0 ? WORDS_PER_ROW : 1;
+                int paddedWord = dx < 0 ? 0 : dx == 0 ? 1 : WORDS_PER_ROW + 1;
+                LongBuffer slab = slabs.get(chunk >> SLAB_SHIFT);
+                for (int row = 0; row < rowCount; row++) {
+                    slab.get(wordIndex(chunk, firstRow + row, firstWord),
+                            padded, (paddedRow + row) * PADDED_ROW + paddedWord, wordCount);
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Copies the words of a chunk.
+     *
+     * @return false if the chunk is not allocated, leaving the words as they
+     *         are
+     */
+    private boolean loadChunk(int chunkX, int chunkY, long[] words) {
+        int chunk = chunk(chunkX, chunkY, false);
+        if (chunk < 0) {
+            return false;
+        }
+        slabs.get(chunk >> SLAB_SHIFT).get(wordIndex(chunk, 0, 0), words, 0, WORDS_PER_CHUNK);
+        return true;
+    }
+
+    /**
+     * Replaces the words of a chunk, allocating it if needed.
+     */
+    private void storeChunk(int chunkX, int chunkY, long[] words) {
+        int chunk = chunk(chunkX, chunkY, true);
+        LongBuffer slab = slabs.get(chunk >> SLAB_SHIFT);
+        int offset = wordIndex(chunk, 0, 0);
+        for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+            size += Long.bitCount(words[i]) - Long.bitCount(slab.get(offset + i));
+        }
+        slab.put(offset, words, 0, WORDS_PER_CHUNK);
+    }
+
+    /**
+     * Calculates the clusters, max clusters and max squares, like
+     * {@link TileMetrics#calculate()}.
+     *
+     * @return the clusters, max clusters and max squares
+     */
+    public TileMetricsResult calculate() {
+        Instrumentation.Timer timer = Instrumentation.start(Phase.DETECT_CLUSTER_POINTS);
+        TileSet clusterTiles = clusterTiles().toTileSet();
+        timer.stop((int) Math.min(size, Integer.MAX_VALUE), 0, size);
+
+        timer = Instrumentation.start(Phase.GROUP_CLUSTERS);
+        ClusterLabels labels = new ClusterLabels(clusterTiles);
+        ArrayList<TileSet> clusters = labels.clusters(clusterTiles);
+        ArrayList<TileSet> maxClusters = new ArrayList<TileSet>();
+        for (int label = 0; label < labels.count(); label++) {
+            if (labels.size(label) == labels.maxSize()) {
+                maxClusters.add(clusters.get(label));
+            }
+        }
+        timer.stop(clusterTiles.size(), clusters.size(), clusterTiles.size());
+
+        // squares of at least 3 tiles lie within a cluster and its border, so
+        // scanning all tiles finds the max squares of the bordered clusters
+        timer = Instrumentation.start(Phase.SCAN_SQUARES);
+        SquareScan squares = new SquareScan(MaxSquares.MIN_SQUARE_SIZE);
+        int[] currentY = { -1 };
+        forEach((x, y) -> {
+            if (y != currentY[0]) {
+                currentY[0] = y;
+                squares.startRow(y);
+            }
+            squares.add(x);
+        });
+        timer.stop((int) Math.min(size, Integer.MAX_VALUE), clusters.size(), squares.tileCount());
+
+        return new TileMetricsResult(
+                clusters,
+                maxClusters,
+                labels.count() > 0 ? labels.maxSize() : 0,
+                squares.maxSquares(),
+                squares.maxSize());
+    }
+
+    /**
+     * @return the tiles as TileRows, in row-major order
+     * @throws IllegalStateException if there are too many tiles for TileRows
+     */
+    public TileRows toRows() {
+        long[] keys = new long[heapSize()];
+        int[] n = { 0 };
+        forEach((x, y) -> keys[n[0]++] = TileSet.pack(x, y));
+        return new TileRows(keys);
+    }
+
+    /**
+     * @return a new TileSet holding the tiles, added in row-major order
+     * @throws IllegalStateException if there are too many tiles for a TileSet
+     */
+    public TileSet toTileSet() {
+        TileSet tiles = new TileSet(heapSize());
+        forEach(tiles::add);
+        return tiles;
+    }
+
+    private int heapSize() {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many tiles for the heap: " + size);
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return the index of the chunk, or -1 if it is not allocated and create
+     *         is false
+     */
+    private int chunk(int chunkX, int chunkY, boolean create) {
+        int chunk = directory.indexOf(chunkX, chunkY);
+        if (chunk >= 0 || !create) {
+            return chunk;
+        }
+        chunk = directory.size();
+        directory.add(chunkX, chunkY);
+        if (chunk >> SLAB_SHIFT == slabs.size()) {
+            slabs.add(ByteBuffer.allocateDirect(CHUNKS_PER_SLAB * WORDS_PER_CHUNK * Long.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer());
+        }
+        return chunk;
+    }
+
+    private long word(int chunk, int row, int w) {
+        return slabs.get(chunk >> SLAB_SHIFT).get(wordIndex(chunk, row, w));
+    }
+
+    private static int wordIndex(int chunk, int row, int w) {
+        return (chunk & (CHUNKS_PER_SLAB - 1)) * WORDS_PER_CHUNK + row * WORDS_PER_ROW + w;
+    }
+}
@@ -0,0 +1,274 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes tiles in a compact, versioned binary format.
+ *
+ * <p>
+ * A tile file starts with a header of three big-endian ints: the magic number
+ * {@code MTTF}, the format version and the number of tiles. It is followed by
+ * the packed keys of the tiles (see {@link TileSet#pack(int, int)}) in
+ * row-major order, each stored as the difference to the previous key in an
+ * unsigned LEB128 varint. Tiles next to each other in a row take a single
+ * byte.
+ * </p>
+ *
+ * <p>
+ * Reading maps the file into memory with {@link FileChannel#map} and decodes
+ * the keys straight into the arrays of a {@link TileRows} or {@link TileSet},
+ * without creating any {@link Point} and without sorting again.
+ * {@link #forEach(Path, TileSet.TileConsumer)} streams the tiles instead, for
+ * files too large for memory, e.g. into a {@link StreamingTileMetrics}.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileFile.write(tiles, path);
+ * TileRows rows = TileFile.read(path);
+ * ArrayList<HashMap<Point, Integer>> squares = SquareScan.calculate(rows, 4);
+ * }
+ * </pre>
+ *
+ * @see TileRows
+ * @see TileSet
+ *
+ */
+public final class TileFile {
+    /**
+     * The magic number every tile file starts with, "MTTF" in ASCII.
+     */
+    public static final int MAGIC = 0x4D545446;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private TileFile() {
+    }
+
+    /**
+     * Writes the tiles to a file, replacing an existing file.
+     *
+     * @param tiles the tiles to write
+     * @param path  the file to write
+     * @throws IOException if writing fails
+     */
+    public static void write(TileSet tiles, Path path) throws IOException {
+        write(tiles.toSortedKeys(), path);
+    }
+
+    /**
+     * Writes the tiles to a file, replacing an existing file.
+     *
+     * @param rows the tiles to write
+     * @param path the file to write
+     * @throws IOException if writing fails
+     */
+    public static void write(TileRows rows, Path path) throws IOException {
+        long[] keys = new long[rows.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rows.keyAt(i);
+        }
+        write(keys, path);
+    }
+
+    private static void write(long[] sortedKeys, Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sortedKeys.length);
+            long previous = 0;
+            for (long key : sortedKeys) {
+                long delta = key - previous;
+                while ((delta & ~0x7FL) != 0) {
+                    out.write((int) ((delta & 0x7F) | 0x80));
+                    delta >>>= 7;
+                }
+                out.write((int) delta);
+                previous = key;
+            }
+        }
+    }
+
+    /**
+     * Reads the tiles of a file as rows.
+     *
+     * @param path the file to read
+     * @return the tiles of the file
+     * @throws IOException if the file cannot be read or is not a valid tile
+     *                     file
+     */
+    public static TileRows read(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        long[] keys = new long[readHeader(buffer, path)];
+        long previous = 0;
+        for (int i = 0; i < keys.length; i++) {
+            previous = nextKey(previous, readVarint(buffer, path), i, path);
+            keys[i] = previous;
+        }
+        checkEnd(buffer, path);
+        return new TileRows(keys);
+    }
+
+    /**
+     * Reads the tiles of a file into a TileSet, with the tiles indexed in
+     * row-major order.
+     *
+     * @param path the file to read
+     * @return the tiles of the file
+     * @throws IOException if the file cannot be read or is not a valid tile
+     *                     file
+     */
+    public static TileSet readTileSet(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        int count = readHeader(buffer, path);
+        TileSet tiles = new TileSet(count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous = nextKey(previous, readVarint(buffer, path), i, path);
+            tiles.add(TileSet.x(previous), TileSet.y(previous));
+        }
+        checkEnd(buffer, path);
+        return tiles;
+    }
+
+    /**
+     * Streams the tiles of a file in row-major order, without mapping the file
+     * or holding its tiles in memory. Files of any size can be streamed.
+     *
+     * @param path     the file to read
+     * @param consumer receives every tile
+     * @return the number of tiles of the file
+     * @throws IOException if the file cannot be read or is not a valid tile
+     *                     file
+     */
+    public static int forEach(Path path, TileSet.TileConsumer consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int count;
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a tile file: " + path);
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported tile file version " + version + ": " + path);
+                }
+                count = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("Not a tile file: " + path, e);
+            }
+            if (count < 0) {
+                throw new IOException("Corrupt tile file: " + path);
+            }
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous = nextKey(previous, readVarint(in, path), i, path);
+                consumer.accept(TileSet.x(previous), TileSet.y(previous));
+            }
+            if (in.read() >= 0) {
+                throw new IOException("Corrupt tile file: " + path);
+            }
+            return count;
+        }
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tile file too large: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int readHeader(MappedByteBuffer buffer, Path path) throws IOException {
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a tile file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported tile file version " + version + ": " + path);
+        }
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IOException("Corrupt tile file: " + path);
+        }
+        if (count > buffer.remaining()) {
+            // every key takes at least one byte
+            throw new IOException("Truncated tile file: " + path);
+        }
+        return count;
+    }
+
+    /**
+     * Adds a decoded delta to the previous key. Keys must be strictly
+     * ascending and have non-negative coordinates, as {@link TileRows} expects.
+     *
+     * @param previous the previous key, 0 before the first one
+     * @param delta    the decoded delta
+     * @param index    the index of the key
+     * @param path     the file, for the message
+     * @return the key
+     * @throws IOException if the key is out of order or has a negative
+     *                     coordinate
+     */
+    private static long nextKey(long previous, long delta, int index, Path path) throws IOException {
+        long key = previous + delta;
+        if ((index > 0 && key <= previous) || key < 0 || TileSet.x(key) < 0) {
+            throw new IOException("Corrupt tile file: " + path);
+        }
+        return key;
+    }
+
+    private static long readVarint(MappedByteBuffer buffer, Path path) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated tile file: " + path);
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt tile file: " + path);
+    }
+
+    private static long readVarint(InputStream in, Path path) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Truncated tile file: " + path);
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt tile file: " + path);
+    }
+
+    private static void checkEnd(MappedByteBuffer buffer, Path path) throws IOException {
+        if (buffer.hasRemaining()) {
+            throw new IOException("Corrupt tile file: " + path);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record identifying the content of a {@link TileSet}, independent of the
+ * order the tiles were added in.
+ *
+ * <p>
+ * The two lanes are sums of two independent 64 bit hashes of the packed keys
+ * of all tiles, so equal sets always have equal fingerprints and a fingerprint
+ * can be updated with every added tile. It is meant to tell tile sets apart,
+ * not to resist deliberately crafted collisions.
+ * </p>
+ *
+ * @param size the number of tiles
+ * @param low  the sum of the first hash of every tile
+ * @param high the sum of the second hash of every tile
+ * @see TileSet#fingerprint()
+ */
+public record TileFingerprint(int size, long low, long high) {
+}
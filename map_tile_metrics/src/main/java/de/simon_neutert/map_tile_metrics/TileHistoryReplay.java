@@ -0,0 +1,125 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The TileHistoryReplay class calculates how the metrics of a history evolved,
+ * visit by visit, in a single pass.
+ *
+ * <p>
+ * The visits are added one by one to a {@link TileMetricsSession}, which
+ * keeps the clusters in a {@link DisjointSets} forest and only recalculates
+ * the squares next to every new tile. The metrics are read after the last
+ * visit of every timestamp, so visits sharing a timestamp, e.g. the tiles of
+ * one activity, form a single entry of the timeline. Replaying n visits thus
+ * costs about as much as calculating the metrics of all n tiles once, instead
+ * of recalculating them for every prefix of the history.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * ArrayList<TileTimelineEntry> timeline = new TileHistoryReplay(visits).calculate();
+ * ArrayList<TileTimelineEntry> steps = new TileHistoryReplay(visits).calculateChanges();
+ * }
+ * </pre>
+ *
+ * @see TileMetricsSession
+ * @see TileTimelineEntry
+ *
+ */
+public class TileHistoryReplay {
+    private final List<TileVisit> visits;
+
+    /**
+     * Constructs a new TileHistoryReplay.
+     *
+     * @param visits the visits, ordered by their timestamp
+     */
+    public TileHistoryReplay(List<TileVisit> visits) {
+        this.visits = visits;
+    }
+
+    /**
+     * Calculates the metrics after every timestamp at which a tile was
+     * visited for the first time.
+     *
+     * @return the timeline, ordered by timestamp
+     * @throws IllegalArgumentException if the visits are not ordered by their
+     *                                  timestamp
+     */
+    public ArrayList<TileTimelineEntry> calculate() {
+        ArrayList<TileTimelineEntry> timeline = new ArrayList<TileTimelineEntry>();
+        replay(false, timeline::add);
+        return timeline;
+    }
+
+    /**
+     * Calculates the metrics after every timestamp at which the max clusters
+     * or the max squares grew, which is all a step chart of them needs.
+     *
+     * @return the timeline, ordered by timestamp
+     * @throws IllegalArgumentException if the visits are not ordered by their
+     *                                  timestamp
+     */
+    public ArrayList<TileTimelineEntry> calculateChanges() {
+        ArrayList<TileTimelineEntry> timeline = new ArrayList<TileTimelineEntry>();
+        replay(true, timeline::add);
+        return timeline;
+    }
+
+    /**
+     * Passes the metrics after every timestamp at which a tile was visited for
+     * the first time to the consumer, without collecting the timeline.
+     *
+     * @param consumer the consumer
+     * @throws IllegalArgumentException if the visits are not ordered by their
+     *                                  timestamp
+     */
+    public void replay(Consumer<TileTimelineEntry> consumer) {
+        replay(false, consumer);
+    }
+
+    private void replay(boolean changesOnly, Consumer<TileTimelineEntry> consumer) {
+        TileMetricsSession session = new TileMetricsSession();
+        int maxClusterSize = 0;
+        int maxSquareSize = 0;
+        boolean added = false;
+        for (int i = 0; i < visits.size(); i++) {
+            TileVisit visit = visits.get(i);
+            added |= session.addTile(visit.x(), visit.y());
+            if (i + 1 < visits.size()) {
+                long nextTimestamp = visits.get(i + 1).timestamp();
+                if (nextTimestamp < visit.timestamp()) {
+                    throw new IllegalArgumentException("visits must be ordered by their timestamp");
+                }
+                if (nextTimestamp == visit.timestamp()) {
+                    continue;
+                }
+            }
+            if (!added) {
+                continue;
+            }
+            added = false;
+
+            boolean changed = session.getMaxClusterSize() != maxClusterSize
+                    || session.getMaxSquareSize() != maxSquareSize;
+            maxClusterSize = session.getMaxClusterSize();
+            maxSquareSize = session.getMaxSquareSize();
+            if (changesOnly && !changed) {
+                continue;
+            }
+            consumer.accept(new TileTimelineEntry(
+                    visit.timestamp(),
+                    session.getTiles().size(),
+                    session.getClusterCount(),
+                    maxClusterSize,
+                    maxSquareSize));
+        }
+    }
+}
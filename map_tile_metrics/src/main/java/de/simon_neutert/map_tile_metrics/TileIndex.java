@@ -0,0 +1,335 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A spatial index over a set of tiles for queries restricted to a rectangle.
+ *
+ * <p>
+ * The tiles are split into blocks of 64 x 64 tiles. Every block that holds a
+ * tile stores its rows as 64 bit words, and the blocks are kept sorted in
+ * row-major order, so the blocks overlapping a rectangle are found with one
+ * binary search per row of blocks. The number of tiles of every block is
+ * precomputed: blocks lying completely inside a rectangle are counted without
+ * looking at their rows, and the tiles of a rectangle are extracted in
+ * row-major order straight into {@link TileRows}, without sorting.
+ * </p>
+ *
+ * <p>
+ * The metrics of a rectangle are those of the tiles inside it, as if the
+ * tiles outside of it were never visited. The cluster tiles of all tiles are
+ * precomputed as a second set of words per block, with a few shifts and ands
+ * per row. Inside a rectangle, a tile keeps its cluster status unless it lies
+ * on the one tile rim along the rectangle's edges, where a neighbor is cut
+ * off. So a rectangle's cluster tiles are read from the precomputed words
+ * with the rim masked out, and its metrics only join them into clusters
+ * instead of checking the neighbors of every tile again.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileIndex index = new TileIndex(tiles);
+ * TileMetricsResult viewport = index.calculate(minX, minY, maxX, maxY);
+ * int tileCount = index.count(minX, minY, maxX, maxY);
+ * }
+ * </pre>
+ *
+ * @see TileMetrics
+ * @see TileRows
+ *
+ */
+public class TileIndex {
+    static final int BLOCK_SHIFT = 6;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final long[] blockKeys;
+    private final long[] blockRows;
+    private final long[] blockClusterRows;
+    private final int[] blockCounts;
+    private final int size;
+
+    /**
+     * Constructs a new TileIndex.
+     *
+     * @param tiles the tiles
+     */
+    public TileIndex(TileSet tiles) {
+        TileSet directory = new TileSet();
+        for (int i = 0; i < tiles.size(); i++) {
+            directory.add(tiles.xAt(i) >> BLOCK_SHIFT, tiles.yAt(i) >> BLOCK_SHIFT);
+        }
+
+        long[] unsortedRows = new long[directory.size() * BLOCK_SIZE];
+        for (int i = 0; i < tiles.size(); i++) {
+            int x = tiles.xAt(i);
+            int y = tiles.yAt(i);
+            int block = directory.indexOf(x >> BLOCK_SHIFT, y >> BLOCK_SHIFT);
+            unsortedRows[block * BLOCK_SIZE + (y & BLOCK_MASK)] |= 1L << (x & BLOCK_MASK);
+        }
+
+        this.blockKeys = directory.toSortedKeys();
+        this.blockRows = new long[unsortedRows.length];
+        this.blockCounts = new int[blockKeys.length];
+        for (int block = 0; block < blockKeys.length; block++) {
+            int unsorted = directory.indexOf(TileSet.x(blockKeys[block]), TileSet.y(blockKeys[block]));
+            System.arraycopy(unsortedRows, unsorted * BLOCK_SIZE, blockRows, block * BLOCK_SIZE, BLOCK_SIZE);
+            for (int row = 0; row < BLOCK_SIZE; row++) {
+                blockCounts[block] += Long.bitCount(blockRows[block * BLOCK_SIZE + row]);
+            }
+        }
+        this.blockClusterRows = new long[blockRows.length];
+        for (int block = 0; block < blockKeys.length; block++) {
+            findClusterTiles(block);
+        }
+        this.size = tiles.size();
+    }
+
+    /**
+     * Stores the cluster tiles of a block: the tiles whose left, right, upper
+     * and lower neighbors are tiles, looking into the neighboring blocks at
+     * the block's edges.
+     */
+    private void findClusterTiles(int block) {
+        int blockX = TileSet.x(blockKeys[block]);
+        int blockY = TileSet.y(blockKeys[block]);
+        int left = blockIndex(blockX - 1, blockY);
+        int right = blockIndex(blockX + 1, blockY);
+        int above = blockIndex(blockX, blockY - 1);
+        int below = blockIndex(blockX, blockY + 1);
+        int offset = block * BLOCK_SIZE;
+        for (int row = 0; row < BLOCK_SIZE; row++) {
+            long word = blockRows[offset + row];
+            if (word == 0) {
+                continue;
+            }
+            long leftNeighbors = (word << 1) | (left >= 0 ? blockRows[left * BLOCK_SIZE + row] >>> BLOCK_MASK : 0);
+            long rightNeighbors = (word >>> 1) | (right >= 0 ? blockRows[right * BLOCK_SIZE + row] << BLOCK_MASK : 0);
+            long upperNeighbors = row > 0 ? blockRows[offset + row - 1]
+                    : above >= 0 ? blockRows[above * BLOCK_SIZE + BLOCK_MASK] : 0;
+            long lowerNeighbors = row < BLOCK_MASK ? blockRows[offset + row + 1]
+                    : below >= 0 ? blockRows[below * BLOCK_SIZE] : 0;
+            blockClusterRows[offset + row] = word & leftNeighbors & rightNeighbors & upperNeighbors & lowerNeighbors;
+        }
+    }
+
+    /**
+     * @return the number of tiles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of blocks holding at least one tile
+     */
+    public int blockCount() {
+        return blockKeys.length;
+    }
+
+    /**
+     * Checks whether a tile is part of the index.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile is part of the index
+     */
+    public boolean contains(int x, int y) {
+        if (x < 0 || y < 0) {
+            return false;
+        }
+        long key = TileSet.pack(x >> BLOCK_SHIFT, y >> BLOCK_SHIFT);
+        int block = lowerBound(key);
+        if (block == blockKeys.length || blockKeys[block] != key) {
+            return false;
+        }
+        return (blockRows[block * BLOCK_SIZE + (y & BLOCK_MASK)] & (1L << (x & BLOCK_MASK))) != 0;
+    }
+
+    /**
+     * Counts the tiles inside a rectangle.
+     *
+     * @param minX the smallest x-coordinate of the rectangle
+     * @param minY the smallest y-coordinate of the rectangle
+     * @param maxX the largest x-coordinate of the rectangle, inclusive
+     * @param maxY the largest y-coordinate of the rectangle, inclusive
+     * @return the number of tiles inside the rectangle
+     * @throws IllegalArgumentException if the rectangle is empty
+     */
+    public int count(int minX, int minY, int maxX, int maxY) {
+        checkRectangle(minX, minY, maxX, maxY);
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        int count = 0;
+        int minBlockX = minX >> BLOCK_SHIFT;
+        int lastBlockY = maxY >> BLOCK_SHIFT;
+        for (int blockY = nextBlockRow(minY >> BLOCK_SHIFT, minBlockX); blockY <= lastBlockY;
+                blockY = nextBlockRow(blockY + 1, minBlockX)) {
+            int firstY = Math.max(minY, blockY << BLOCK_SHIFT);
+            int lastY = Math.min(maxY, (blockY << BLOCK_SHIFT) + BLOCK_MASK);
+            int end = lowerBound(TileSet.pack(maxX >> BLOCK_SHIFT, blockY) + 1);
+            for (int block = lowerBound(TileSet.pack(minBlockX, blockY)); block < end; block++) {
+                long mask = columnMask(TileSet.x(blockKeys[block]), minX, maxX);
+                if (mask == -1L && lastY - firstY == BLOCK_MASK) {
+                    count += blockCounts[block];
+                    continue;
+                }
+                for (int y = firstY; y <= lastY; y++) {
+                    count += Long.bitCount(blockRows[block * BLOCK_SIZE + (y & BLOCK_MASK)] & mask);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Extracts the tiles inside a rectangle.
+     *
+     * @param minX the smallest x-coordinate of the rectangle
+     * @param minY the smallest y-coordinate of the rectangle
+     * @param maxX the largest x-coordinate of the rectangle, inclusive
+     * @param maxY the largest y-coordinate of the rectangle, inclusive
+     * @return the tiles inside the rectangle
+     * @throws IllegalArgumentException if the rectangle is empty
+     */
+    public TileRows extract(int minX, int minY, int maxX, int maxY) {
+        long[] keys = new long[count(minX, minY, maxX, maxY)];
+        extract(minX, minY, maxX, maxY, keys, null);
+        return new TileRows(keys);
+    }
+
+    /**
+     * Calculates the clusters, max clusters and max squares of the tiles inside
+     * a rectangle, reusing the precomputed cluster tiles.
+     *
+     * @param minX the smallest x-coordinate of the rectangle
+     * @param minY the smallest y-coordinate of the rectangle
+     * @param maxX the largest x-coordinate of the rectangle, inclusive
+     * @param maxY the largest y-coordinate of the rectangle, inclusive
+     * @return the metrics of the tiles inside the rectangle
+     * @throws IllegalArgumentException if the rectangle is empty
+     */
+    public TileMetricsResult calculate(int minX, int minY, int maxX, int maxY) {
+        int count = count(minX, minY, maxX, maxY);
+        long[] keys = new long[count];
+        boolean[] clusterTiles = new boolean[count];
+        extract(minX, minY, maxX, maxY, keys, clusterTiles);
+
+        TileMetrics metrics = new TileMetrics(new TileRows(keys));
+        Instrumentation.Timer timer = Instrumentation.start(Phase.SCAN);
+        TileMetrics.Scan scan = metrics.scanClusterTiles(clusterTiles);
+        timer.stop(count, scan.clusterSets().setCount(), scan.squares().tileCount());
+
+        timer = Instrumentation.start(Phase.COLLECT_CLUSTERS);
+        TileMetricsResult result = metrics.collect(scan);
+        timer.stop(scan.clusterSets().size(), result.clusters().size(), count);
+        return result;
+    }
+
+    /**
+     * Extracts the keys of the tiles inside a rectangle in row-major order and,
+     * if asked for, whether they are cluster tiles within the rectangle.
+     *
+     * @param keys         receives the keys, sized by {@link #count}
+     * @param clusterTiles receives the cluster status of every key, or null
+     */
+    private void extract(int minX, int minY, int maxX, int maxY, long[] keys, boolean[] clusterTiles) {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        int n = 0;
+        int minBlockX = minX >> BLOCK_SHIFT;
+        int lastBlockY = maxY >> BLOCK_SHIFT;
+        for (int blockY = nextBlockRow(minY >> BLOCK_SHIFT, minBlockX); blockY <= lastBlockY;
+                blockY = nextBlockRow(blockY + 1, minBlockX)) {
+            int firstY = Math.max(minY, blockY << BLOCK_SHIFT);
+            int lastY = Math.min(maxY, (blockY << BLOCK_SHIFT) + BLOCK_MASK);
+            int start = lowerBound(TileSet.pack(minBlockX, blockY));
+            int end = lowerBound(TileSet.pack(maxX >> BLOCK_SHIFT, blockY) + 1);
+            for (int y = firstY; y <= lastY; y++) {
+                boolean rim = y == minY || y == maxY;
+                for (int block = start; block < end; block++) {
+                    int blockX = TileSet.x(blockKeys[block]);
+                    int word = block * BLOCK_SIZE + (y & BLOCK_MASK);
+                    long row = blockRows[word] & columnMask(blockX, minX, maxX);
+                    long clusterRow = clusterTiles == null || rim
+                            ? 0
+                            : blockClusterRows[word] & interiorMask(blockX, minX, maxX);
+                    while (row != 0) {
+                        if (clusterTiles != null) {
+                            clusterTiles[n] = (clusterRow & row & -row) != 0;
+                        }
+                        keys[n++] = TileSet.pack((blockX << BLOCK_SHIFT) + Long.numberOfTrailingZeros(row), y);
+                        row &= row - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkRectangle(int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX || minY > maxY || maxX < 0 || maxY < 0) {
+            throw new IllegalArgumentException("rectangle must not be empty");
+        }
+    }
+
+    /**
+     * @return the bits of a block's row that lie between minX and maxX
+     */
+    private static long columnMask(int blockX, int minX, int maxX) {
+        int first = Math.max(minX - (blockX << BLOCK_SHIFT), 0);
+        int last = Math.min(maxX - (blockX << BLOCK_SHIFT), BLOCK_MASK);
+        return (-1L << first) & (-1L >>> (BLOCK_MASK - last));
+    }
+
+    /**
+     * @return the bits of a block's row that lie strictly between minX and
+     *         maxX, i.e. off the rectangle's rim
+     */
+    private static long interiorMask(int blockX, int minX, int maxX) {
+        int base = blockX << BLOCK_SHIFT;
+        if (maxX - minX < 2 || minX + 1 > base + BLOCK_MASK || maxX - 1 < base) {
+            return 0;
+        }
+        return columnMask(blockX, minX + 1, maxX - 1);
+    }
+
+    /**
+     * @return the index of the block, or -1 if it holds no tile
+     */
+    private int blockIndex(int blockX, int blockY) {
+        long key = TileSet.pack(blockX, blockY);
+        int block = lowerBound(key);
+        return block < blockKeys.length && blockKeys[block] == key ? block : -1;
+    }
+
+    /**
+     * Skips rows of blocks without any block at or right of blockX, so sparse
+     * rectangles cost one binary search per row of blocks holding tiles.
+     *
+     * @return the first row of blocks from blockY on that has a block at or
+     *         right of blockX, or {@link Integer#MAX_VALUE} if there is none
+     */
+    private int nextBlockRow(int blockY, int blockX) {
+        int block = lowerBound(TileSet.pack(blockX, blockY));
+        return block == blockKeys.length ? Integer.MAX_VALUE : TileSet.y(blockKeys[block]);
+    }
+
+    /**
+     * @return the index of the first block with a key of at least the given key
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = blockKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockKeys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
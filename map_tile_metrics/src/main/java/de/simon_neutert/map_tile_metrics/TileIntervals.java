@@ -0,0 +1,361 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An immutable set of tiles stored as runs of horizontally adjacent tiles.
+ *
+ * <p>
+ * Each run is an interval {@code [y, xStart, xEnd]} with an inclusive end. The
+ * runs are sorted in row-major order and runs next to each other in a row are
+ * always merged, so the representation of a set is unique. Solid regions,
+ * like the clusters of an explorer, need a handful of ints per row instead of
+ * an object per tile.
+ * </p>
+ *
+ * <p>
+ * Cluster tiles and clusters can be calculated on the runs directly:
+ * {@link #clusterTiles()} intersects the runs with the runs above and below,
+ * {@link #components()} joins overlapping runs of adjacent rows.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileIntervals intervals = TileIntervals.of(tiles);
+ * ArrayList<TileIntervals> clusters = intervals.clusterTiles().components();
+ * int[][] runs = clusters.get(0).toArray();
+ * }
+ * </pre>
+ *
+ * @see TileSet
+ * @see Clusters#calculateIntervals()
+ *
+ */
+public class TileIntervals {
+    private final int[] ys;
+    private final int[] xStarts;
+    private final int[] xEnds;
+    private final int runCount;
+    private final int size;
+
+    private TileIntervals(int[] ys, int[] xStarts, int[] xEnds, int runCount, int size) {
+        this.ys = ys;
+        this.xStarts = xStarts;
+        this.xEnds = xEnds;
+        this.runCount = runCount;
+        this.size = size;
+    }
+
+    /**
+     * Creates the runs of the given tiles.
+     *
+     * @param tiles the tiles
+     * @return the runs of the tiles
+     */
+    public static TileIntervals of(TileSet tiles) {
+        return of(new TileRows(tiles));
+    }
+
+    /**
+     * Creates the runs of the given tiles.
+     *
+     * @param rows the tiles
+     * @return the runs of the tiles
+     */
+    public static TileIntervals of(TileRows rows) {
+        Builder builder = new Builder();
+        for (int i = 0; i < rows.size(); i++) {
+            builder.add(rows.yAt(i), rows.xAt(i), rows.xAt(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the number of tiles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no tiles
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of runs
+     */
+    public int runCount() {
+        return runCount;
+    }
+
+    /**
+     * @param run the index of a run
+     * @return the y-coordinate of the run
+     */
+    public int y(int run) {
+        return ys[run];
+    }
+
+    /**
+     * @param run the index of a run
+     * @return the x-coordinate of the first tile of the run
+     */
+    public int xStart(int run) {
+        return xStarts[run];
+    }
+
+    /**
+     * @param run the index of a run
+     * @return the x-coordinate of the last tile of the run
+     */
+    public int xEnd(int run) {
+        return xEnds[run];
+    }
+
+    /**
+     * Checks whether a tile is part of the set, with a binary search over the
+     * runs.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile is part of the set
+     */
+    public boolean contains(int x, int y) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ys[mid] < y || (ys[mid] == y && xEnds[mid] < x)) {
+                low = mid + 1;
+            } else if (ys[mid] > y || xStarts[mid] > x) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a point is part of the set.
+     *
+     * @param point the point to look up
+     * @return true if the point is part of the set
+     */
+    public boolean contains(Point point) {
+        return contains(point.x(), point.y());
+    }
+
+    /**
+     * Passes every tile to the given consumer, in row-major order.
+     *
+     * @param consumer the consumer receiving the coordinates of each tile
+     */
+    public void forEach(TileSet.TileConsumer consumer) {
+        for (int run = 0; run < runCount; run++) {
+            for (int x = xStarts[run]; x <= xEnds[run]; x++) {
+                consumer.accept(x, ys[run]);
+            }
+        }
+    }
+
+    /**
+     * @return a new TileSet holding the tiles of the runs
+     */
+    public TileSet toTileSet() {
+        TileSet tiles = new TileSet(size);
+        forEach(tiles::add);
+        return tiles;
+    }
+
+    /**
+     * @return the runs as {@code [y, xStart, xEnd]} arrays, in row-major order
+     */
+    public int[][] toArray() {
+        int[][] runs = new int[runCount][];
+        for (int run = 0; run < runCount; run++) {
+            runs[run] = new int[] { ys[run], xStarts[run], xEnds[run] };
+        }
+        return runs;
+    }
+
+    /**
+     * Finds the cluster tiles, the tiles whose four neighbors are part of the
+     * set. A run contributes its inner tiles that are covered by runs in the
+     * rows above and below.
+     *
+     * @return the runs of the cluster tiles
+     */
+    public TileIntervals clusterTiles() {
+        Builder builder = new Builder();
+        int aboveStart = 0;
+        int rowStart = 0;
+        while (rowStart < runCount) {
+            int y = ys[rowStart];
+            int rowEnd = rowEnd(rowStart);
+            int belowEnd = rowEnd(rowEnd);
+            boolean hasAbove = rowStart > 0 && ys[rowStart - 1] == y - 1;
+            boolean hasBelow = rowEnd < runCount && ys[rowEnd] == y + 1;
+            if (hasAbove && hasBelow) {
+                int above = aboveStart;
+                int below = rowEnd;
+                for (int run = rowStart; run < rowEnd; run++) {
+                    int start = xStarts[run] + 1;
+                    int end = xEnds[run] - 1;
+                    if (start > end) {
+                        continue;
+                    }
+                    while (above < rowStart && xEnds[above] < start) {
+                        above++;
+                    }
+                    for (int a = above; a < rowStart && xStarts[a] <= end; a++) {
+                        int low = Math.max(start, xStarts[a]);
+                        int high = Math.min(end, xEnds[a]);
+                        while (below < belowEnd && xEnds[below] < low) {
+                            below++;
+                        }
+                        for (int b = below; b < belowEnd && xStarts[b] <= high; b++) {
+                            builder.add(y, Math.max(low, xStarts[b]), Math.min(high, xEnds[b]));
+                        }
+                    }
+                }
+            }
+            aboveStart = rowStart;
+            rowStart = rowEnd;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Splits the set into its 4-connected components. Two runs are connected if
+     * they are in adjacent rows and overlap in x.
+     *
+     * @return the components, ordered by their first run in row-major order
+     */
+    public ArrayList<TileIntervals> components() {
+        DisjointSets sets = new DisjointSets(runCount);
+        int previousStart = 0;
+        int rowStart = 0;
+        while (rowStart < runCount) {
+            int rowEnd = rowEnd(rowStart);
+            if (rowStart > 0 && ys[rowStart - 1] == ys[rowStart] - 1) {
+                int above = previousStart;
+                int run = rowStart;
+                while (above < rowStart && run < rowEnd) {
+                    if (xStarts[above] <= xEnds[run] && xStarts[run] <= xEnds[above]) {
+                        sets.union(above, run);
+                    }
+                    if (xEnds[above] < xEnds[run]) {
+                        above++;
+                    } else {
+                        run++;
+                    }
+                }
+            }
+            previousStart = rowStart;
+            rowStart = rowEnd;
+        }
+
+        int[] rootLabels = new int[runCount];
+        Arrays.fill(rootLabels, -1);
+        ArrayList<Builder> builders = new ArrayList<Builder>();
+        for (int run = 0; run < runCount; run++) {
+            int root = sets.find(run);
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = builders.size();
+                builders.add(new Builder());
+            }
+            builders.get(rootLabels[root]).add(ys[run], xStarts[run], xEnds[run]);
+        }
+
+        ArrayList<TileIntervals> components = new ArrayList<TileIntervals>(builders.size());
+        for (Builder builder : builders) {
+            components.add(builder.build());
+        }
+        return components;
+    }
+
+    /**
+     * @return the index after the last run in the row of the given run
+     */
+    private int rowEnd(int run) {
+        int end = run;
+        while (end < runCount && ys[end] == ys[run]) {
+            end++;
+        }
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TileIntervals)) {
+            return false;
+        }
+        TileIntervals intervals = (TileIntervals) other;
+        return runCount == intervals.runCount
+                && Arrays.equals(ys, 0, runCount, intervals.ys, 0, runCount)
+                && Arrays.equals(xStarts, 0, runCount, intervals.xStarts, 0, runCount)
+                && Arrays.equals(xEnds, 0, runCount, intervals.xEnds, 0, runCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int run = 0; run < runCount; run++) {
+            hash = 31 * hash + ys[run];
+            hash = 31 * hash + xStarts[run];
+            hash = 31 * hash + xEnds[run];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(toArray());
+    }
+
+    /**
+     * Collects runs given in row-major order, merging runs that touch.
+     */
+    static class Builder {
+        private int[] ys = new int[8];
+        private int[] xStarts = new int[8];
+        private int[] xEnds = new int[8];
+        private int runCount;
+        private int size;
+
+        void add(int y, int xStart, int xEnd) {
+            int last = runCount - 1;
+            if (last >= 0 && ys[last] == y && xEnds[last] + 1 >= xStart) {
+                size += Math.max(xEnd - xEnds[last], 0);
+                xEnds[last] = Math.max(xEnds[last], xEnd);
+                return;
+            }
+            if (runCount == ys.length) {
+                ys = Arrays.copyOf(ys, runCount * 2);
+                xStarts = Arrays.copyOf(xStarts, runCount * 2);
+                xEnds = Arrays.copyOf(xEnds, runCount * 2);
+            }
+            ys[runCount] = y;
+            xStarts[runCount] = xStart;
+            xEnds[runCount] = xEnd;
+            runCount++;
+            size += xEnd - xStart + 1;
+        }
+
+        TileIntervals build() {
+            return new TileIntervals(ys, xStarts, xEnds, runCount, size);
+        }
+    }
+}
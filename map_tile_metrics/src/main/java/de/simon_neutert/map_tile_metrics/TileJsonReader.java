@@ -0,0 +1,157 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.jr.ob.JSON;
+
+/**
+ * Reads a JSON array of tiles like <code>[{"x":1,"y":2},...]</code>
+ * incrementally into a {@link TileSet}.
+ *
+ * <p>
+ * The input is consumed token by token, every tile goes straight into the
+ * TileSet and duplicates are dropped as they come in. Neither a list of the
+ * parsed tiles nor {@link Point} objects are created, so the transient heap
+ * stays at the parser's buffer no matter how large the input is. Fields other
+ * than "x" and "y" are skipped.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileSet tiles = TileJsonReader.read(request.getInputStream());
+ * HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+ * }
+ * </pre>
+ *
+ * @see TileSet
+ * @see TileFile
+ *
+ */
+public final class TileJsonReader {
+    private TileJsonReader() {
+    }
+
+    /**
+     * Reads the tiles of a JSON file.
+     *
+     * @param path the file to read
+     * @return the distinct tiles of the file
+     * @throws IOException if the file cannot be read or is not a JSON array of
+     *                     tiles
+     */
+    public static TileSet read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads the tiles of a JSON stream. The stream is not closed.
+     *
+     * @param in the stream to read
+     * @return the distinct tiles of the stream
+     * @throws IOException if the stream cannot be read or is not a JSON array of
+     *                     tiles
+     */
+    public static TileSet read(InputStream in) throws IOException {
+        TileSet tiles = new TileSet();
+        readInto(in, tiles);
+        return tiles;
+    }
+
+    /**
+     * Reads the tiles of a JSON stream into an existing TileSet. The stream is
+     * not closed.
+     *
+     * @param in    the stream to read
+     * @param tiles the tiles to add to
+     * @return the number of tiles that were not in the TileSet before
+     * @throws IOException if the stream cannot be read or is not a JSON array of
+     *                     tiles
+     */
+    public static int readInto(InputStream in, TileSet tiles) throws IOException {
+        int[] added = new int[1];
+        TileSet.TileConsumer consumer = (x, y) -> {
+            if (tiles.add(x, y)) {
+                added[0]++;
+            }
+        };
+        try (JsonParser parser = JSON.std.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of tiles");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a tile object at " + parser.currentLocation());
+                }
+                readTile(parser, consumer);
+            }
+        }
+        return added[0];
+    }
+
+    /**
+     * Streams the tiles of newline-delimited JSON, one tile object like
+     * <code>{"x":1,"y":2}</code> per line, without holding them in memory.
+     * Duplicates are passed on as they come. The stream is not closed.
+     *
+     * @param in       the stream to read
+     * @param consumer receives every tile
+     * @return the number of tiles read
+     * @throws IOException if the stream cannot be read or holds something else
+     *                     than tile objects
+     */
+    public static long forEachLine(InputStream in, TileSet.TileConsumer consumer) throws IOException {
+        long count = 0;
+        try (JsonParser parser = JSON.std.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a tile object at " + parser.currentLocation());
+                }
+                readTile(parser, consumer);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the fields of a tile object and passes the tile on, the parser is
+     * left on the end of the object.
+     */
+    private static void readTile(JsonParser parser, TileSet.TileConsumer consumer) throws IOException {
+        int x = -1;
+        int y = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"x".equals(name) && !"y".equals(name)) {
+                parser.skipChildren();
+            } else if (value != JsonToken.VALUE_NUMBER_INT) {
+                throw new IOException("Expected an integer for \"" + name + "\" at " + parser.currentLocation());
+            } else if ("x".equals(name)) {
+                x = parser.getIntValue();
+            } else {
+                y = parser.getIntValue();
+            }
+        }
+        if (x < 0 || y < 0) {
+            throw new IOException("Expected non-negative \"x\" and \"y\" at " + parser.currentLocation());
+        }
+        consumer.accept(x, y);
+    }
+}
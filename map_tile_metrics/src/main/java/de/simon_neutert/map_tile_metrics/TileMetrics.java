@@ -0,0 +1,345 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The TileMetrics class calculates the clusters, the max clusters and the max
+ * squares of a set of tiles together, in one ordered scan.
+ *
+ * <p>
+ * The tiles are sorted into {@link TileRows} once. The scan then walks the
+ * rows top-down, keeping a cursor into the rows above and below, and for every
+ * tile
+ * </p>
+ * <ul>
+ * <li>checks whether it is a cluster tile, i.e. its four neighbors are
+ * visited,</li>
+ * <li>joins a cluster tile with its left and upper cluster neighbors in a
+ * {@link DisjointSets} forest,</li>
+ * <li>feeds it to a {@link SquareScan}.</li>
+ * </ul>
+ *
+ * <p>
+ * Squares of at least 3 tiles only contain visited tiles and have cluster
+ * tiles inside, so they lie within a cluster and its border. Scanning all
+ * tiles therefore finds the same max squares as {@link MaxSquares}, without
+ * collecting the clusters and copying them with their borders first. The
+ * cluster tiles are only collected into their clusters once the scan is done.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileMetricsResult result = new TileMetrics(tiles).calculate();
+ * ArrayList<TileSet> maxClusters = result.maxClusters();
+ * ArrayList<HashMap<Point, Integer>> maxSquares = result.maxSquares();
+ * }
+ * </pre>
+ *
+ * @see TileMetricsResult
+ * @see Clusters
+ * @see MaxSquares
+ *
+ */
+public class TileMetrics {
+    /**
+     * The number of tiles scanned or collected between two calls of
+     * {@link ScanListener#tilesScanned()}.
+     */
+    static final int CHECK_INTERVAL = 256;
+
+    private final TileRows rows;
+
+    /**
+     * Constructs a new TileMetrics object.
+     *
+     * @param tiles the tiles
+     */
+    public TileMetrics(TileSet tiles) {
+        this(new TileRows(tiles));
+    }
+
+    /**
+     * Constructs a new TileMetrics object.
+     *
+     * @param points the points
+     */
+    public TileMetrics(Collection<Point> points) {
+        this(new TileSet(points));
+    }
+
+    /**
+     * Constructs a new TileMetrics object for tiles already sorted into rows,
+     * e.g. read by {@link TileFile#read(java.nio.file.Path)}.
+     *
+     * @param rows the tiles
+     */
+    public TileMetrics(TileRows rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Calculates all metrics.
+     *
+     * @return the clusters, max clusters and max squares
+     */
+    public TileMetricsResult calculate() {
+        Instrumentation.Timer timer = Instrumentation.start(Phase.SCAN);
+        Scan scan = scan();
+        timer.stop(rows.size(), scan.clusterSets().setCount(), scan.squares().tileCount());
+
+        timer = Instrumentation.start(Phase.COLLECT_CLUSTERS);
+        TileMetricsResult result = collect(scan);
+        timer.stop(scan.clusterSets().size(), result.clusters().size(), rows.size());
+        return result;
+    }
+
+    /**
+     * Calculates the max squares if they are at least of the given size,
+     * without detecting any cluster. Sizes below 4 are raised to 4.
+     *
+     * @param size the smallest square size that counts
+     * @return the max squares as in {@link TileMetricsResult#maxSquares()}, or
+     *         an empty list if there is no square of the given size
+     * @see MaxSquares#squaresAtLeast(int)
+     */
+    public ArrayList<HashMap<Point, Integer>> squaresAtLeast(int size) {
+        SquareScan squares = new SquareScan(Math.max(size, MaxSquares.MIN_SQUARE_SIZE));
+        squares.scan(rows);
+        return squares.maxSquares();
+    }
+
+    /**
+     * Checks whether the tiles hold a square of at least the given size,
+     * stopping at the first one found and without detecting any cluster. Sizes
+     * below 4 are raised to 4.
+     *
+     * @param size the smallest square size that counts
+     * @return true if there is such a square
+     * @see MaxSquares#hasSquareAtLeast(int)
+     */
+    public boolean hasSquareAtLeast(int size) {
+        return new SquareScan(Math.max(size, MaxSquares.MIN_SQUARE_SIZE)).scanUntilFound(rows);
+    }
+
+    /**
+     * Runs the scan without collecting the clusters.
+     *
+     * @return the cluster element of every tile in row order, -1 for tiles
+     *         that are no cluster tiles, the forest joining the elements into
+     *         clusters and the squares
+     */
+    Scan scan() {
+        return scan(null);
+    }
+
+    /**
+     * Runs the scan without collecting the clusters, reporting every scanned
+     * row and every {@link #CHECK_INTERVAL} tiles.
+     *
+     * @param listener follows the scan, or null
+     * @return the scan, see {@link #scan()}
+     */
+    Scan scan(ScanListener listener) {
+        int[] elements = new int[rows.size()];
+        DisjointSets clusterSets = new DisjointSets(0);
+        SquareScan squares = new SquareScan(MaxSquares.MIN_SQUARE_SIZE);
+        int countdown = CHECK_INTERVAL;
+
+        for (int row = 0; row < rows.rowCount(); row++) {
+            int y = rows.rowY(row);
+            int start = rows.rowStart(row);
+            int end = rows.rowEnd(row);
+            int above = row > 0 && rows.rowY(row - 1) == y - 1 ? row - 1 : -1;
+            int below = row + 1 < rows.rowCount() && rows.rowY(row + 1) == y + 1 ? row + 1 : -1;
+            int aboveCursor = above >= 0 ? rows.rowStart(above) : 0;
+            int belowCursor = below >= 0 ? rows.rowStart(below) : 0;
+
+            squares.startRow(y);
+            for (int i = start; i < end; i++) {
+                if (listener != null && --countdown == 0) {
+                    countdown = CHECK_INTERVAL;
+                    listener.tilesScanned();
+                }
+                int x = rows.xAt(i);
+                squares.add(x);
+                elements[i] = -1;
+
+                if (above < 0 || below < 0
+                        || i == start || rows.xAt(i - 1) != x - 1
+                        || i + 1 == end || rows.xAt(i + 1) != x + 1) {
+                    continue;
+                }
+                aboveCursor = seek(above, aboveCursor, x);
+                if (aboveCursor == rows.rowEnd(above) || rows.xAt(aboveCursor) != x) {
+                    continue;
+                }
+                belowCursor = seek(below, belowCursor, x);
+                if (belowCursor == rows.rowEnd(below) || rows.xAt(belowCursor) != x) {
+                    continue;
+                }
+
+                int element = clusterSets.add();
+                elements[i] = element;
+                if (elements[i - 1] >= 0) {
+                    clusterSets.union(element, elements[i - 1]);
+                }
+                if (elements[aboveCursor] >= 0) {
+                    clusterSets.union(element, elements[aboveCursor]);
+                }
+            }
+            if (listener != null) {
+                listener.rowScanned(row, clusterSets, squares);
+            }
+        }
+
+        return new Scan(elements, clusterSets, squares);
+    }
+
+    /**
+     * Runs the scan for tiles whose cluster tiles are already known, e.g. from
+     * a {@link TileIndex}, only joining them into clusters.
+     *
+     * @param clusterTiles whether each tile in row order is a cluster tile
+     * @return the scan, see {@link #scan()}
+     */
+    Scan scanClusterTiles(boolean[] clusterTiles) {
+        int[] elements = new int[rows.size()];
+        DisjointSets clusterSets = new DisjointSets(0);
+        SquareScan squares = new SquareScan(MaxSquares.MIN_SQUARE_SIZE);
+
+        for (int row = 0; row < rows.rowCount(); row++) {
+            int y = rows.rowY(row);
+            int start = rows.rowStart(row);
+            int end = rows.rowEnd(row);
+            int above = row > 0 && rows.rowY(row - 1) == y - 1 ? row - 1 : -1;
+            int aboveCursor = above >= 0 ? rows.rowStart(above) : 0;
+
+            squares.startRow(y);
+            for (int i = start; i < end; i++) {
+                int x = rows.xAt(i);
+                squares.add(x);
+                elements[i] = -1;
+                if (!clusterTiles[i]) {
+                    continue;
+                }
+
+                int element = clusterSets.add();
+                elements[i] = element;
+                if (i > start && rows.xAt(i - 1) == x - 1 && elements[i - 1] >= 0) {
+                    clusterSets.union(element, elements[i - 1]);
+                }
+                if (above >= 0) {
+                    aboveCursor = seek(above, aboveCursor, x);
+                    if (aboveCursor < rows.rowEnd(above) && rows.xAt(aboveCursor) == x
+                            && elements[aboveCursor] >= 0) {
+                        clusterSets.union(element, elements[aboveCursor]);
+                    }
+                }
+            }
+        }
+
+        return new Scan(elements, clusterSets, squares);
+    }
+
+    /**
+     * @return the index of the first tile of the row with an x-coordinate of at
+     *         least x, starting at the cursor
+     */
+    private int seek(int row, int cursor, int x) {
+        int end = rows.rowEnd(row);
+        while (cursor < end && rows.xAt(cursor) < x) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Collects the cluster tiles of a scan into their clusters.
+     *
+     * @param scan the scan
+     * @return the clusters, max clusters and max squares
+     */
+    TileMetricsResult collect(Scan scan) {
+        return collect(scan, null);
+    }
+
+    /**
+     * Collects the cluster tiles of a scan into their clusters, reporting
+     * every {@link #CHECK_INTERVAL} tiles.
+     *
+     * @param scan     the scan
+     * @param listener follows the collection, or null
+     * @return the clusters, max clusters and max squares
+     */
+    TileMetricsResult collect(Scan scan, ScanListener listener) {
+        int[] elements = scan.elements();
+        DisjointSets clusterSets = scan.clusterSets();
+        SquareScan squares = scan.squares();
+        int maxClusterSize = 0;
+        int[] rootLabels = new int[clusterSets.size()];
+        Arrays.fill(rootLabels, -1);
+        ArrayList<TileSet> clusters = new ArrayList<TileSet>();
+        int countdown = CHECK_INTERVAL;
+        for (int i = 0; i < elements.length; i++) {
+            if (listener != null && --countdown == 0) {
+                countdown = CHECK_INTERVAL;
+                listener.tilesScanned();
+            }
+            if (elements[i] < 0) {
+                continue;
+            }
+            int root = clusterSets.find(elements[i]);
+            if (rootLabels[root] < 0) {
+                int size = clusterSets.setSize(root);
+                rootLabels[root] = clusters.size();
+                clusters.add(new TileSet(size));
+                maxClusterSize = Math.max(maxClusterSize, size);
+            }
+            clusters.get(rootLabels[root]).add(rows.xAt(i), rows.yAt(i));
+        }
+
+        ArrayList<TileSet> maxClusters = new ArrayList<TileSet>();
+        for (TileSet cluster : clusters) {
+            if (cluster.size() == maxClusterSize) {
+                maxClusters.add(cluster);
+            }
+        }
+
+        return new TileMetricsResult(
+                clusters,
+                maxClusters,
+                maxClusterSize,
+                squares.maxSquares(),
+                squares.maxSize());
+    }
+
+    record Scan(int[] elements, DisjointSets clusterSets, SquareScan squares) {
+    }
+
+    /**
+     * Follows the progress of a scan and of collecting its clusters.
+     */
+    interface ScanListener {
+        /**
+         * Called after all tiles of a row are scanned.
+         *
+         * @param row         the index of the row
+         * @param clusterSets the cluster tiles joined so far
+         * @param squares     the squares found so far
+         */
+        void rowScanned(int row, DisjointSets clusterSets, SquareScan squares);
+
+        /**
+         * Called every {@link TileMetrics#CHECK_INTERVAL} tiles while scanning
+         * and collecting, also within a row. Throwing stops the calculation.
+         */
+        void tilesScanned();
+    }
+}
@@ -0,0 +1,132 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The TileMetricsCache serves the clusters and max squares of tile sets that
+ * were calculated before.
+ *
+ * <p>
+ * Results are keyed by the {@link TileFingerprint} of the tiles, which a
+ * {@link TileSet} keeps up to date as tiles are added, so looking up a cached
+ * result takes constant time no matter how many tiles there are. On a miss
+ * the clusters and the max squares are calculated together and cached as one
+ * entry. The cache is bounded by the total weight of its entries, the number
+ * of cluster tiles plus the number of max squares, and evicts the least
+ * recently used entries first.
+ * </p>
+ *
+ * <p>
+ * The cache is thread-safe. The returned results are shared with the cache and
+ * must not be modified.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileMetricsCache cache = new TileMetricsCache(50_000_000);
+ * HashMap<String, ArrayList<TileSet>> clusters = cache.clusters(tiles);
+ * ArrayList<HashMap<Point, Integer>> maxSquares = cache.maxSquares(tiles);
+ * double hitRate = cache.statistics().hitRate();
+ * }
+ * </pre>
+ *
+ * @see TileFingerprint
+ * @see Clusters#calculateTiles()
+ * @see MaxSquares#calculate()
+ *
+ */
+public class TileMetricsCache {
+    private final Cache<TileFingerprint, Metrics> cache;
+
+    /**
+     * Constructs a new TileMetricsCache.
+     *
+     * @param maximumWeight the total number of cluster tiles and max squares the
+     *                      cached entries may hold
+     */
+    public TileMetricsCache(long maximumWeight) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((TileFingerprint fingerprint, Metrics metrics) -> metrics.weight())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the clusters of the tiles, calculating them on a miss.
+     *
+     * @param tiles the tiles
+     * @return a HashMap with the keys "clusters" and "maxClusters", like
+     *         {@link Clusters#calculateTiles()}
+     */
+    public HashMap<String, ArrayList<TileSet>> clusters(TileSet tiles) {
+        return metrics(tiles).clusters();
+    }
+
+    /**
+     * Returns the max squares of the tiles, calculating them on a miss.
+     *
+     * @param tiles the tiles
+     * @return the max squares, like {@link MaxSquares#calculate()}
+     */
+    public ArrayList<HashMap<Point, Integer>> maxSquares(TileSet tiles) {
+        return metrics(tiles).maxSquares();
+    }
+
+    private Metrics metrics(TileSet tiles) {
+        try {
+            return cache.get(tiles.fingerprint(), () -> calculate(tiles));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Metrics calculate(TileSet tiles) {
+        HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+        ArrayList<HashMap<Point, Integer>> maxSquares = new MaxSquares(clusters.get("clusters"), tiles).calculate();
+        long weight = 1 + maxSquares.size();
+        for (TileSet cluster : clusters.get("clusters")) {
+            weight += cluster.size();
+        }
+        return new Metrics(clusters, maxSquares, (int) Math.min(weight, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Removes all cached results, the statistics are kept.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the hits, misses and evictions since the cache was created
+     */
+    public TileMetricsCacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new TileMetricsCacheStatistics(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                cache.size());
+    }
+
+    private record Metrics(
+            HashMap<String, ArrayList<TileSet>> clusters,
+            ArrayList<HashMap<Point, Integer>> maxSquares,
+            int weight) {
+    }
+}
@@ -0,0 +1,21 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record holding the statistics of a {@link TileMetricsCache}.
+ *
+ * @param hitCount      the number of lookups served from the cache
+ * @param missCount     the number of lookups that calculated the metrics
+ * @param evictionCount the number of entries evicted to stay within the weight
+ * @param entryCount    the number of cached entries
+ */
+public record TileMetricsCacheStatistics(long hitCount, long missCount, long evictionCount, long entryCount) {
+
+    /**
+     * @return the share of lookups served from the cache, or 1 if there were
+     *         no lookups
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
@@ -0,0 +1,31 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record holding what {@link ProgressiveTileMetrics} knows about the
+ * metrics at some point of the calculation: bounds while it runs, the exact
+ * metrics once it is done.
+ *
+ * @param progress              the share of the tiles scanned so far, between
+ *                              0 and 1
+ * @param maxClusterSizeAtLeast a lower bound for the size of the max clusters
+ * @param maxClusterSizeAtMost  an upper bound for the size of the max clusters
+ * @param maxSquareSizeAtLeast  a lower bound for the size of the max squares
+ * @param maxSquareSizeAtMost   an upper bound for the size of the max squares
+ * @param result                the exact metrics, or null while they are not
+ *                              known yet
+ */
+public record TileMetricsEstimate(
+        double progress,
+        int maxClusterSizeAtLeast,
+        int maxClusterSizeAtMost,
+        int maxSquareSizeAtLeast,
+        int maxSquareSizeAtMost,
+        TileMetricsResult result) {
+
+    /**
+     * @return true if the estimate holds the exact metrics
+     */
+    public boolean isExact() {
+        return result != null;
+    }
+}
@@ -0,0 +1,40 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record describing the metrics a {@link TileMetricsSession} would have if
+ * a set of candidate tiles were visited, see
+ * {@link TileMetricsSession#evaluate(TileSet)}.
+ *
+ * @param addedTiles             the number of candidates not visited yet
+ * @param newClusterTiles        the number of tiles that would become cluster
+ *                               tiles
+ * @param maxClusterSize         the size of the max clusters with the
+ *                               candidates
+ * @param previousMaxClusterSize the size of the max clusters of the session
+ * @param maxSquareSize          the size of the max squares with the
+ *                               candidates, or 0 if there is no square larger
+ *                               than 3
+ * @param previousMaxSquareSize  the size of the max squares of the session
+ */
+public record TileMetricsGain(
+        int addedTiles,
+        int newClusterTiles,
+        int maxClusterSize,
+        int previousMaxClusterSize,
+        int maxSquareSize,
+        int previousMaxSquareSize) {
+
+    /**
+     * @return how many tiles the max clusters would grow
+     */
+    public int maxClusterGain() {
+        return maxClusterSize - previousMaxClusterSize;
+    }
+
+    /**
+     * @return how many tiles the sides of the max squares would grow
+     */
+    public int maxSquareGain() {
+        return maxSquareSize - previousMaxSquareSize;
+    }
+}
@@ -0,0 +1,25 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A record holding all metrics calculated by {@link TileMetrics}.
+ *
+ * @param clusters       the clusters, ordered by their first tile in row-major
+ *                       order
+ * @param maxClusters    the clusters of the max size, in the same order
+ * @param maxClusterSize the size of the max clusters, or 0 if there is no
+ *                       cluster
+ * @param maxSquares     the max squares in the shape
+ *                       {@link MaxSquares#calculate()} returns
+ * @param maxSquareSize  the size of the max squares, or 0 if there is no square
+ *                       larger than 3
+ */
+public record TileMetricsResult(
+        ArrayList<TileSet> clusters,
+        ArrayList<TileSet> maxClusters,
+        int maxClusterSize,
+        ArrayList<HashMap<Point, Integer>> maxSquares,
+        int maxSquareSize) {
+}
@@ -0,0 +1,718 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TileMetricsSession class keeps the clusters and max squares of a
+ * growing set of tiles up to date.
+ *
+ * <p>
+ * Instead of recalculating {@link Clusters} and {@link MaxSquares} for the
+ * whole history, each batch passed to {@link #addTiles(TileSet)} only touches
+ * the neighborhoods of its tiles:
+ * </p>
+ * <ul>
+ * <li>a new tile and its four neighbors are checked for becoming cluster
+ * tiles, since visiting tiles never turns a cluster tile back,</li>
+ * <li>new cluster tiles are joined with neighboring cluster tiles in a
+ * {@link DisjointSets} forest that tracks the cluster sizes,</li>
+ * <li>the size of the largest square ending at a tile (as its bottom right
+ * corner) is only recalculated for tiles below and right of the new tiles, and
+ * only as long as it keeps growing.</li>
+ * </ul>
+ *
+ * <p>
+ * The metrics match those of {@link Clusters#calculate()} and
+ * {@link MaxSquares#calculate()} for all tiles added so far.
+ * </p>
+ *
+ * <p>
+ * {@link #evaluate(TileSet)} answers what a batch would change without
+ * adding it, e.g. to compare candidate routes.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileMetricsSession session = new TileMetricsSession(history);
+ * TileMetricsUpdate update = session.addTiles(activityPoints);
+ * if (update.maxSquareChanged()) {
+ *     ArrayList<HashMap<Point, Integer>> maxSquares = update.maxSquares();
+ * }
+ * }
+ * </pre>
+ *
+ * @see TileMetricsUpdate
+ * @see Clusters
+ * @see MaxSquares
+ *
+ */
+public class TileMetricsSession {
+    private final TileSet tiles;
+    private int[] clusterElements;
+    private int[] squareSizes;
+
+    private final DisjointSets clusterSets;
+    private int[] clusterTileIndices;
+    private int[] clusterCountsBySize;
+    private int maxClusterSize;
+
+    private int maxSquareSize;
+    private long[] maxSquareCorners;
+    private int maxSquareCornerCount;
+
+    private final KeyQueue pendingSquares;
+
+    /**
+     * Constructs an empty session.
+     */
+    public TileMetricsSession() {
+        this.tiles = new TileSet();
+        this.clusterElements = new int[16];
+        this.squareSizes = new int[16];
+        this.clusterSets = new DisjointSets(0);
+        this.clusterTileIndices = new int[16];
+        this.clusterCountsBySize = new int[16];
+        this.maxSquareCorners = new long[8];
+        this.pendingSquares = new KeyQueue();
+    }
+
+    /**
+     * Constructs a session holding the given tiles.
+     *
+     * @param tiles the tiles visited so far
+     */
+    public TileMetricsSession(TileSet tiles) {
+        this();
+        addTiles(tiles);
+    }
+
+    /**
+     * Adds a batch of points.
+     *
+     * @param points the points to add, already visited points are ignored
+     * @return the metrics after the batch and what it changed
+     */
+    public TileMetricsUpdate addTiles(Collection<Point> points) {
+        return addTiles(new TileSet(points));
+    }
+
+    /**
+     * Adds a batch of tiles.
+     *
+     * @param batch the tiles to add, already visited tiles are ignored
+     * @return the metrics after the batch and what it changed
+     */
+    public TileMetricsUpdate addTiles(TileSet batch) {
+        int previousClusterCount = getClusterCount();
+        int previousMaxClusterSize = getMaxClusterSize();
+        int previousMaxSquareSize = getMaxSquareSize();
+
+        int firstNewIndex = tiles.size();
+        for (int i = 0; i < batch.size(); i++) {
+            if (tiles.add(batch.xAt(i), batch.yAt(i))) {
+                ensureTileCapacity(tiles.size());
+                clusterElements[tiles.size() - 1] = -1;
+                squareSizes[tiles.size() - 1] = 0;
+                pendingSquares.push(batch.keyAt(i));
+            }
+        }
+
+        TileSet newClusterTiles = new TileSet();
+        for (int index = firstNewIndex; index < tiles.size(); index++) {
+            int x = tiles.xAt(index);
+            int y = tiles.yAt(index);
+            updateClusterTile(x, y, newClusterTiles);
+            updateClusterTile(x - 1, y, newClusterTiles);
+            updateClusterTile(x + 1, y, newClusterTiles);
+            updateClusterTile(x, y - 1, newClusterTiles);
+            updateClusterTile(x, y + 1, newClusterTiles);
+        }
+
+        updateSquares();
+
+        return new TileMetricsUpdate(
+                tiles.size() - firstNewIndex,
+                newClusterTiles,
+                getClusterCount(),
+                previousClusterCount,
+                getMaxClusterSize(),
+                getMaxClusterCount(),
+                previousMaxClusterSize,
+                getMaxSquareSize(),
+                previousMaxSquareSize,
+                maxSquares());
+    }
+
+    /**
+     * Adds a single tile without reporting what changed, for callers that
+     * read the metrics through the getters after every tile.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile was not visited before
+     */
+    boolean addTile(int x, int y) {
+        if (!tiles.add(x, y)) {
+            return false;
+        }
+        ensureTileCapacity(tiles.size());
+        clusterElements[tiles.size() - 1] = -1;
+        squareSizes[tiles.size() - 1] = 0;
+        pendingSquares.push(TileSet.pack(x, y));
+
+        updateClusterTile(x, y, null);
+        updateClusterTile(x - 1, y, null);
+        updateClusterTile(x + 1, y, null);
+        updateClusterTile(x, y - 1, null);
+        updateClusterTile(x, y + 1, null);
+        updateSquares();
+        return true;
+    }
+
+    /**
+     * Evaluates how the metrics would change if the given points were visited,
+     * without adding them.
+     *
+     * @param points the candidate points
+     * @return the metrics the session would have with the points added
+     */
+    public TileMetricsGain evaluate(Collection<Point> points) {
+        return evaluate(new TileSet(points));
+    }
+
+    /**
+     * Evaluates how the metrics would change if the given tiles were visited,
+     * without adding them.
+     *
+     * <p>
+     * The candidates are laid over the session in small local structures, so
+     * the work only grows with the neighborhoods of the candidates, the same
+     * neighborhoods {@link #addTiles(TileSet)} would touch. The session
+     * itself is left as it is, but like any other call this must not run
+     * concurrently with other calls on the session.
+     * </p>
+     *
+     * @param candidates the candidate tiles, already visited tiles are ignored
+     * @return the metrics the session would have with the tiles added
+     */
+    public TileMetricsGain evaluate(TileSet candidates) {
+        TileSet added = new TileSet(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!tiles.contains(candidates.xAt(i), candidates.yAt(i))) {
+                added.add(candidates.xAt(i), candidates.yAt(i));
+            }
+        }
+
+        TileSet newClusterTiles = new TileSet();
+        for (int i = 0; i < added.size(); i++) {
+            int x = added.xAt(i);
+            int y = added.yAt(i);
+            probeClusterTile(x, y, added, newClusterTiles);
+            probeClusterTile(x - 1, y, added, newClusterTiles);
+            probeClusterTile(x + 1, y, added, newClusterTiles);
+            probeClusterTile(x, y - 1, added, newClusterTiles);
+            probeClusterTile(x, y + 1, added, newClusterTiles);
+        }
+
+        return new TileMetricsGain(
+                added.size(),
+                newClusterTiles.size(),
+                Math.max(getMaxClusterSize(), joinedClusterSize(newClusterTiles)),
+                getMaxClusterSize(),
+                overlayMaxSquareSize(added),
+                getMaxSquareSize());
+    }
+
+    private boolean visited(int x, int y, TileSet added) {
+        return tiles.contains(x, y) || added.contains(x, y);
+    }
+
+    /**
+     * Collects the tile if it would become a cluster tile with the added
+     * tiles.
+     */
+    private void probeClusterTile(int x, int y, TileSet added, TileSet newClusterTiles) {
+        int index = tiles.indexOf(x, y);
+        if (index >= 0 ? clusterElements[index] >= 0 : !added.contains(x, y)) {
+            return;
+        }
+        if (!visited(x - 1, y, added)
+                || !visited(x + 1, y, added)
+                || !visited(x, y - 1, added)
+                || !visited(x, y + 1, added)) {
+            return;
+        }
+        newClusterTiles.add(x, y);
+    }
+
+    /**
+     * Joins the new cluster tiles with each other and with the clusters they
+     * touch, in a forest holding one element per new cluster tile followed by
+     * one element per touched cluster.
+     *
+     * @return the size of the largest cluster a new cluster tile would belong
+     *         to, or 0 if there is none
+     */
+    private int joinedClusterSize(TileSet newClusterTiles) {
+        int count = newClusterTiles.size();
+        if (count == 0) {
+            return 0;
+        }
+        // the element of every touched cluster, keyed by its root
+        HashMap<Integer, Integer> touchedRoots = new HashMap<Integer, Integer>();
+        DisjointSets joined = new DisjointSets(count);
+        for (int i = 0; i < count; i++) {
+            int x = newClusterTiles.xAt(i);
+            int y = newClusterTiles.yAt(i);
+            joinNeighbor(joined, i, x - 1, y, newClusterTiles, touchedRoots);
+            joinNeighbor(joined, i, x + 1, y, newClusterTiles, touchedRoots);
+            joinNeighbor(joined, i, x, y - 1, newClusterTiles, touchedRoots);
+            joinNeighbor(joined, i, x, y + 1, newClusterTiles, touchedRoots);
+        }
+
+        int[] sizes = new int[joined.size()];
+        for (int element = 0; element < count; element++) {
+            sizes[joined.find(element)]++;
+        }
+        for (Map.Entry<Integer, Integer> touched : touchedRoots.entrySet()) {
+            sizes[joined.find(touched.getValue())] += clusterSets.setSize(touched.getKey());
+        }
+        int maxSize = 0;
+        for (int size : sizes) {
+            maxSize = Math.max(maxSize, size);
+        }
+        return maxSize;
+    }
+
+    private void joinNeighbor(DisjointSets joined, int element, int x, int y, TileSet newClusterTiles,
+            HashMap<Integer, Integer> touchedRoots) {
+        int neighbor = newClusterTiles.indexOf(x, y);
+        if (neighbor < 0) {
+            int index = tiles.indexOf(x, y);
+            if (index < 0 || clusterElements[index] < 0) {
+                return;
+            }
+            int root = clusterSets.find(clusterElements[index]);
+            Integer touched = touchedRoots.get(root);
+            if (touched == null) {
+                touched = joined.add();
+                touchedRoots.put(root, touched);
+            }
+            neighbor = touched;
+        }
+        joined.union(element, neighbor);
+    }
+
+    /**
+     * Runs the square size updates of {@link #updateSquares()} for the added
+     * tiles, keeping the changed sizes apart from the session.
+     *
+     * @return the size of the max squares with the added tiles, or 0 if there
+     *         is no square larger than 3
+     */
+    private int overlayMaxSquareSize(TileSet added) {
+        TileSet changed = new TileSet();
+        int[] changedSizes = new int[16];
+        KeyQueue pending = new KeyQueue();
+        for (int i = 0; i < added.size(); i++) {
+            pending.push(added.keyAt(i));
+        }
+
+        int maxSize = maxSquareSize;
+        long previousKey = -1;
+        while (!pending.isEmpty()) {
+            long key = pending.pop();
+            if (key == previousKey) {
+                continue;
+            }
+            previousKey = key;
+
+            int x = TileSet.x(key);
+            int y = TileSet.y(key);
+            int size = 1 + Math.min(overlaySquareSize(x - 1, y, changed, changedSizes),
+                    Math.min(overlaySquareSize(x, y - 1, changed, changedSizes),
+                            overlaySquareSize(x - 1, y - 1, changed, changedSizes)));
+            if (size == overlaySquareSize(x, y, changed, changedSizes)) {
+                continue;
+            }
+            int index = changed.size();
+            if (!changed.add(x, y)) {
+                index = changed.indexOf(x, y);
+            } else if (index == changedSizes.length) {
+                changedSizes = Arrays.copyOf(changedSizes, index * 2);
+            }
+            changedSizes[index] = size;
+            maxSize = Math.max(maxSize, size);
+
+            queueOverlaySquare(pending, x + 1, y, added);
+            queueOverlaySquare(pending, x, y + 1, added);
+            queueOverlaySquare(pending, x + 1, y + 1, added);
+        }
+        return maxSize >= MaxSquares.MIN_SQUARE_SIZE ? maxSize : 0;
+    }
+
+    private void queueOverlaySquare(KeyQueue pending, int x, int y, TileSet added) {
+        if (visited(x, y, added)) {
+            pending.push(TileSet.pack(x, y));
+        }
+    }
+
+    private int overlaySquareSize(int x, int y, TileSet changed, int[] changedSizes) {
+        int index = changed.indexOf(x, y);
+        return index >= 0 ? changedSizes[index] : squareSize(x, y);
+    }
+
+    /**
+     * Turns the tile into a cluster tile if it just got its fourth neighbor.
+     */
+    private void updateClusterTile(int x, int y, TileSet newClusterTiles) {
+        int index = tiles.indexOf(x, y);
+        if (index < 0 || clusterElements[index] >= 0) {
+            return;
+        }
+        if (!tiles.contains(x - 1, y)
+                || !tiles.contains(x + 1, y)
+                || !tiles.contains(x, y - 1)
+                || !tiles.contains(x, y + 1)) {
+            return;
+        }
+
+        int element = clusterSets.add();
+        clusterElements[index] = element;
+        if (element == clusterTileIndices.length) {
+            clusterTileIndices = Arrays.copyOf(clusterTileIndices, element * 2);
+        }
+        clusterTileIndices[element] = index;
+        changeClusterCount(1, 1);
+        if (newClusterTiles != null) {
+            newClusterTiles.add(x, y);
+        }
+
+        joinCluster(element, x - 1, y);
+        joinCluster(element, x + 1, y);
+        joinCluster(element, x, y - 1);
+        joinCluster(element, x, y + 1);
+    }
+
+    private void joinCluster(int element, int x, int y) {
+        int neighbor = clusterElements[tiles.indexOf(x, y)];
+        if (neighbor < 0) {
+            return;
+        }
+        int root = clusterSets.find(element);
+        int neighborRoot = clusterSets.find(neighbor);
+        if (root == neighborRoot) {
+            return;
+        }
+        int size = clusterSets.setSize(root);
+        int neighborSize = clusterSets.setSize(neighborRoot);
+        clusterSets.union(root, neighborRoot);
+        changeClusterCount(size, -1);
+        changeClusterCount(neighborSize, -1);
+        changeClusterCount(size + neighborSize, 1);
+    }
+
+    private void changeClusterCount(int size, int change) {
+        if (size >= clusterCountsBySize.length) {
+            clusterCountsBySize = Arrays.copyOf(clusterCountsBySize, Math.max(size + 1, clusterCountsBySize.length * 2));
+        }
+        clusterCountsBySize[size] += change;
+        maxClusterSize = Math.max(maxClusterSize, size);
+    }
+
+    /**
+     * Recalculates the square sizes of all pending tiles in row-major order, so
+     * every tile is visited after the tiles its square size depends on.
+     */
+    private void updateSquares() {
+        long previousKey = -1;
+        while (!pendingSquares.isEmpty()) {
+            long key = pendingSquares.pop();
+            if (key == previousKey) {
+                continue;
+            }
+            previousKey = key;
+
+            int x = TileSet.x(key);
+            int y = TileSet.y(key);
+            int index = tiles.indexOf(x, y);
+            int size = 1 + Math.min(squareSize(x - 1, y), Math.min(squareSize(x, y - 1), squareSize(x - 1, y - 1)));
+            if (size == squareSizes[index]) {
+                continue;
+            }
+            squareSizes[index] = size;
+            trackSquare(key, size);
+
+            queueSquare(x + 1, y);
+            queueSquare(x, y + 1);
+            queueSquare(x + 1, y + 1);
+        }
+    }
+
+    private int squareSize(int x, int y) {
+        int index = tiles.indexOf(x, y);
+        return index < 0 ? 0 : squareSizes[index];
+    }
+
+    private void queueSquare(int x, int y) {
+        if (tiles.contains(x, y)) {
+            pendingSquares.push(TileSet.pack(x, y));
+        }
+    }
+
+    private void trackSquare(long corner, int size) {
+        if (size < maxSquareSize) {
+            return;
+        }
+        if (size > maxSquareSize) {
+            maxSquareSize = size;
+            maxSquareCornerCount = 0;
+        }
+        if (maxSquareCornerCount == maxSquareCorners.length) {
+            maxSquareCorners = Arrays.copyOf(maxSquareCorners, maxSquareCornerCount * 2);
+        }
+        maxSquareCorners[maxSquareCornerCount++] = corner;
+    }
+
+    private void ensureTileCapacity(int capacity) {
+        if (capacity > clusterElements.length) {
+            int length = Math.max(capacity, clusterElements.length * 2);
+            clusterElements = Arrays.copyOf(clusterElements, length);
+            squareSizes = Arrays.copyOf(squareSizes, length);
+        }
+    }
+
+    /**
+     * Restores a session from its state, see {@link TileMetricsSnapshot}.
+     * Only the forest and the counters are rebuilt, no neighborhood is
+     * checked and no square size is recalculated.
+     *
+     * @param keys        the packed keys of the tiles, in the order they were
+     *                    added
+     * @param labels      the cluster of every tile, see {@link #clusterLabels()}
+     * @param squareSizes the size of the largest square ending at every tile
+     * @param labelCount  the number of clusters
+     * @return the session
+     * @throws IllegalArgumentException if a key appears twice or a label is out
+     *                                  of range
+     */
+    static TileMetricsSession restore(long[] keys, int[] labels, int[] squareSizes, int labelCount) {
+        TileMetricsSession session = new TileMetricsSession();
+        session.ensureTileCapacity(keys.length);
+        int[] firstElements = new int[labelCount];
+        Arrays.fill(firstElements, -1);
+        for (int index = 0; index < keys.length; index++) {
+            if (!session.tiles.add(TileSet.x(keys[index]), TileSet.y(keys[index]))) {
+                throw new IllegalArgumentException("tiles must be distinct");
+            }
+            session.squareSizes[index] = squareSizes[index];
+            session.clusterElements[index] = -1;
+            session.trackSquare(keys[index], squareSizes[index]);
+
+            int label = labels[index];
+            if (label < 0) {
+                continue;
+            }
+            if (label >= labelCount) {
+                throw new IllegalArgumentException("label out of range: " + label);
+            }
+            int element = session.clusterSets.add();
+            session.clusterElements[index] = element;
+            if (element == session.clusterTileIndices.length) {
+                session.clusterTileIndices = Arrays.copyOf(session.clusterTileIndices, element * 2);
+            }
+            session.clusterTileIndices[element] = index;
+            if (firstElements[label] < 0) {
+                firstElements[label] = element;
+            } else {
+                session.clusterSets.union(firstElements[label], element);
+            }
+        }
+        for (int label = 0; label < labelCount; label++) {
+            if (firstElements[label] < 0) {
+                throw new IllegalArgumentException("empty cluster: " + label);
+            }
+            session.changeClusterCount(session.clusterSets.setSize(firstElements[label]), 1);
+        }
+        return session;
+    }
+
+    /**
+     * @return the cluster of every tile by its index, numbered in the order
+     *         the clusters got their first cluster tile, or -1 for tiles that
+     *         are no cluster tiles
+     */
+    int[] clusterLabels() {
+        int[] labels = new int[tiles.size()];
+        int[] rootLabels = new int[clusterSets.size()];
+        Arrays.fill(rootLabels, -1);
+        int labelCount = 0;
+        for (int index = 0; index < tiles.size(); index++) {
+            int element = clusterElements[index];
+            if (element < 0) {
+                labels[index] = -1;
+                continue;
+            }
+            int root = clusterSets.find(element);
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = labelCount++;
+            }
+            labels[index] = rootLabels[root];
+        }
+        return labels;
+    }
+
+    /**
+     * @return the size of the largest square ending at every tile, by its
+     *         index
+     */
+    int[] squareSizes() {
+        return Arrays.copyOf(squareSizes, tiles.size());
+    }
+
+    /**
+     * @return the max squares in the shape {@link MaxSquares#calculate()}
+     *         returns, in row-major order of their top left corners
+     */
+    public ArrayList<HashMap<Point, Integer>> maxSquares() {
+        ArrayList<HashMap<Point, Integer>> maxSquares = new ArrayList<HashMap<Point, Integer>>();
+        int size = getMaxSquareSize();
+        if (size == 0) {
+            return maxSquares;
+        }
+        long[] topLefts = new long[maxSquareCornerCount];
+        for (int i = 0; i < maxSquareCornerCount; i++) {
+            long corner = maxSquareCorners[i];
+            topLefts[i] = TileSet.pack(TileSet.x(corner) - size + 1, TileSet.y(corner) - size + 1);
+        }
+        Arrays.sort(topLefts);
+        for (long topLeft : topLefts) {
+            HashMap<Point, Integer> tile = new HashMap<Point, Integer>();
+            tile.put(new Point(TileSet.x(topLeft), TileSet.y(topLeft)), size);
+            maxSquares.add(tile);
+        }
+        return maxSquares;
+    }
+
+    /**
+     * Collects the tiles of every cluster, ordered by the first cluster tile
+     * of each cluster.
+     *
+     * @return one TileSet per cluster
+     */
+    public ArrayList<TileSet> clusters() {
+        return collectClusters(0);
+    }
+
+    /**
+     * @return the clusters of the max size
+     */
+    public ArrayList<TileSet> maxClusters() {
+        return collectClusters(getMaxClusterSize());
+    }
+
+    private ArrayList<TileSet> collectClusters(int onlySize) {
+        int[] rootLabels = new int[clusterSets.size()];
+        Arrays.fill(rootLabels, -1);
+        ArrayList<TileSet> clusters = new ArrayList<TileSet>();
+        for (int element = 0; element < clusterSets.size(); element++) {
+            int root = clusterSets.find(element);
+            int size = clusterSets.setSize(root);
+            if (onlySize > 0 && size != onlySize) {
+                continue;
+            }
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = clusters.size();
+                clusters.add(new TileSet(size));
+            }
+            int index = clusterTileIndices[element];
+            clusters.get(rootLabels[root]).add(tiles.xAt(index), tiles.yAt(index));
+        }
+        return clusters;
+    }
+
+    /**
+     * @return the tiles added so far, must not be modified
+     */
+    public TileSet getTiles() {
+        return tiles;
+    }
+
+    public int getClusterCount() {
+        return clusterSets.setCount();
+    }
+
+    public int getMaxClusterSize() {
+        return maxClusterSize > 0 && clusterCountsBySize[maxClusterSize] > 0 ? maxClusterSize : 0;
+    }
+
+    public int getMaxClusterCount() {
+        return maxClusterSize > 0 ? clusterCountsBySize[maxClusterSize] : 0;
+    }
+
+    /**
+     * @return the size of the max squares, or 0 if there is no square larger
+     *         than 3
+     */
+    public int getMaxSquareSize() {
+        return maxSquareSize >= MaxSquares.MIN_SQUARE_SIZE ? maxSquareSize : 0;
+    }
+
+    /**
+     * A binary min-heap of packed keys, which pops tiles in row-major order.
+     */
+    private static class KeyQueue {
+        private long[] keys = new long[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            keys[i] = key;
+        }
+
+        long pop() {
+            long top = keys[0];
+            long last = keys[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= last) {
+                    break;
+                }
+                keys[i] = keys[child];
+                i = child;
+            }
+            keys[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the state of a {@link TileMetricsSession} to a file and restores a
+ * session from it, without recalculating its metrics.
+ *
+ * <p>
+ * A snapshot starts with a header of big-endian values: the magic number
+ * {@code MTMS}, the format version, the number of tiles, the number of
+ * clusters, the {@link TileFingerprint} of the tiles, the size of the max
+ * clusters and the size of the max squares. It is followed by four arrays:
+ * the packed keys of the tiles in the order they were added, the cluster of
+ * every tile (-1 for tiles that are no cluster tiles), the size of the
+ * largest square ending at every tile and the size of every cluster.
+ * </p>
+ *
+ * <p>
+ * Reading maps the file into memory and copies the arrays in bulk. Restoring
+ * only rebuilds the cluster forest from the stored clusters; no neighborhood
+ * is checked and no square size is recalculated. The fingerprint of the
+ * restored tiles, the cluster sizes and the maxima are checked against the
+ * header, so a damaged snapshot is rejected instead of resumed.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileMetricsSnapshot.write(session, path);
+ * TileMetricsSession restored = TileMetricsSnapshot.read(path, tiles.fingerprint());
+ * }
+ * </pre>
+ *
+ * @see TileMetricsSession
+ * @see TileFile
+ *
+ */
+public final class TileMetricsSnapshot {
+    /**
+     * The magic number every snapshot starts with, "MTMS" in ASCII.
+     */
+    public static final int MAGIC = 0x4D544D53;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 40;
+
+    private TileMetricsSnapshot() {
+    }
+
+    /**
+     * Writes the state of the session to a file, replacing an existing file.
+     *
+     * @param session the session to write
+     * @param path    the file to write
+     * @throws IOException if writing fails
+     */
+    public static void write(TileMetricsSession session, Path path) throws IOException {
+        TileSet tiles = session.getTiles();
+        int[] labels = session.clusterLabels();
+        int[] squareSizes = session.squareSizes();
+        int[] clusterSizes = new int[session.getClusterCount()];
+        for (int label : labels) {
+            if (label >= 0) {
+                clusterSizes[label]++;
+            }
+        }
+        TileFingerprint fingerprint = tiles.fingerprint();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tiles.size());
+            out.writeInt(clusterSizes.length);
+            out.writeLong(fingerprint.low());
+            out.writeLong(fingerprint.high());
+            out.writeInt(session.getMaxClusterSize());
+            out.writeInt(session.getMaxSquareSize());
+            for (int index = 0; index < tiles.size(); index++) {
+                out.writeLong(tiles.keyAt(index));
+            }
+            for (int label : labels) {
+                out.writeInt(label);
+            }
+            for (int size : squareSizes) {
+                out.writeInt(size);
+            }
+            for (int size : clusterSizes) {
+                out.writeInt(size);
+            }
+        }
+    }
+
+    /**
+     * Restores a session from a snapshot.
+     *
+     * @param path the file to read
+     * @return the restored session
+     * @throws IOException if the file cannot be read or is not a valid
+     *                     snapshot
+     */
+    public static TileMetricsSession read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    /**
+     * Restores a session from a snapshot, if it was written for the expected
+     * tiles.
+     *
+     * @param path     the file to read
+     * @param expected the fingerprint of the tiles the snapshot must hold, or
+     *                 null to accept any tiles
+     * @return the restored session
+     * @throws IOException if the file cannot be read, is not a valid snapshot
+     *                     or holds other tiles
+     */
+    public static TileMetricsSession read(Path path, TileFingerprint expected) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + path);
+        }
+        int tileCount = buffer.getInt();
+        int clusterCount = buffer.getInt();
+        TileFingerprint fingerprint = new TileFingerprint(tileCount, buffer.getLong(), buffer.getLong());
+        int maxClusterSize = buffer.getInt();
+        int maxSquareSize = buffer.getInt();
+        if (tileCount < 0 || clusterCount < 0) {
+            throw new IOException("Corrupt snapshot: " + path);
+        }
+        if (expected != null && !expected.equals(fingerprint)) {
+            throw new IOException("Snapshot holds other tiles: " + path);
+        }
+        long length = HEADER_BYTES + 16L * tileCount + 4L * clusterCount;
+        if (buffer.capacity() < length) {
+            throw new IOException("Truncated snapshot: " + path);
+        }
+        if (buffer.capacity() > length) {
+            throw new IOException("Corrupt snapshot: " + path);
+        }
+
+        long[] keys = new long[tileCount];
+        int[] labels = new int[tileCount];
+        int[] squareSizes = new int[tileCount];
+        int[] clusterSizes = new int[clusterCount];
+        buffer.asLongBuffer().get(keys);
+        buffer.position(buffer.position() + 8 * tileCount);
+        buffer.asIntBuffer().get(labels).get(squareSizes).get(clusterSizes);
+
+        TileMetricsSession session;
+        try {
+            session = TileMetricsSession.restore(keys, labels, squareSizes, clusterCount);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + path, e);
+        }
+        if (!session.getTiles().fingerprint().equals(fingerprint)
+                || session.getMaxClusterSize() != maxClusterSize
+                || session.getMaxSquareSize() != maxSquareSize) {
+            throw new IOException("Corrupt snapshot: " + path);
+        }
+        int[] restoredSizes = new int[clusterCount];
+        for (int label : labels) {
+            if (label >= 0) {
+                restoredSizes[label]++;
+            }
+        }
+        for (int label = 0; label < clusterCount; label++) {
+            if (restoredSizes[label] != clusterSizes[label]) {
+                throw new IOException("Corrupt snapshot: " + path);
+            }
+        }
+        return session;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
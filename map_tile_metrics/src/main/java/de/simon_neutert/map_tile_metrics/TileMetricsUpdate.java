@@ -0,0 +1,49 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A record describing the metrics of a {@link TileMetricsSession} after a
+ * batch of tiles was added, together with what the batch changed.
+ *
+ * @param addedTiles             the number of tiles that were not visited
+ *                               before
+ * @param newClusterTiles        the tiles that became cluster tiles
+ * @param clusterCount           the number of clusters
+ * @param previousClusterCount   the number of clusters before the batch
+ * @param maxClusterSize         the size of the max clusters
+ * @param maxClusterCount        the number of clusters of the max size
+ * @param previousMaxClusterSize the size of the max clusters before the batch
+ * @param maxSquareSize          the size of the max squares, or 0 if there is
+ *                               no square larger than 3
+ * @param previousMaxSquareSize  the size of the max squares before the batch
+ * @param maxSquares             the max squares in the shape
+ *                               {@link MaxSquares#calculate()} returns
+ */
+public record TileMetricsUpdate(
+        int addedTiles,
+        TileSet newClusterTiles,
+        int clusterCount,
+        int previousClusterCount,
+        int maxClusterSize,
+        int maxClusterCount,
+        int previousMaxClusterSize,
+        int maxSquareSize,
+        int previousMaxSquareSize,
+        ArrayList<HashMap<Point, Integer>> maxSquares) {
+
+    /**
+     * @return true if the batch grew the max clusters
+     */
+    public boolean maxClusterChanged() {
+        return maxClusterSize != previousMaxClusterSize;
+    }
+
+    /**
+     * @return true if the batch grew the max squares
+     */
+    public boolean maxSquareChanged() {
+        return maxSquareSize != previousMaxSquareSize;
+    }
+}
@@ -0,0 +1,234 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The TilePyramid class derives the tiles of coarser zoom levels from the
+ * tiles of the finest zoom level and calculates their metrics.
+ *
+ * <p>
+ * The parent of a tile (x, y) one level up is (x &gt;&gt; 1, y &gt;&gt; 1).
+ * Every level is built from the level below it in a single pass over its
+ * {@link TileSet}, summing how many of the finest tiles lie within each
+ * parent into an array indexed by the parent's TileSet index. A
+ * {@link VisitRule} then decides which tiles of a level count as visited, for
+ * example any tile with at least one visited finest tile in it.
+ * </p>
+ *
+ * <p>
+ * The finest tiles are copied on construction, so later changes to the given
+ * TileSet do not affect the pyramid. Levels are built once, on first use, and
+ * shared by all calls. A TilePyramid is not thread-safe.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TilePyramid pyramid = new TilePyramid(tiles, 17);
+ * HashMap<Integer, TileMetricsResult> results = pyramid.calculate(17, 14);
+ * int maxSquareSize14 = results.get(14).maxSquareSize();
+ * }
+ * </pre>
+ *
+ * @see TileMetrics
+ * @see VisitRule
+ *
+ */
+public class TilePyramid {
+    private final int zoom;
+    private final VisitRule rule;
+
+    private final ArrayList<TileSet> levels = new ArrayList<TileSet>();
+    private final ArrayList<int[]> levelCounts = new ArrayList<int[]>();
+
+    /**
+     * Constructs a new TilePyramid that counts a tile as visited if any of the
+     * finest tiles in it is visited.
+     *
+     * @param tiles the visited tiles of the finest zoom level
+     * @param zoom  the zoom level of the tiles
+     */
+    public TilePyramid(TileSet tiles, int zoom) {
+        this(tiles, zoom, VisitRule.any());
+    }
+
+    /**
+     * Constructs a new TilePyramid.
+     *
+     * @param points the visited points of the finest zoom level
+     * @param zoom   the zoom level of the points
+     * @param rule   decides which tiles of a coarser level are visited
+     */
+    public TilePyramid(Collection<Point> points, int zoom, VisitRule rule) {
+        this(new TileSet(points), zoom, rule);
+    }
+
+    /**
+     * Constructs a new TilePyramid.
+     *
+     * @param tiles the visited tiles of the finest zoom level
+     * @param zoom  the zoom level of the tiles
+     * @param rule  decides which tiles of a coarser level are visited
+     */
+    public TilePyramid(TileSet tiles, int zoom, VisitRule rule) {
+        if (zoom < 0 || zoom > 30) {
+            throw new IllegalArgumentException("zoom must be between 0 and 30");
+        }
+        this.zoom = zoom;
+        this.rule = rule;
+        int[] counts = new int[tiles.size()];
+        Arrays.fill(counts, 1);
+        levels.add(copy(tiles));
+        levelCounts.add(counts);
+    }
+
+    /**
+     * Calculates the metrics of the visited tiles of the given zoom levels.
+     *
+     * @param zooms the zoom levels, from the finest zoom level down to 0
+     * @return a HashMap mapping each zoom level to its metrics
+     */
+    public HashMap<Integer, TileMetricsResult> calculate(int... zooms) {
+        HashMap<Integer, TileMetricsResult> results = new HashMap<Integer, TileMetricsResult>();
+        for (int level : zooms) {
+            if (!results.containsKey(level)) {
+                results.put(level, new TileMetrics(tiles(level)).calculate());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the visited tiles of a zoom level.
+     *
+     * @param level the zoom level, from the finest zoom level down to 0
+     * @return the tiles the rule counts as visited, a new TileSet the caller
+     *         may change
+     */
+    public TileSet tiles(int level) {
+        int shift = shift(level);
+        if (shift == 0) {
+            return copy(levels.get(0));
+        }
+        TileSet all = levels.get(shift);
+        int[] counts = levelCounts.get(shift);
+        long children = 1L << (2 * shift);
+        TileSet visited = new TileSet(all.size());
+        for (int i = 0; i < all.size(); i++) {
+            if (rule.visited(counts[i], children)) {
+                visited.add(all.xAt(i), all.yAt(i));
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Returns how many visited tiles of the finest zoom level lie within a tile.
+     *
+     * @param level the zoom level of the tile
+     * @param x     the x-coordinate of the tile
+     * @param y     the y-coordinate of the tile
+     * @return the number of visited finest tiles within the tile
+     */
+    public int visitedChildren(int level, int x, int y) {
+        int shift = shift(level);
+        int index = levels.get(shift).indexOf(x, y);
+        return index < 0 ? 0 : levelCounts.get(shift)[index];
+    }
+
+    /**
+     * @return the zoom level of the finest tiles
+     */
+    public int getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Builds the levels down to the given zoom level.
+     *
+     * @return how many levels the zoom level is above the finest one
+     */
+    private int shift(int level) {
+        if (level < 0 || level > zoom) {
+            throw new IllegalArgumentException("level must be between 0 and " + zoom);
+        }
+        int shift = zoom - level;
+        while (levels.size() <= shift) {
+            aggregate(levels.get(levels.size() - 1), levelCounts.get(levelCounts.size() - 1));
+        }
+        return shift;
+    }
+
+    private static TileSet copy(TileSet tiles) {
+        TileSet copy = new TileSet(tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            copy.add(tiles.xAt(i), tiles.yAt(i));
+        }
+        return copy;
+    }
+
+    private void aggregate(TileSet children, int[] childCounts) {
+        TileSet parents = new TileSet(children.size() / 2);
+        int[] counts = new int[Math.max(children.size() / 2, 1)];
+        for (int i = 0; i < children.size(); i++) {
+            int x = children.xAt(i) >> 1;
+            int y = children.yAt(i) >> 1;
+            int index = parents.size();
+            if (!parents.add(x, y)) {
+                index = parents.indexOf(x, y);
+            } else if (index == counts.length) {
+                counts = Arrays.copyOf(counts, index * 2);
+            }
+            counts[index] += childCounts[i];
+        }
+        levels.add(parents);
+        levelCounts.add(counts);
+    }
+
+    /**
+     * Decides whether a tile of a coarser zoom level counts as visited.
+     */
+    @FunctionalInterface
+    public interface VisitRule {
+        /**
+         * @param visitedChildren the number of visited finest tiles within the
+         *                        tile
+         * @param totalChildren   the number of finest tiles within the tile
+         * @return true if the tile counts as visited
+         */
+        boolean visited(int visitedChildren, long totalChildren);
+
+        /**
+         * @return a rule counting a tile as visited if any finest tile in it is
+         */
+        static VisitRule any() {
+            return (visitedChildren, totalChildren) -> visitedChildren > 0;
+        }
+
+        /**
+         * @param minimum the number of finest tiles that must be visited
+         * @return a rule counting a tile as visited if at least the given number
+         *         of finest tiles in it are
+         */
+        static VisitRule atLeast(int minimum) {
+            return (visitedChildren, totalChildren) -> visitedChildren >= minimum;
+        }
+
+        /**
+         * @param share the share of finest tiles that must be visited, between 0
+         *              and 1
+         * @return a rule counting a tile as visited if at least the given share
+         *         of finest tiles in it are
+         */
+        static VisitRule share(double share) {
+            return (visitedChildren, totalChildren) -> visitedChildren > 0
+                    && visitedChildren >= share * totalChildren;
+        }
+    }
+}
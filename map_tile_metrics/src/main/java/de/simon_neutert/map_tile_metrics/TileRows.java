@@ -0,0 +1,169 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, row-major sorted view of a set of tiles.
+ *
+ * <p>
+ * The tiles are kept as sorted packed keys (see {@link TileSet#pack(int, int)})
+ * together with the start offset of every occupied row. Algorithms that sweep
+ * the tiles row by row, like {@link SquareScan}, can walk the rows with plain
+ * array offsets and find the neighbors in the row above or below with a
+ * cursor instead of hash lookups.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileRows rows = new TileRows(tiles);
+ * for (int row = 0; row < rows.rowCount(); row++) {
+ *     for (int i = rows.rowStart(row); i < rows.rowEnd(row); i++) {
+ *         int x = rows.xAt(i);
+ *     }
+ * }
+ * }
+ * </pre>
+ *
+ * @see TileSet
+ *
+ */
+public class TileRows {
+    private final long[] keys;
+    private final int[] rowStarts;
+
+    /**
+     * Constructs the rows of the given tiles.
+     *
+     * @param tiles the tiles to sort
+     */
+    public TileRows(TileSet tiles) {
+        this(tiles.toSortedKeys());
+    }
+
+    /**
+     * Constructs the rows from packed keys that are already sorted in row-major
+     * order and free of duplicates. The array is used as is, not copied.
+     *
+     * @param sortedKeys the sorted packed keys
+     */
+    TileRows(long[] sortedKeys) {
+        this.keys = sortedKeys;
+
+        int rows = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (i == 0 || TileSet.y(sortedKeys[i]) != TileSet.y(sortedKeys[i - 1])) {
+                rows++;
+            }
+        }
+        this.rowStarts = new int[rows + 1];
+        int row = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (i == 0 || TileSet.y(sortedKeys[i]) != TileSet.y(sortedKeys[i - 1])) {
+                rowStarts[row++] = i;
+            }
+        }
+        rowStarts[rows] = sortedKeys.length;
+    }
+
+    /**
+     * @return the number of tiles
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the number of rows holding at least one tile
+     */
+    public int rowCount() {
+        return rowStarts.length - 1;
+    }
+
+    /**
+     * @param row the row number, from 0 to rowCount() - 1
+     * @return the y-coordinate shared by all tiles of the row
+     */
+    public int rowY(int row) {
+        return TileSet.y(keys[rowStarts[row]]);
+    }
+
+    /**
+     * @param row the row number, from 0 to rowCount() - 1
+     * @return the index of the first tile of the row
+     */
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    /**
+     * @param row the row number, from 0 to rowCount() - 1
+     * @return the index after the last tile of the row
+     */
+    public int rowEnd(int row) {
+        return rowStarts[row + 1];
+    }
+
+    /**
+     * @param index the index of a tile, from 0 to size() - 1
+     * @return the x-coordinate of the tile
+     */
+    public int xAt(int index) {
+        return TileSet.x(keys[index]);
+    }
+
+    /**
+     * @param index the index of a tile, from 0 to size() - 1
+     * @return the y-coordinate of the tile
+     */
+    public int yAt(int index) {
+        return TileSet.y(keys[index]);
+    }
+
+    /**
+     * @param index the index of a tile, from 0 to size() - 1
+     * @return the packed key of the tile
+     */
+    public long keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the index of a tile using a binary search.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the index of the tile, or a negative value if it is not present
+     */
+    public int indexOf(int x, int y) {
+        if (x < 0 || y < 0) {
+            return -1;
+        }
+        return Math.max(Arrays.binarySearch(keys, TileSet.pack(x, y)), -1);
+    }
+
+    /**
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile is present
+     */
+    public boolean contains(int x, int y) {
+        return indexOf(x, y) >= 0;
+    }
+
+    /**
+     * Converts the rows back into a TileSet.
+     *
+     * @return a new TileSet holding the tiles in row-major order
+     */
+    public TileSet toTileSet() {
+        TileSet tiles = new TileSet(keys.length);
+        for (long key : keys) {
+            tiles.add(TileSet.x(key), TileSet.y(key));
+        }
+        return tiles;
+    }
+}
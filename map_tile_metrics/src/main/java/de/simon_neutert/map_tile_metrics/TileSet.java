@@ -0,0 +1,359 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * A set of tiles backed by primitive arrays.
+ *
+ * <p>
+ * Each tile is packed into a single {@code long} (y in the upper, x in the
+ * lower 32 bits) and stored in a dense array in insertion order. Lookups go
+ * through an open addressing table with linear probing that holds indices
+ * into the dense array. Compared to a {@code HashSet<Point>} this needs no
+ * boxed {@link Point} and no map node per tile, and the dense index of a tile
+ * can be used to address parallel {@code int[]} or {@code boolean[]} state.
+ * </p>
+ *
+ * <p>
+ * Like {@link Point}, a TileSet only holds tiles with non-negative
+ * coordinates. Lookups of negative coordinates simply return {@code false},
+ * so neighbors at the x=0/y=0 edge can be probed without any special casing.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileSet tiles = new TileSet(points);
+ * tiles.add(4, 2);
+ * HashMap<String, ArrayList<TileSet>> results = new Clusters(tiles).calculateTiles();
+ * }
+ * </pre>
+ *
+ * @see Point
+ * @see Clusters
+ * @see MaxSquares
+ *
+ */
+public class TileSet {
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int size;
+    private int[] table;
+    private int shift;
+
+    private long fingerprintLow;
+    private long fingerprintHigh;
+
+    /**
+     * Constructs an empty TileSet.
+     */
+    public TileSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Constructs an empty TileSet sized to hold the given number of tiles
+     * without resizing.
+     *
+     * @param expectedSize the number of tiles expected to be added
+     */
+    public TileSet(int expectedSize) {
+        this.keys = new long[Math.max(expectedSize, 1)];
+        allocateTable(tableCapacityFor(expectedSize));
+    }
+
+    /**
+     * Constructs a TileSet containing the given points.
+     *
+     * @param points the points to add
+     */
+    public TileSet(Collection<Point> points) {
+        this(points.size());
+        for (Point point : points) {
+            add(point.x(), point.y());
+        }
+    }
+
+    /**
+     * Packs the given coordinates into a single long. Packed keys of tiles with
+     * non-negative coordinates sort in row-major order (by y, then by x).
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the packed key
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key a packed key
+     * @return the x-coordinate of the packed key
+     */
+    public static int x(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @param key a packed key
+     * @return the y-coordinate of the packed key
+     */
+    public static int y(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * Adds a tile to the set.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile was not yet part of the set
+     * @throws IllegalArgumentException if x or y is negative
+     */
+    public boolean add(int x, int y) {
+        if (x < 0 || y < 0) {
+            throw new IllegalArgumentException("x and y must be positive");
+        }
+        long key = pack(x, y);
+        int slot = slot(key);
+        int mask = table.length - 1;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[size++] = key;
+        table[slot] = size;
+        fingerprintLow += mix(key);
+        fingerprintHigh += fmix(key);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a point to the set.
+     *
+     * @param point the point to add
+     * @return true if the point was not yet part of the set
+     */
+    public boolean add(Point point) {
+        return add(point.x(), point.y());
+    }
+
+    /**
+     * Checks whether a tile is part of the set. Negative coordinates are never
+     * part of a set.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return true if the tile is part of the set
+     */
+    public boolean contains(int x, int y) {
+        return indexOf(x, y) >= 0;
+    }
+
+    /**
+     * Checks whether a point is part of the set.
+     *
+     * @param point the point to look up
+     * @return true if the point is part of the set
+     */
+    public boolean contains(Point point) {
+        return contains(point.x(), point.y());
+    }
+
+    /**
+     * @return the number of tiles in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the set holds no tiles
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes every tile to the given consumer, in insertion order.
+     *
+     * @param consumer the consumer receiving the coordinates of each tile
+     */
+    public void forEach(TileConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(x(keys[i]), y(keys[i]));
+        }
+    }
+
+    /**
+     * Converts the set into a set of points.
+     *
+     * @return a new HashSet containing a Point for every tile
+     */
+    public HashSet<Point> toPoints() {
+        HashSet<Point> points = new HashSet<Point>(size * 2);
+        for (int i = 0; i < size; i++) {
+            points.add(new Point(x(keys[i]), y(keys[i])));
+        }
+        return points;
+    }
+
+    /**
+     * Returns the packed keys of all tiles sorted in row-major order.
+     *
+     * @return a new array of packed keys
+     * @see #pack(int, int)
+     */
+    public long[] toSortedKeys() {
+        long[] sorted = Arrays.copyOf(keys, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the dense index of a tile. Indices run from 0 to size() - 1 in
+     * insertion order.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the index of the tile, or -1 if it is not part of the set
+     */
+    int indexOf(int x, int y) {
+        if (x < 0 || y < 0) {
+            return -1;
+        }
+        long key = pack(x, y);
+        int slot = slot(key);
+        int mask = table.length - 1;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (keys[index] == key) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    long keyAt(int index) {
+        return keys[index];
+    }
+
+    int xAt(int index) {
+        return x(keys[index]);
+    }
+
+    int yAt(int index) {
+        return y(keys[index]);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TileSet)) {
+            return false;
+        }
+        TileSet tiles = (TileSet) other;
+        if (tiles.size() != size || tiles.fingerprintLow != fingerprintLow
+                || tiles.fingerprintHigh != fingerprintHigh) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!tiles.contains(xAt(i), yAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a fingerprint of the tiles that does not depend on the order they
+     * were added in. It is kept up to date on every add, so this takes constant
+     * time.
+     *
+     * @return the fingerprint of the tiles
+     */
+    public TileFingerprint fingerprint() {
+        return new TileFingerprint(size, fingerprintLow, fingerprintHigh);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprintLow ^ (fingerprintLow >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toPoints().toString();
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+
+    private static long mix(long key) {
+        long h = key * PHI;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, independent of {@link #mix(long)}.
+     */
+    private static long fmix(long key) {
+        long h = key ^ (key >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static int tableCapacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L + 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocateTable(int capacity) {
+        table = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity) {
+        allocateTable(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(keys[i]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Receives the coordinates of a tile without boxing them into a Point.
+     */
+    @FunctionalInterface
+    public interface TileConsumer {
+        void accept(int x, int y);
+    }
+}
@@ -0,0 +1,101 @@
+package de.simon_neutert.map_tile_metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A source of the tiles of one user, loaded lazily by the
+ * {@link BatchMetricsEngine}.
+ *
+ * <p>
+ * The estimated tile count is asked for before loading, it decides how much of
+ * the memory budget the source reserves. It should not be lower than the
+ * number of tiles actually loaded.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileSource source = TileSource.ofTileFile("user-42", Paths.get("tiles/user-42.bin"));
+ * }
+ * </pre>
+ *
+ * @see BatchMetricsEngine
+ *
+ */
+public interface TileSource {
+    /**
+     * @return the id the results of this source are reported with
+     */
+    String id();
+
+    /**
+     * @return an upper estimate of the number of tiles {@link #load()} returns
+     * @throws IOException if the estimate cannot be determined
+     */
+    int estimatedTileCount() throws IOException;
+
+    /**
+     * @return the tiles of this source
+     * @throws IOException if the tiles cannot be loaded
+     */
+    TileSet load() throws IOException;
+
+    /**
+     * Creates a source of tiles already in memory.
+     *
+     * @param id    the id of the source
+     * @param tiles the tiles
+     * @return the source
+     */
+    static TileSource of(String id, TileSet tiles) {
+        return new TileSource() {
+            @Override
+            public String id() {
+                return id;
+            }
+
+            @Override
+            public int estimatedTileCount() {
+                return tiles.size();
+            }
+
+            @Override
+            public TileSet load() {
+                return tiles;
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading a file written by {@link TileFile}. Every tile
+     * takes at least one byte of the file, so the file size is used as the
+     * estimate.
+     *
+     * @param id   the id of the source
+     * @param path the tile file
+     * @return the source
+     */
+    static TileSource ofTileFile(String id, Path path) {
+        return new TileSource() {
+            @Override
+            public String id() {
+                return id;
+            }
+
+            @Override
+            public int estimatedTileCount() throws IOException {
+                return (int) Math.min(Files.size(path), Integer.MAX_VALUE);
+            }
+
+            @Override
+            public TileSet load() throws IOException {
+                return TileFile.readTileSet(path);
+            }
+        };
+    }
+}
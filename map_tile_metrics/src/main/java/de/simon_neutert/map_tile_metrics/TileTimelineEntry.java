@@ -0,0 +1,21 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record holding the metrics of a history right after all tiles visited at
+ * a timestamp were added, see {@link TileHistoryReplay}.
+ *
+ * @param timestamp      the timestamp
+ * @param tileCount      the number of tiles visited up to the timestamp
+ * @param clusterCount   the number of clusters
+ * @param maxClusterSize the size of the max clusters, or 0 if there is no
+ *                       cluster
+ * @param maxSquareSize  the size of the max squares, or 0 if there is no
+ *                       square larger than 3
+ */
+public record TileTimelineEntry(
+        long timestamp,
+        int tileCount,
+        int clusterCount,
+        int maxClusterSize,
+        int maxSquareSize) {
+}
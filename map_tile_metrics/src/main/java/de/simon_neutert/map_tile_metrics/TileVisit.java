@@ -0,0 +1,11 @@
+package de.simon_neutert.map_tile_metrics;
+
+/**
+ * A record holding a tile together with the time it was first visited.
+ *
+ * @param x         the x-coordinate of the tile
+ * @param y         the y-coordinate of the tile
+ * @param timestamp the time of the visit, e.g. in epoch milliseconds
+ */
+public record TileVisit(int x, int y, long timestamp) {
+}
@@ -0,0 +1,261 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatchMetricsEngineTest {
+    @Test
+    void calculatesEverySource() throws IOException, InterruptedException {
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        for (String file : new String[] { "test_data.json", "test_data3.json", "test_data_micro.json" }) {
+            String content = new String(Files.readAllBytes(Paths.get("src/test/resources/" + file)));
+            sources.add(TileSource.of(file, new TileSet(JSON.std.listOfFrom(Point.class, content))));
+        }
+        Random random = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            TileSet tiles = new TileSet();
+            for (int j = 0; j < 400; j++) {
+                tiles.add(random.nextInt(30), random.nextInt(30));
+            }
+            sources.add(TileSource.of("random-" + i, tiles));
+        }
+
+        Results results = new Results();
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(1_000 * BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+            assertEquals(0, engine.getReservedBytes());
+        }
+
+        assertTrue(results.failed.isEmpty());
+        assertEquals(sources.size(), results.completed.size());
+        for (TileSource source : sources) {
+            TileSet tiles = source.load();
+            Clusters clusters = new Clusters(tiles);
+            BatchResult result = results.completed.get(source.id());
+            assertEquals(tiles.size(), result.tileCount());
+            assertEquals(clusters.calculateTiles().get("clusters").size(), result.clusterCount());
+            assertEquals(clusters.calculateTiles().get("maxClusters"), result.maxClusters());
+            assertEquals(new MaxSquares(clusters.calculateTiles().get("clusters"), tiles).calculate(),
+                    result.maxSquares());
+        }
+    }
+
+    @Test
+    void staysWithinMemoryBudget() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        for (int i = 0; i < 12; i++) {
+            String id = "source-" + i;
+            TileSet tiles = new TileSet();
+            for (int x = 0; x < 10; x++) {
+                tiles.add(x, i);
+            }
+            sources.add(new TileSource() {
+                public String id() {
+                    return id;
+                }
+
+                public int estimatedTileCount() {
+                    return tiles.size();
+                }
+
+                public TileSet load() {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return tiles;
+                }
+            });
+        }
+
+        Results results = new Results() {
+            @Override
+            public void completed(BatchResult result) {
+                running.decrementAndGet();
+                super.completed(result);
+            }
+        };
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(25 * BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+        }
+        assertEquals(12, results.count.get());
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    void runsSourceLargerThanBudgetAlone() throws InterruptedException {
+        TileSet tiles = new TileSet();
+        for (int x = 0; x < 100; x++) {
+            tiles.add(x, 0);
+        }
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        sources.add(TileSource.of("small", new TileSet()));
+        sources.add(TileSource.of("huge", tiles));
+
+        Results results = new Results();
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(10 * BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+        }
+        assertEquals(100, results.completed.get("huge").tileCount());
+        assertEquals(0, results.completed.get("small").tileCount());
+    }
+
+    @Test
+    void reportsFailingSources() throws InterruptedException {
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        sources.add(TileSource.ofTileFile("missing", Paths.get("src/test/resources/missing.bin")));
+        sources.add(new TileSource() {
+            public String id() {
+                return "broken";
+            }
+
+            public int estimatedTileCount() {
+                return 1;
+            }
+
+            public TileSet load() throws IOException {
+                throw new IOException("broken");
+            }
+        });
+
+        Results results = new Results();
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+        }
+        assertTrue(results.completed.isEmpty());
+        assertTrue(results.failed.get("missing") instanceof IOException);
+        assertEquals("broken", results.failed.get("broken").getMessage());
+    }
+
+    @Test
+    void reportsThrowingListeners() throws InterruptedException {
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        sources.add(TileSource.of("first", new TileSet()));
+        sources.add(TileSource.of("second", new TileSet()));
+
+        Results results = new Results() {
+            @Override
+            public void completed(BatchResult result) {
+                throw new IllegalStateException(result.sourceId());
+            }
+        };
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+        }
+        assertEquals("first", results.failed.get("first").getMessage());
+        assertEquals("second", results.failed.get("second").getMessage());
+        assertEquals(2, results.count.get());
+    }
+
+    @Test
+    void reportsErrors() throws InterruptedException {
+        ArrayList<TileSource> sources = new ArrayList<TileSource>();
+        sources.add(new TileSource() {
+            public String id() {
+                return "oom";
+            }
+
+            public int estimatedTileCount() {
+                return 1;
+            }
+
+            public TileSet load() {
+                throw new OutOfMemoryError("oom");
+            }
+        });
+
+        Results results = new Results();
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(BatchMetricsEngine.BYTES_PER_TILE)) {
+            engine.run(sources, results);
+            assertEquals(0, engine.getReservedBytes());
+        }
+        assertTrue(results.failed.get("oom") instanceof OutOfMemoryError);
+    }
+
+    @Test
+    void waitsOnlyForItsOwnSources() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch loading = new CountDownLatch(1);
+        ArrayList<TileSource> slow = new ArrayList<TileSource>();
+        slow.add(new TileSource() {
+            public String id() {
+                return "slow";
+            }
+
+            public int estimatedTileCount() {
+                return 1;
+            }
+
+            public TileSet load() throws IOException {
+                loading.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return new TileSet();
+            }
+        });
+        ArrayList<TileSource> fast = new ArrayList<TileSource>();
+        fast.add(TileSource.of("fast", new TileSet()));
+
+        Results results = new Results();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (BatchMetricsEngine engine = new BatchMetricsEngine(10 * BatchMetricsEngine.BYTES_PER_TILE, executor)) {
+            Thread slowRun = new Thread(() -> {
+                try {
+                    engine.run(slow, results);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            slowRun.start();
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+            engine.run(fast, results);
+            assertNotNull(results.completed.get("fast"));
+            assertNull(results.completed.get("slow"));
+
+            blocked.countDown();
+            slowRun.join();
+        } finally {
+            executor.shutdown();
+        }
+        assertNotNull(results.completed.get("slow"));
+    }
+
+    private static class Results implements BatchListener {
+        final ConcurrentHashMap<String, BatchResult> completed = new ConcurrentHashMap<String, BatchResult>();
+        final ConcurrentHashMap<String, Throwable> failed = new ConcurrentHashMap<String, Throwable>();
+        final AtomicInteger count = new AtomicInteger();
+
+        public void completed(BatchResult result) {
+            completed.put(result.sourceId(), result);
+            count.incrementAndGet();
+        }
+
+        public void failed(String sourceId, Throwable error) {
+            failed.put(sourceId, error);
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+class ClusterLabelsTest {
+    @Test
+    void labelsClustersInOrderOfFirstTile() {
+        TileSet clusterTiles = new TileSet();
+        clusterTiles.add(33, 33);
+        for (int i = 1; i < 4; i++) {
+            for (int j = 1; j < 4; j++) {
+                clusterTiles.add(i, j);
+            }
+        }
+        clusterTiles.add(5, 5);
+        clusterTiles.add(4, 5);
+
+        ClusterLabels labels = new ClusterLabels(clusterTiles);
+        assertEquals(3, labels.count());
+        assertEquals(9, labels.maxSize());
+        assertEquals(0, labels.label(clusterTiles.indexOf(33, 33)));
+        assertEquals(1, labels.label(clusterTiles.indexOf(3, 3)));
+        assertEquals(2, labels.label(clusterTiles.indexOf(4, 5)));
+        assertEquals(1, labels.size(0));
+        assertEquals(9, labels.size(1));
+        assertEquals(2, labels.size(2));
+    }
+
+    @Test
+    void diagonalTilesAreSeparateClusters() {
+        TileSet clusterTiles = new TileSet();
+        clusterTiles.add(1, 1);
+        clusterTiles.add(2, 2);
+
+        ClusterLabels labels = new ClusterLabels(clusterTiles);
+        assertEquals(2, labels.count());
+        assertEquals(1, labels.maxSize());
+    }
+
+    @Test
+    void collectsClusters() {
+        TileSet clusterTiles = new TileSet();
+        clusterTiles.add(1, 1);
+        clusterTiles.add(1, 2);
+        clusterTiles.add(7, 7);
+
+        ArrayList<TileSet> clusters = new ClusterLabels(clusterTiles).clusters(clusterTiles);
+        assertEquals(2, clusters.size());
+        TileSet expected = new TileSet();
+        expected.add(1, 2);
+        expected.add(1, 1);
+        assertEquals(expected, clusters.get(0));
+        assertEquals(1, clusters.get(1).size());
+    }
+
+    @Test
+    void handlesEmptyTiles() {
+        ClusterLabels labels = new ClusterLabels(new TileSet());
+        assertEquals(0, labels.count());
+        assertEquals(0, labels.maxSize());
+        assertTrue(labels.clusters(new TileSet()).isEmpty());
+    }
+}
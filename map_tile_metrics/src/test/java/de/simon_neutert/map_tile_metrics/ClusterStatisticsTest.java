@@ -0,0 +1,99 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+class ClusterStatisticsTest {
+    @Test
+    void summarizesClustersOfTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        TileMetricsResult expected = new TileMetrics(tiles).calculate();
+        ClusterStatistics statistics = new ClusterStatistics(tiles);
+
+        assertEquals(expected.clusters().size(), statistics.clusterCount());
+        assertEquals(expected.maxClusterSize(), statistics.maxClusterSize());
+        assertEquals(expected.maxSquareSize(), statistics.maxSquareSize());
+        assertEquals(expected.maxSquares(), statistics.maxSquares());
+
+        TreeMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+        int squareCount = 0;
+        for (int id = 0; id < statistics.clusterCount(); id++) {
+            TileSet cluster = expected.clusters().get(id);
+            ClusterSummary summary = statistics.summary(id);
+            assertEquals(cluster, statistics.tiles(id));
+            assertEquals(cluster.size(), summary.size());
+
+            int[] bounds = { Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0 };
+            long[] sums = new long[2];
+            cluster.forEach((x, y) -> {
+                bounds[0] = Math.min(bounds[0], x);
+                bounds[1] = Math.min(bounds[1], y);
+                bounds[2] = Math.max(bounds[2], x);
+                bounds[3] = Math.max(bounds[3], y);
+                sums[0] += x;
+                sums[1] += y;
+            });
+            assertArrayEquals(bounds, new int[] { summary.minX(), summary.minY(), summary.maxX(), summary.maxY() });
+            assertEquals((double) sums[0] / cluster.size(), summary.centroidX(), 1e-9);
+            assertEquals((double) sums[1] / cluster.size(), summary.centroidY(), 1e-9);
+
+            histogram.merge(cluster.size(), 1, Integer::sum);
+            squareCount += summary.maxSquareCount();
+        }
+        assertEquals(histogram, statistics.sizeHistogram());
+        assertEquals(expected.maxSquares().size(), squareCount);
+        assertEquals(expected.maxClusters().size(), statistics.maxClusters().size());
+    }
+
+    @Test
+    void ordersTopKBySizeThenId() {
+        TileSet tiles = new TileSet();
+        addBlock(tiles, 0, 0, 3);
+        addBlock(tiles, 10, 0, 5);
+        addBlock(tiles, 20, 0, 3);
+        addBlock(tiles, 0, 10, 5);
+
+        ClusterStatistics statistics = new ClusterStatistics(tiles);
+        assertEquals(4, statistics.clusterCount());
+        assertEquals(9, statistics.maxClusterSize());
+
+        ArrayList<ClusterSummary> top = statistics.topK(3);
+        assertEquals(3, top.size());
+        assertEquals(1, top.get(0).id());
+        assertEquals(3, top.get(1).id());
+        assertEquals(0, top.get(2).id());
+        assertEquals(new ClusterSummary(1, 9, 11, 1, 13, 3, 12.0, 2.0, 1), top.get(0));
+        assertEquals(4, statistics.topK(10).size());
+        assertTrue(statistics.topK(0).isEmpty());
+        assertEquals(2, statistics.maxClusters().size());
+    }
+
+    @Test
+    void rejectsUnknownClusters() {
+        ClusterStatistics statistics = new Clusters(new TileSet()).calculateStatistics();
+        assertEquals(0, statistics.clusterCount());
+        assertEquals(0, statistics.maxClusterSize());
+        assertTrue(statistics.sizeHistogram().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> statistics.summary(0));
+        assertThrows(IllegalArgumentException.class, () -> statistics.tiles(-1));
+        assertThrows(IllegalArgumentException.class, () -> statistics.topK(-1));
+    }
+
+    private void addBlock(TileSet tiles, int x, int y, int size) {
+        for (int dy = 0; dy < size; dy++) {
+            for (int dx = 0; dx < size; dx++) {
+                tiles.add(x + dx, y + dy);
+            }
+        }
+    }
+}
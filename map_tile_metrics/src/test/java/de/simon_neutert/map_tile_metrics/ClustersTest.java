@@ -140,4 +140,85 @@ class ClustersTest {
         assertEquals(expected, classUnderTest.calculate());
 
     }
+
+    @Test
+    void detectClusterPointsOnTileSet() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                tiles.add(i, j);
+            }
+        }
+
+        TileSet expected = new TileSet();
+        expected.add(1, 1);
+
+        Clusters classUnderTest = new Clusters(tiles);
+        assertEquals(expected, classUnderTest.detectClusterPoints(tiles));
+    }
+
+    @Test
+    void calculateTilesMatchesCalculate() {
+        HashSet<Point> points = new HashSet<Point>();
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                points.add(new Point(i, j));
+            }
+        }
+
+        points.add(new Point(33, 32));
+        points.add(new Point(33, 33));
+        points.add(new Point(33, 34));
+        points.add(new Point(34, 33));
+        points.add(new Point(32, 33));
+
+        HashMap<String, ArrayList<HashSet<Point>>> expected = new Clusters(points).calculate();
+        HashMap<String, ArrayList<TileSet>> actual = new Clusters(new TileSet(points)).calculateTiles();
+
+        for (String key : expected.keySet()) {
+            HashSet<HashSet<Point>> actualClusters = new HashSet<HashSet<Point>>();
+            actual.get(key).forEach(cluster -> actualClusters.add(cluster.toPoints()));
+            assertEquals(new HashSet<HashSet<Point>>(expected.get(key)), actualClusters);
+        }
+    }
+
+    @Test
+    void calculateIntervalsMatchesCalculate() {
+        HashSet<Point> points = new HashSet<Point>();
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                points.add(new Point(i, j));
+                points.add(new Point(i + 10, j));
+            }
+        }
+
+        points.add(new Point(33, 32));
+        points.add(new Point(33, 33));
+        points.add(new Point(33, 34));
+        points.add(new Point(34, 33));
+        points.add(new Point(32, 33));
+
+        HashMap<String, ArrayList<HashSet<Point>>> expected = new Clusters(points).calculate();
+        HashMap<String, ArrayList<TileIntervals>> actual = new Clusters(new TileSet(points)).calculateIntervals();
+
+        for (String key : expected.keySet()) {
+            HashSet<HashSet<Point>> actualClusters = new HashSet<HashSet<Point>>();
+            actual.get(key).forEach(cluster -> actualClusters.add(cluster.toTileSet().toPoints()));
+            assertEquals(new HashSet<HashSet<Point>>(expected.get(key)), actualClusters);
+        }
+        assertEquals(2, actual.get("maxClusters").size());
+        assertEquals(3, actual.get("maxClusters").get(0).runCount());
+    }
+
+    @Test
+    void calculateTilesWithEmptyTiles() {
+        HashMap<String, ArrayList<TileSet>> expected = new HashMap<String, ArrayList<TileSet>>();
+        expected.put("clusters", new ArrayList<TileSet>());
+        expected.put("maxClusters", new ArrayList<TileSet>());
+
+        Clusters classUnderTest = new Clusters(new TileSet());
+        assertEquals(expected, classUnderTest.calculateTiles());
+    }
 }
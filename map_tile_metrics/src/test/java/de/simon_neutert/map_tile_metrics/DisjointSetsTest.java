@@ -0,0 +1,49 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisjointSetsTest {
+    @Test
+    void startsWithSingletons() {
+        DisjointSets sets = new DisjointSets(3);
+        assertEquals(3, sets.size());
+        assertEquals(3, sets.setCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, sets.find(i));
+            assertEquals(1, sets.setSize(i));
+        }
+    }
+
+    @Test
+    void unionMergesSetsAndTracksSizes() {
+        DisjointSets sets = new DisjointSets(5);
+        sets.union(0, 1);
+        sets.union(3, 4);
+        sets.union(1, 4);
+
+        assertEquals(2, sets.setCount());
+        assertEquals(sets.find(0), sets.find(3));
+        assertNotEquals(sets.find(0), sets.find(2));
+        assertEquals(4, sets.setSize(4));
+        assertEquals(1, sets.setSize(2));
+
+        sets.union(0, 4);
+        assertEquals(2, sets.setCount());
+        assertEquals(4, sets.setSize(0));
+    }
+
+    @Test
+    void addAppendsSingletons() {
+        DisjointSets sets = new DisjointSets(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, sets.add());
+            if (i > 0) {
+                sets.union(i, i - 1);
+            }
+        }
+        assertEquals(1, sets.setCount());
+        assertEquals(100, sets.setSize(42));
+    }
+}
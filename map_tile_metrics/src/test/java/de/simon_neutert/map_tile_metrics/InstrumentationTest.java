@@ -0,0 +1,130 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class InstrumentationTest {
+    @Test
+    void reportsPhasesToListeners() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        HashSet<Point> points = new HashSet<Point>(JSON.std.listOfFrom(Point.class, content));
+
+        CopyOnWriteArrayList<PhaseMeasurement> measurements = new CopyOnWriteArrayList<PhaseMeasurement>();
+        MetricsListener listener = measurements::add;
+        Instrumentation.addListener(listener);
+        HashMap<String, ArrayList<HashSet<Point>>> clusters;
+        ArrayList<HashMap<Point, Integer>> maxSquares;
+        try {
+            clusters = new Clusters(points).calculate();
+            maxSquares = new MaxSquares(clusters.get("clusters"), points).calculate();
+        } finally {
+            assertTrue(Instrumentation.removeListener(listener));
+        }
+
+        ArrayList<Phase> phases = new ArrayList<Phase>();
+        for (PhaseMeasurement measurement : measurements) {
+            phases.add(measurement.phase());
+        }
+        assertEquals(List.of(Phase.DETECT_CLUSTER_POINTS, Phase.GROUP_CLUSTERS, Phase.ADD_BORDERS,
+                Phase.SCAN_SQUARES), phases);
+        assertEquals(points.size(), measurements.get(0).inputSize());
+
+        PhaseMeasurement group = measurements.get(1);
+        assertEquals(clusters.get("clusters").size(), group.clusterCount());
+        assertTrue(group.elapsedNanos() >= 0);
+        assertTrue(group.allocatedBytes() != 0);
+
+        PhaseMeasurement scan = measurements.get(3);
+        assertEquals(clusters.get("clusters").size(), scan.clusterCount());
+        assertTrue(scan.iterations() > 0 && scan.iterations() <= scan.inputSize());
+        assertFalse(maxSquares.isEmpty());
+
+        int count = measurements.size();
+        new TileMetrics(new TileSet(points)).calculate();
+        assertEquals(count, measurements.size());
+    }
+
+    @Test
+    void keepsCalculatingWhenListenersThrow() {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                tiles.add(x, y);
+            }
+        }
+
+        CopyOnWriteArrayList<PhaseMeasurement> measurements = new CopyOnWriteArrayList<PhaseMeasurement>();
+        CopyOnWriteArrayList<Throwable> reported = new CopyOnWriteArrayList<Throwable>();
+        MetricsListener throwing = measurement -> {
+            throw new IllegalStateException("listener");
+        };
+        MetricsListener listener = measurements::add;
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        Instrumentation.addListener(throwing);
+        Instrumentation.addListener(listener);
+        TileMetricsResult result;
+        try {
+            result = new TileMetrics(tiles).calculate();
+        } finally {
+            Instrumentation.removeListener(throwing);
+            Instrumentation.removeListener(listener);
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(6, result.maxSquareSize());
+        assertEquals(List.of(Phase.SCAN, Phase.COLLECT_CLUSTERS),
+                measurements.stream().map(PhaseMeasurement::phase).toList());
+        assertEquals(2, reported.size());
+        assertEquals("listener", reported.get(0).getMessage());
+    }
+
+    @Test
+    void commitsFlightRecorderEvents() throws IOException {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                tiles.add(x, y);
+            }
+        }
+
+        Path file = Files.createTempFile("phases", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PhaseEvent.class);
+            recording.start();
+            new TileMetrics(tiles).calculate();
+            recording.stop();
+            recording.dump(file);
+
+            ArrayList<String> phases = new ArrayList<String>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals("de.simon_neutert.map_tile_metrics.Phase")) {
+                    phases.add(event.getString("phase"));
+                    assertEquals(event.getString("phase").equals("SCAN") ? 100 : 64, event.getInt("inputSize"));
+                    assertEquals(1, event.getInt("clusterCount"));
+                }
+            }
+            assertEquals(List.of("SCAN", "COLLECT_CLUSTERS"), phases);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -208,4 +208,136 @@ class MaxSquaresTest {
                 expected.containsAll(maxSquares) &&
                 maxSquares.containsAll(expected));
     }
-}
\ No newline at end of file
+
+    @Test
+    void findMaxSquaresOnTileSet() {
+        TileSet tiles = new TileSet();
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                tiles.add(i, j);
+            }
+        }
+
+        ArrayList<TileSet> clusters = new Clusters(tiles).calculateTiles().get("clusters");
+        MaxSquares classUnderTest = new MaxSquares(clusters, tiles);
+
+        ArrayList<HashMap<Point, Integer>> expected = new ArrayList<HashMap<Point, Integer>>();
+        HashMap<Point, Integer> expectedTile = new HashMap<Point, Integer>();
+        expectedTile.put(new Point(0, 0), 10);
+        expected.add(expectedTile);
+
+        assertEquals(expected, classUnderTest.calculate());
+    }
+
+    @Test
+    void findMaxSquaresOnTileSetForTestDataMicro() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data_micro.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+
+        HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+        assertEquals(1102, clusters.get("maxClusters").get(0).size());
+        assertEquals(1, clusters.get("maxClusters").size());
+
+        MaxSquares classUnderTest = new MaxSquares(clusters.get("clusters"), tiles);
+        ArrayList<HashMap<Point, Integer>> maxSquares = classUnderTest.calculate();
+
+        var expected = new ArrayList<HashMap<Point, Integer>>();
+        expected.add(new HashMap<Point, Integer>());
+        expected.get(0).put(new Point(34254, 22223), 13);
+        expected.add(new HashMap<Point, Integer>());
+        expected.get(1).put(new Point(34255, 22223), 13);
+        assertTrue(expected.size() == maxSquares.size() &&
+                expected.containsAll(maxSquares) &&
+                maxSquares.containsAll(expected));
+    }
+
+    @Test
+    void findMaxSquaresWithoutSquareLargerThanThree() {
+        HashSet<Point> points = new HashSet<Point>();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                points.add(new Point(i, j));
+            }
+        }
+
+        ArrayList<HashSet<Point>> clusters = new Clusters(points).calculate().get("clusters");
+        assertEquals(1, clusters.size());
+
+        MaxSquares classUnderTest = new MaxSquares(clusters, points);
+        assertEquals(new ArrayList<HashMap<Point, Integer>>(), classUnderTest.calculate());
+    }
+
+    @Test
+    void findMaxSquaresAroundHoleOnDiagonal() {
+        HashSet<Point> points = new HashSet<Point>();
+        for (int i = 0; i < 12; i++) {
+            for (int j = 0; j < 12; j++) {
+                if (i != 5 || j != 5) {
+                    points.add(new Point(i, j));
+                }
+            }
+        }
+
+        ArrayList<HashSet<Point>> clusters = new Clusters(points).calculate().get("clusters");
+        MaxSquares classUnderTest = new MaxSquares(clusters, points);
+
+        // the hole at (5, 5) lies on the diagonal of the 12x12 block, so no
+        // square reaching over it counts, only the 6x6 squares beside it
+        ArrayList<HashMap<Point, Integer>> expected = new ArrayList<HashMap<Point, Integer>>();
+        for (int j = 0; j <= 6; j++) {
+            for (int i = 0; i <= 6; i++) {
+                if (i == 6 || j == 6) {
+                    HashMap<Point, Integer> square = new HashMap<Point, Integer>();
+                    square.put(new Point(i, j), 6);
+                    expected.add(square);
+                }
+            }
+        }
+        assertEquals(13, expected.size());
+        assertEquals(expected, classUnderTest.calculate());
+    }
+
+    @Test
+    void answersThresholdQueriesForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        MaxSquares classUnderTest = new MaxSquares(new Clusters(tiles).calculateTiles().get("clusters"), tiles);
+        ArrayList<HashMap<Point, Integer>> maxSquares = classUnderTest.calculate();
+
+        assertEquals(16, maxSquares.get(0).values().iterator().next());
+        assertTrue(classUnderTest.hasSquareAtLeast(16));
+        assertTrue(classUnderTest.hasSquareAtLeast(10));
+        assertFalse(classUnderTest.hasSquareAtLeast(17));
+        assertEquals(maxSquares, classUnderTest.squaresAtLeast(10));
+        assertEquals(maxSquares, classUnderTest.squaresAtLeast(16));
+        assertTrue(classUnderTest.squaresAtLeast(17).isEmpty());
+    }
+
+    @Test
+    void skipsClustersTooSmallForMaxSquares() {
+        TileSet tiles = new TileSet();
+        addBlock(tiles, 0, 0, 8, 8);
+        addBlock(tiles, 20, 0, 8, 8);
+        addBlock(tiles, 40, 0, 30, 5);
+        addBlock(tiles, 0, 20, 6, 6);
+
+        MaxSquares classUnderTest = new MaxSquares(new Clusters(tiles).calculateTiles().get("clusters"), tiles);
+        ArrayList<HashMap<Point, Integer>> expected = new ArrayList<HashMap<Point, Integer>>();
+        expected.add(new HashMap<Point, Integer>());
+        expected.get(0).put(new Point(0, 0), 8);
+        expected.add(new HashMap<Point, Integer>());
+        expected.get(1).put(new Point(20, 0), 8);
+        assertEquals(expected, classUnderTest.calculate());
+        assertTrue(classUnderTest.hasSquareAtLeast(5));
+        assertFalse(classUnderTest.hasSquareAtLeast(9));
+    }
+
+    private void addBlock(TileSet tiles, int x, int y, int width, int height) {
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                tiles.add(x + i, y + j);
+            }
+        }
+    }
+}
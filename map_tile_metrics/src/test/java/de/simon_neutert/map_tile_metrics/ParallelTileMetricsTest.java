@@ -0,0 +1,82 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelTileMetricsTest {
+    @Test
+    void matchesSequentialCalculationForTestData() throws IOException {
+        for (String file : new String[] { "test_data.json", "test_data3.json", "test_data_micro.json" }) {
+            String content = new String(Files.readAllBytes(Paths.get("src/test/resources/" + file)));
+            TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+            for (int stripes : new int[] { 1, 3, 16, 1000 }) {
+                assertMatchesSequential(tiles, stripes);
+            }
+        }
+    }
+
+    @Test
+    void matchesSequentialCalculationOnRandomTiles() {
+        Random random = new Random(5);
+        for (int round = 0; round < 10; round++) {
+            TileSet tiles = new TileSet();
+            for (int i = 0; i < 60; i++) {
+                for (int j = 0; j < 60; j++) {
+                    if (random.nextInt(10) < 8 + round % 3) {
+                        tiles.add(i, j);
+                    }
+                }
+            }
+            assertMatchesSequential(tiles, 7);
+        }
+    }
+
+    @Test
+    void findsSquareAcrossManyStripes() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                tiles.add(i + 1, j + 1);
+            }
+        }
+
+        ParallelTileMetrics classUnderTest = new ParallelTileMetrics(tiles, ForkJoinPool.commonPool(), 30);
+        HashMap<Point, Integer> expectedTile = new HashMap<Point, Integer>();
+        expectedTile.put(new Point(1, 1), 30);
+        assertEquals(expectedTile, classUnderTest.calculateMaxSquares().get(0));
+        assertEquals(1, classUnderTest.calculateClusters().get("clusters").size());
+        assertEquals(784, classUnderTest.calculateClusters().get("maxClusters").get(0).size());
+    }
+
+    @Test
+    void handlesEmptyTiles() {
+        ParallelTileMetrics classUnderTest = new ParallelTileMetrics(new TileSet());
+        assertTrue(classUnderTest.calculateClusters().get("clusters").isEmpty());
+        assertTrue(classUnderTest.calculateMaxSquares().isEmpty());
+    }
+
+    private void assertMatchesSequential(TileSet tiles, int stripes) {
+        HashMap<String, ArrayList<TileSet>> expectedClusters = new Clusters(tiles).calculateTiles();
+        ArrayList<HashMap<Point, Integer>> expectedSquares = new MaxSquares(expectedClusters.get("clusters"), tiles)
+                .calculate();
+
+        ParallelTileMetrics classUnderTest = new ParallelTileMetrics(tiles, ForkJoinPool.commonPool(), stripes);
+        HashMap<String, ArrayList<TileSet>> clusters = classUnderTest.calculateClusters();
+        for (String key : expectedClusters.keySet()) {
+            assertEquals(new HashSet<TileSet>(expectedClusters.get(key)), new HashSet<TileSet>(clusters.get(key)));
+        }
+        assertEquals(expectedSquares, classUnderTest.calculateMaxSquares());
+    }
+}
@@ -0,0 +1,118 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+class ProgressiveTileMetricsTest {
+    @Test
+    void publishesBoundsAndExactMetricsForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> points = JSON.std.listOfFrom(Point.class, content);
+        TileMetricsResult expected = new TileMetrics(points).calculate();
+
+        ArrayList<TileMetricsEstimate> estimates = new ArrayList<TileMetricsEstimate>();
+        TileMetricsEstimate estimate = new ProgressiveTileMetrics(new TileSet(points), Runnable::run)
+                .calculate(Duration.ofMinutes(1), new CancellationToken(), estimates::add)
+                .join();
+
+        assertTrue(estimate.isExact());
+        assertEquals(expected.maxClusterSize(), estimate.result().maxClusterSize());
+        assertEquals(expected.maxSquareSize(), estimate.result().maxSquareSize());
+        assertEquals(expected.maxSquares(), estimate.result().maxSquares());
+        assertEquals(estimate, estimates.get(estimates.size() - 1));
+        assertTrue(estimates.size() > 2);
+        assertTrue(ProgressiveTileMetrics.DEADLINES.getQueue().isEmpty());
+        for (TileMetricsEstimate bounds : estimates) {
+            assertTrue(bounds.maxClusterSizeAtLeast() <= expected.maxClusterSize());
+            assertTrue(bounds.maxClusterSizeAtMost() >= expected.maxClusterSize());
+            assertTrue(bounds.maxSquareSizeAtLeast() <= expected.maxSquareSize());
+            assertTrue(bounds.maxSquareSizeAtMost() >= expected.maxSquareSize());
+        }
+    }
+
+    @Test
+    void boundsSquareSizeByRuns() {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 20; x++) {
+                tiles.add(x, y);
+            }
+        }
+        assertEquals(6, new ProgressiveTileMetrics(tiles, Runnable::run).squareSizeBound());
+
+        TileSet line = new TileSet();
+        for (int x = 0; x < 20; x++) {
+            line.add(x, 0);
+        }
+        assertEquals(0, new ProgressiveTileMetrics(line, Runnable::run).squareSizeBound());
+    }
+
+    @Test
+    void completesExceptionallyWhenCancelled() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 1);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+
+        CompletableFuture<TileMetricsEstimate> future = new ProgressiveTileMetrics(tiles, Runnable::run)
+                .calculate(Duration.ofMinutes(1), token, null);
+        assertTrue(future.isCompletedExceptionally());
+        assertThrows(CancellationException.class, future::join);
+        assertEquals(0, token.callbackCount());
+        assertTrue(ProgressiveTileMetrics.DEADLINES.getQueue().isEmpty());
+    }
+
+    @Test
+    void releasesTokenAndDeadlineWhenDone() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 1);
+        CancellationToken token = new CancellationToken();
+        ProgressiveTileMetrics metrics = new ProgressiveTileMetrics(tiles, Runnable::run);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(metrics.calculate(Duration.ofMinutes(1), token, null).join().isExact());
+        }
+        assertEquals(0, token.callbackCount());
+        assertTrue(ProgressiveTileMetrics.DEADLINES.getQueue().isEmpty());
+    }
+
+    @Test
+    void acceptsTimeoutsBeyondNanoseconds() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 1);
+        CancellationToken token = new CancellationToken();
+        TileMetricsEstimate estimate = new ProgressiveTileMetrics(tiles, Runnable::run)
+                .calculate(Duration.ofSeconds(Long.MAX_VALUE), token, null)
+                .join();
+        assertTrue(estimate.isExact());
+        assertEquals(0, token.callbackCount());
+        assertTrue(ProgressiveTileMetrics.DEADLINES.getQueue().isEmpty());
+    }
+
+    @Test
+    void completesWithEstimateAtDeadline() {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                tiles.add(x, y);
+            }
+        }
+        CompletableFuture<TileMetricsEstimate> future = new ProgressiveTileMetrics(tiles, command -> {
+        }).calculate(Duration.ZERO, new CancellationToken(), null);
+        TileMetricsEstimate estimate = future.join();
+        assertFalse(estimate.isExact());
+        assertEquals(100, estimate.maxClusterSizeAtMost());
+        assertEquals(10, estimate.maxSquareSizeAtMost());
+    }
+}
@@ -0,0 +1,164 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+class SquareScanTest {
+    @Test
+    void findsSolidSquare() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) {
+                tiles.add(i + 2, j + 3);
+            }
+        }
+
+        ArrayList<HashMap<Point, Integer>> expected = new ArrayList<HashMap<Point, Integer>>();
+        HashMap<Point, Integer> expectedTile = new HashMap<Point, Integer>();
+        expectedTile.put(new Point(2, 3), 6);
+        expected.add(expectedTile);
+
+        assertEquals(expected, SquareScan.calculate(new TileRows(tiles), 4));
+    }
+
+    @Test
+    void reportsAllSquaresOfMaximalSizeInRowMajorOrder() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 4; j++) {
+                tiles.add(i, j);
+            }
+        }
+
+        SquareScan scan = new SquareScan(4);
+        scan.scan(new TileRows(tiles));
+        assertEquals(4, scan.maxSize());
+        assertArrayEquals(new long[] { TileSet.pack(0, 0), TileSet.pack(1, 0) }, scan.topLefts());
+    }
+
+    @Test
+    void ignoresSquaresBelowMinimumSize() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                tiles.add(i, j);
+            }
+        }
+
+        SquareScan scan = new SquareScan(4);
+        scan.scan(new TileRows(tiles));
+        assertEquals(0, scan.maxSize());
+        assertTrue(scan.maxSquares().isEmpty());
+    }
+
+    @Test
+    void doesNotConnectSeparateScans() {
+        TileSet upper = new TileSet();
+        TileSet lower = new TileSet();
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 2; j++) {
+                upper.add(i, j);
+                lower.add(i, j + 2);
+            }
+        }
+
+        SquareScan scan = new SquareScan(2);
+        scan.scan(new TileRows(upper));
+        scan.scan(new TileRows(lower));
+        assertEquals(2, scan.maxSize());
+        assertEquals(6, scan.topLefts().length);
+    }
+
+    @Test
+    void matchesGrowingSquaresOnRandomTiles() {
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            TileSet tiles = new TileSet();
+            for (int i = 0; i < 40; i++) {
+                for (int j = 0; j < 40; j++) {
+                    if (random.nextInt(10) < 9) {
+                        tiles.add(i, j);
+                    }
+                }
+            }
+
+            int maxSize = 0;
+            ArrayList<Long> expected = new ArrayList<Long>();
+            for (int j = 0; j < 40; j++) {
+                for (int i = 0; i < 40; i++) {
+                    int size = 0;
+                    while (square(tiles, i, j, size + 1)) {
+                        size++;
+                    }
+                    if (size > maxSize) {
+                        maxSize = size;
+                        expected.clear();
+                    }
+                    if (size == maxSize && size > 0) {
+                        expected.add(TileSet.pack(i, j));
+                    }
+                }
+            }
+
+            SquareScan scan = new SquareScan(1);
+            scan.scan(new TileRows(tiles));
+            assertEquals(maxSize, scan.maxSize());
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), scan.topLefts());
+        }
+    }
+
+    private boolean square(TileSet tiles, int x, int y, int size) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (!tiles.contains(x + i, y + j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void stopsAtFirstSquareFound() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                tiles.add(i, j);
+            }
+        }
+
+        SquareScan scan = new SquareScan(5);
+        assertTrue(scan.scanUntilFound(new TileRows(tiles)));
+        assertEquals(5, scan.maxSize());
+        assertTrue(scan.tileCount() < tiles.size());
+
+        assertFalse(new SquareScan(31).scanUntilFound(new TileRows(tiles)));
+    }
+
+    @Test
+    void skipsRunsAndRowsTooShortForSquares() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                tiles.add(i, j);
+                tiles.add(i + 10, j);
+                tiles.add(i * 2, j + 10);
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            tiles.add(i, 20);
+            tiles.add(i, 21);
+        }
+
+        SquareScan scan = new SquareScan(4);
+        scan.scan(new TileRows(tiles));
+        assertEquals(5, scan.maxSize());
+        assertArrayEquals(new long[] { TileSet.pack(0, 0), TileSet.pack(10, 0) }, scan.topLefts());
+        assertEquals(50, scan.tileCount());
+    }
+}
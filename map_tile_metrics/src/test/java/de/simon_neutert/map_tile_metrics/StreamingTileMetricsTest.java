@@ -0,0 +1,157 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+class StreamingTileMetricsTest {
+    @Test
+    void matchesClusterStatisticsForTestData() throws IOException {
+        for (String file : new String[] { "test_data.json", "test_data3.json", "test_data_micro.json" }) {
+            String content = new String(Files.readAllBytes(Paths.get("src/test/resources/" + file)));
+            TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+            Path path = Files.createTempFile("tiles", ".bin");
+            try {
+                TileFile.write(tiles, path);
+                ArrayList<StreamedCluster> closed = new ArrayList<StreamedCluster>();
+                StreamingTileMetricsResult result = StreamingTileMetrics.calculate(path, closed::add);
+                assertMatches(tiles, result, closed);
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void matchesClusterStatisticsOnRandomTiles() {
+        Random random = new Random(23);
+        for (int round = 0; round < 10; round++) {
+            TileSet tiles = new TileSet();
+            for (int i = 0; i < 60; i++) {
+                for (int j = 0; j < 60; j++) {
+                    if (random.nextInt(10) < 6 + round % 4) {
+                        tiles.add(i, j);
+                    }
+                }
+            }
+            ArrayList<StreamedCluster> closed = new ArrayList<StreamedCluster>();
+            StreamingTileMetrics metrics = new StreamingTileMetrics(closed::add);
+            TileRows rows = new TileRows(tiles);
+            for (int i = 0; i < rows.size(); i++) {
+                metrics.add(rows.xAt(i), rows.yAt(i));
+                metrics.add(rows.xAt(i), rows.yAt(i));
+            }
+            assertMatches(tiles, metrics.finish(), closed);
+        }
+    }
+
+    @Test
+    void readsSortedLinesOfJson() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data_micro.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        TileRows rows = new TileRows(tiles);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < rows.size(); i++) {
+            lines.append("{\"x\":").append(rows.xAt(i)).append(",\"y\":").append(rows.yAt(i)).append("}\n");
+        }
+
+        ArrayList<StreamedCluster> closed = new ArrayList<StreamedCluster>();
+        StreamingTileMetricsResult result = StreamingTileMetrics.calculateLines(
+                new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)), closed::add);
+        assertMatches(tiles, result, closed);
+
+        String unsorted = "{\"x\":2,\"y\":1}\n{\"x\":1,\"y\":1}\n";
+        assertThrows(IOException.class, () -> StreamingTileMetrics.calculateLines(
+                new ByteArrayInputStream(unsorted.getBytes(StandardCharsets.UTF_8)), null));
+    }
+
+    @Test
+    void rejectsCorruptTileFiles() throws IOException {
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            Files.write(path, TileFileTest.tileFile(2, 0x05, 0x00));
+            assertThrows(IOException.class, () -> StreamingTileMetrics.calculate(path, null));
+
+            Files.write(path, TileFileTest.tileFile(2, 0x01, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+            assertThrows(IOException.class, () -> StreamingTileMetrics.calculate(path, null));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void recyclesSlotsOfClosedClusters() {
+        StreamingTileMetrics metrics = new StreamingTileMetrics(null);
+        for (int block = 0; block < 100; block++) {
+            for (int j = 0; j < 5; j++) {
+                for (int i = 0; i < 5; i++) {
+                    metrics.add(i, block * 6 + j);
+                }
+            }
+        }
+        StreamingTileMetricsResult result = metrics.finish();
+        assertEquals(100, result.clusterCount());
+        assertEquals(9, result.maxClusterSize());
+        assertEquals(100, result.maxClusters().size());
+        assertEquals(5, result.maxSquareSize());
+        assertEquals(100, result.maxSquares().size());
+        assertEquals(1, metrics.slotCount());
+    }
+
+    @Test
+    void rejectsUnsortedAndLateTiles() {
+        StreamingTileMetrics metrics = new StreamingTileMetrics(null);
+        metrics.add(5, 5);
+        assertThrows(IllegalArgumentException.class, () -> metrics.add(4, 5));
+        assertThrows(IllegalArgumentException.class, () -> metrics.add(9, 4));
+        assertThrows(IllegalArgumentException.class, () -> metrics.add(-1, 6));
+        metrics.add(6, 5);
+
+        StreamingTileMetricsResult result = metrics.finish();
+        assertEquals(2, result.tileCount());
+        assertEquals(0, result.clusterCount());
+        assertThrows(IllegalStateException.class, () -> metrics.add(7, 5));
+        assertThrows(IllegalStateException.class, metrics::finish);
+    }
+
+    private void assertMatches(TileSet tiles, StreamingTileMetricsResult result, ArrayList<StreamedCluster> closed) {
+        TileMetricsResult expected = new TileMetrics(tiles).calculate();
+        ClusterStatistics statistics = new ClusterStatistics(tiles);
+        assertEquals(tiles.size(), result.tileCount());
+        assertEquals(statistics.clusterCount(), result.clusterCount());
+        assertEquals(expected.maxClusterSize(), result.maxClusterSize());
+        assertEquals(expected.maxClusters().size(), result.maxClusters().size());
+        assertEquals(expected.maxSquareSize(), result.maxSquareSize());
+        assertEquals(expected.maxSquares(), result.maxSquares());
+
+        ArrayList<StreamedCluster> sorted = new ArrayList<StreamedCluster>(closed);
+        sorted.sort(Comparator.comparingInt(StreamedCluster::firstY).thenComparingInt(StreamedCluster::firstX));
+        assertEquals(statistics.clusterCount(), sorted.size());
+        for (int id = 0; id < sorted.size(); id++) {
+            ClusterSummary summary = statistics.summary(id);
+            StreamedCluster cluster = sorted.get(id);
+            assertEquals(summary.size(), cluster.size());
+            assertEquals(summary.minX(), cluster.minX());
+            assertEquals(summary.minY(), cluster.minY());
+            assertEquals(summary.maxX(), cluster.maxX());
+            assertEquals(summary.maxY(), cluster.maxY());
+            assertEquals(summary.centroidX(), cluster.centroidX(), 1e-9);
+            assertEquals(summary.centroidY(), cluster.centroidY(), 1e-9);
+            assertTrue(cluster.maxSquareSize() <= result.maxSquareSize());
+            assertEquals(summary.maxSquareCount() > 0, cluster.maxSquareSize() == result.maxSquareSize()
+                    && result.maxSquareSize() > 0);
+        }
+    }
+}
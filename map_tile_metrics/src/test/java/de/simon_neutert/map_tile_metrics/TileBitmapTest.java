@@ -0,0 +1,158 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+class TileBitmapTest {
+    @Test
+    void matchesTileMetricsForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        TileBitmap bitmap = new TileBitmap(tiles);
+        assertEquals(tiles.size(), bitmap.size());
+
+        TileMetricsResult expected = new TileMetrics(tiles).calculate();
+        TileMetricsResult actual = bitmap.calculate();
+        assertEquals(expected.clusters(), actual.clusters());
+        assertEquals(expected.maxClusters(), actual.maxClusters());
+        assertEquals(expected.maxClusterSize(), actual.maxClusterSize());
+        assertEquals(expected.maxSquares(), actual.maxSquares());
+        assertEquals(expected.maxSquareSize(), actual.maxSquareSize());
+    }
+
+    @Test
+    void findsClusterTilesAcrossChunkEdges() {
+        Random random = new Random(21);
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 40000; i++) {
+            tiles.add(200 + random.nextInt(400), 230 + random.nextInt(300));
+        }
+        TileBitmap bitmap = new TileBitmap(tiles);
+        assertEquals(9, bitmap.chunkCount());
+
+        TileSet expected = new Clusters(tiles).detectClusterPoints(tiles);
+        TileBitmap clusterTiles = bitmap.clusterTiles();
+        assertEquals(expected.size(), clusterTiles.size());
+        assertEquals(expected, clusterTiles.toTileSet());
+
+        long[] keys = bitmap.toRows().toTileSet().toSortedKeys();
+        assertArrayEquals(tiles.toSortedKeys(), keys);
+        TileRows rows = bitmap.toRows();
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.keyAt(i - 1) < rows.keyAt(i));
+        }
+    }
+
+    @Test
+    void expandsBordersLikeMaxSquares() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        Random random = new Random(4);
+        for (int i = 0; i < 20000; i++) {
+            tiles.add(250 + random.nextInt(20), 250 + random.nextInt(20));
+        }
+
+        TileSet expected = new TileSet();
+        MaxSquares maxSquares = new MaxSquares(new Clusters(tiles).calculateTiles().get("clusters"), tiles);
+        for (TileSet bordered : maxSquares.borderedTileClusters()) {
+            bordered.forEach(expected::add);
+        }
+
+        TileBitmap bitmap = new TileBitmap(tiles);
+        TileBitmap bordered = bitmap.clusterTiles().expandBorder(bitmap);
+        assertEquals(expected.size(), bordered.size());
+        assertEquals(expected, bordered.toTileSet());
+    }
+
+    @Test
+    void combinesBitmapsOfSeveralUsers() {
+        Random random = new Random(13);
+        ArrayList<TileSet> users = new ArrayList<TileSet>();
+        ArrayList<TileBitmap> bitmaps = new ArrayList<TileBitmap>();
+        for (int user = 0; user < 4; user++) {
+            TileSet tiles = new TileSet();
+            for (int i = 0; i < 30000; i++) {
+                tiles.add(100 * user + random.nextInt(500), 200 + random.nextInt(300));
+            }
+            users.add(tiles);
+            bitmaps.add(new TileBitmap(tiles));
+        }
+
+        TileSet union = new TileSet();
+        TileSet intersection = new TileSet();
+        TileSet onlyFirst = new TileSet();
+        long shared = 0;
+        for (TileSet tiles : users) {
+            tiles.forEach(union::add);
+        }
+        for (int i = 0; i < union.size(); i++) {
+            int x = union.xAt(i);
+            int y = union.yAt(i);
+            boolean inAll = true;
+            boolean inOthers = false;
+            for (int user = 0; user < users.size(); user++) {
+                inAll &= users.get(user).contains(x, y);
+                inOthers |= user > 0 && users.get(user).contains(x, y);
+            }
+            if (inAll) {
+                intersection.add(x, y);
+            }
+            if (users.get(0).contains(x, y) && !inOthers) {
+                onlyFirst.add(x, y);
+            }
+            if (users.get(0).contains(x, y) && users.get(1).contains(x, y)) {
+                shared++;
+            }
+        }
+
+        TileBitmap unionBitmap = TileBitmap.union(bitmaps);
+        assertEquals(union.size(), unionBitmap.size());
+        assertEquals(union, unionBitmap.toTileSet());
+        TileBitmap intersectionBitmap = TileBitmap.intersection(bitmaps);
+        assertEquals(intersection.size(), intersectionBitmap.size());
+        assertEquals(intersection, intersectionBitmap.toTileSet());
+        TileBitmap onlyFirstBitmap = bitmaps.get(0).difference(bitmaps.subList(1, bitmaps.size()));
+        assertEquals(onlyFirst.size(), onlyFirstBitmap.size());
+        assertEquals(onlyFirst, onlyFirstBitmap.toTileSet());
+        assertEquals(shared, bitmaps.get(0).intersectionSize(bitmaps.get(1)));
+        assertEquals(0, bitmaps.get(0).difference(bitmaps.get(0)).size());
+
+        TileMetricsResult expected = new TileMetrics(union).calculate();
+        assertEquals(expected.maxClusterSize(), unionBitmap.calculate().maxClusterSize());
+        assertEquals(expected.maxSquares(), unionBitmap.calculate().maxSquares());
+        assertThrows(IllegalArgumentException.class, () -> TileBitmap.intersection(new ArrayList<TileBitmap>()));
+    }
+
+    @Test
+    void addsAndContainsTiles() {
+        TileBitmap bitmap = new TileBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(255, 255));
+        assertTrue(bitmap.add(256, 255));
+        assertFalse(bitmap.add(255, 255));
+        assertTrue(bitmap.add(131071, 131071));
+        assertEquals(3, bitmap.size());
+        assertEquals(3, bitmap.chunkCount());
+
+        assertTrue(bitmap.contains(256, 255));
+        assertFalse(bitmap.contains(256, 256));
+        assertFalse(bitmap.contains(-1, 0));
+        assertFalse(bitmap.contains(1_000_000, 1_000_000));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1, 3));
+
+        HashSet<Point> points = new HashSet<Point>();
+        bitmap.forEach((x, y) -> points.add(new Point(x, y)));
+        assertEquals(bitmap.toTileSet().toPoints(), points);
+        assertTrue(new TileBitmap().calculate().clusters().isEmpty());
+    }
+}
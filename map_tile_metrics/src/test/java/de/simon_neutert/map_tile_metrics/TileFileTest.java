@@ -0,0 +1,179 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class TileFileTest {
+    @Test
+    void roundTripsTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> points = JSON.std.listOfFrom(Point.class, content);
+        TileSet tiles = new TileSet(points);
+
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            TileFile.write(tiles, path);
+            TileRows rows = TileFile.read(path);
+            assertArrayEquals(tiles.toSortedKeys(), keysOf(rows));
+            assertEquals(tiles, TileFile.readTileSet(path));
+            assertTrue(Files.size(path) < content.length() / 4);
+
+            assertEquals(new MaxSquares(new Clusters(tiles).calculateTiles().get("clusters"), tiles).calculate(),
+                    new ParallelTileMetrics(rows, ForkJoinPool.commonPool(), 4).calculateMaxSquares());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void roundTripsRows() throws IOException {
+        TileSet tiles = new TileSet();
+        tiles.add(Integer.MAX_VALUE, 0);
+        tiles.add(0, 1);
+        tiles.add(3, Integer.MAX_VALUE);
+        tiles.add(1, 1);
+        TileRows rows = new TileRows(tiles);
+
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            TileFile.write(rows, path);
+            assertArrayEquals(keysOf(rows), keysOf(TileFile.read(path)));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void streamsTilesInRowMajorOrder() throws IOException {
+        TileSet tiles = new TileSet();
+        tiles.add(Integer.MAX_VALUE, 0);
+        tiles.add(0, 1);
+        tiles.add(3, Integer.MAX_VALUE);
+        tiles.add(1, 1);
+        TileRows rows = new TileRows(tiles);
+
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            TileFile.write(tiles, path);
+            TileSet streamed = new TileSet();
+            assertEquals(4, TileFile.forEach(path, streamed::add));
+            assertArrayEquals(keysOf(rows), keysOf(new TileRows(streamed)));
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(rows.keyAt(i), streamed.keyAt(i));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void roundTripsEmptyTiles() throws IOException {
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            TileFile.write(new TileSet(), path);
+            assertEquals(12, Files.size(path));
+            assertEquals(0, TileFile.read(path).size());
+            assertTrue(TileFile.readTileSet(path).isEmpty());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void rejectsInvalidFiles() throws IOException {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 2);
+        tiles.add(2, 2);
+
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            Files.write(path, "[{\"x\":1,\"y\":2}]".getBytes());
+            assertThrows(IOException.class, () -> TileFile.read(path));
+
+            TileFile.write(tiles, path);
+            byte[] valid = Files.readAllBytes(path);
+
+            byte[] version = valid.clone();
+            version[7] = 2;
+            Files.write(path, version);
+            assertThrows(IOException.class, () -> TileFile.read(path));
+
+            Files.write(path, Arrays.copyOf(valid, valid.length - 1));
+            assertThrows(IOException.class, () -> TileFile.read(path));
+
+            Files.write(path, Arrays.copyOf(valid, valid.length + 1));
+            assertThrows(IOException.class, () -> TileFile.readTileSet(path));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+
+            Files.write(path, Arrays.copyOf(valid, valid.length - 1));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+
+            Files.write(path, Arrays.copyOf(valid, 6));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void rejectsCorruptKeys() throws IOException {
+        Path path = Files.createTempFile("tiles", ".bin");
+        try {
+            Files.write(path, tileFile(Integer.MAX_VALUE));
+            assertThrows(IOException.class, () -> TileFile.read(path));
+            assertThrows(IOException.class, () -> TileFile.readTileSet(path));
+
+            Files.write(path, tileFile(2, 0x05, 0x00));
+            assertThrows(IOException.class, () -> TileFile.read(path));
+            assertThrows(IOException.class, () -> TileFile.readTileSet(path));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+
+            Files.write(path, tileFile(1, 0x80, 0x80, 0x80, 0x80, 0x08));
+            assertThrows(IOException.class, () -> TileFile.read(path));
+            assertThrows(IOException.class, () -> TileFile.readTileSet(path));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+
+            Files.write(path, tileFile(2, 0x01, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+            assertThrows(IOException.class, () -> TileFile.read(path));
+            assertThrows(IOException.class, () -> TileFile.readTileSet(path));
+            assertThrows(IOException.class, () -> TileFile.forEach(path, (x, y) -> {
+            }));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    static byte[] tileFile(int count, int... varints) {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + varints.length);
+        buffer.putInt(TileFile.MAGIC).putInt(TileFile.VERSION).putInt(count);
+        for (int b : varints) {
+            buffer.put((byte) b);
+        }
+        return buffer.array();
+    }
+
+    private static long[] keysOf(TileRows rows) {
+        long[] keys = new long[rows.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rows.keyAt(i);
+        }
+        return keys;
+    }
+}
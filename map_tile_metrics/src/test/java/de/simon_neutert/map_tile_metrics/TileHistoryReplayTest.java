@@ -0,0 +1,76 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+class TileHistoryReplayTest {
+    @Test
+    void matchesMetricsOfPrefixesForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> points = JSON.std.listOfFrom(Point.class, content);
+        ArrayList<Point> shuffled = new ArrayList<Point>(points);
+        Collections.shuffle(shuffled, new Random(17));
+
+        ArrayList<TileVisit> visits = new ArrayList<TileVisit>();
+        for (int i = 0; i < shuffled.size(); i++) {
+            visits.add(new TileVisit(shuffled.get(i).x(), shuffled.get(i).y(), 1000L + i / 100));
+        }
+
+        ArrayList<TileTimelineEntry> timeline = new TileHistoryReplay(visits).calculate();
+        assertEquals((shuffled.size() + 99) / 100, timeline.size());
+        for (int step = 0; step < timeline.size(); step += 7) {
+            TileTimelineEntry entry = timeline.get(step);
+            TileSet prefix = new TileSet(shuffled.subList(0, Math.min((step + 1) * 100, shuffled.size())));
+            TileMetricsResult expected = new TileMetrics(prefix).calculate();
+            assertEquals(1000L + step, entry.timestamp());
+            assertEquals(prefix.size(), entry.tileCount());
+            assertEquals(expected.clusters().size(), entry.clusterCount());
+            assertEquals(expected.maxClusterSize(), entry.maxClusterSize());
+            assertEquals(expected.maxSquareSize(), entry.maxSquareSize());
+        }
+
+        TileTimelineEntry last = timeline.get(timeline.size() - 1);
+        assertEquals(726, last.maxClusterSize());
+        assertEquals(16, last.maxSquareSize());
+
+        ArrayList<TileTimelineEntry> changes = new TileHistoryReplay(visits).calculateChanges();
+        assertTrue(changes.size() < timeline.size());
+        assertEquals(last.maxClusterSize(), changes.get(changes.size() - 1).maxClusterSize());
+        for (int i = 1; i < changes.size(); i++) {
+            assertTrue(changes.get(i).maxClusterSize() != changes.get(i - 1).maxClusterSize()
+                    || changes.get(i).maxSquareSize() != changes.get(i - 1).maxSquareSize());
+        }
+    }
+
+    @Test
+    void skipsTimestampsWithoutNewTiles() {
+        ArrayList<TileVisit> visits = new ArrayList<TileVisit>();
+        visits.add(new TileVisit(1, 1, 10));
+        visits.add(new TileVisit(2, 1, 10));
+        visits.add(new TileVisit(1, 1, 20));
+        visits.add(new TileVisit(3, 1, 30));
+
+        ArrayList<TileTimelineEntry> timeline = new TileHistoryReplay(visits).calculate();
+        assertEquals(List.of(new TileTimelineEntry(10, 2, 0, 0, 0), new TileTimelineEntry(30, 3, 0, 0, 0)), timeline);
+        assertTrue(new TileHistoryReplay(visits).calculateChanges().isEmpty());
+    }
+
+    @Test
+    void rejectsUnorderedVisits() {
+        ArrayList<TileVisit> visits = new ArrayList<TileVisit>();
+        visits.add(new TileVisit(1, 1, 20));
+        visits.add(new TileVisit(2, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TileHistoryReplay(visits).calculate());
+    }
+}
@@ -0,0 +1,116 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Random;
+
+class TileIndexTest {
+    @Test
+    void matchesFilteredTilesForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+        TileIndex index = new TileIndex(tiles);
+        assertEquals(tiles.size(), index.size());
+
+        long[] keys = tiles.toSortedKeys();
+        int minX = Integer.MAX_VALUE;
+        int maxX = 0;
+        for (long key : keys) {
+            minX = Math.min(minX, TileSet.x(key));
+            maxX = Math.max(maxX, TileSet.x(key));
+        }
+        int minY = TileSet.y(keys[0]);
+        int maxY = TileSet.y(keys[keys.length - 1]);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 30; i++) {
+            int x0 = minX + random.nextInt(maxX - minX + 1);
+            int y0 = minY + random.nextInt(maxY - minY + 1);
+            int x1 = x0 + random.nextInt(200);
+            int y1 = y0 + random.nextInt(200);
+            assertMatchesFilteredTiles(tiles, index, x0, y0, x1, y1);
+        }
+        assertMatchesFilteredTiles(tiles, index, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void matchesFilteredTilesAtBlockEdges() {
+        Random random = new Random(8);
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < 5000; i++) {
+            tiles.add(random.nextInt(200), random.nextInt(200));
+        }
+        TileIndex index = new TileIndex(tiles);
+        assertEquals(16, index.blockCount());
+
+        for (int[] rectangle : new int[][] { { 0, 0, 63, 63 }, { 63, 63, 64, 64 }, { 64, 0, 127, 199 },
+                { -5, -5, 10, 10 }, { 0, 0, 199, 199 }, { 130, 190, 130, 300 }, { 300, 300, 400, 400 } }) {
+            assertMatchesFilteredTiles(tiles, index, rectangle[0], rectangle[1], rectangle[2], rectangle[3]);
+        }
+        for (int x = -1; x < 201; x++) {
+            assertEquals(tiles.contains(x, 70), index.contains(x, 70));
+        }
+    }
+
+    @Test
+    void matchesFilteredClustersOfDenseTiles() {
+        Random random = new Random(12);
+        TileSet tiles = new TileSet();
+        for (int x = 0; x < 200; x++) {
+            for (int y = 0; y < 200; y++) {
+                if (random.nextInt(20) > 0) {
+                    tiles.add(x, y);
+                }
+            }
+        }
+        TileIndex index = new TileIndex(tiles);
+
+        for (int[] rectangle : new int[][] { { 0, 0, 199, 199 }, { 63, 63, 64, 64 }, { 62, 1, 129, 66 },
+                { 64, 64, 127, 127 }, { 1, 60, 200, 70 }, { 100, 0, 102, 199 }, { -5, -5, 65, 128 } }) {
+            assertMatchesFilteredTiles(tiles, index, rectangle[0], rectangle[1], rectangle[2], rectangle[3]);
+        }
+        for (int i = 0; i < 20; i++) {
+            int x0 = random.nextInt(200);
+            int y0 = random.nextInt(200);
+            assertMatchesFilteredTiles(tiles, index, x0, y0, x0 + random.nextInt(150), y0 + random.nextInt(150));
+        }
+    }
+
+    @Test
+    void rejectsEmptyRectangles() {
+        TileIndex index = new TileIndex(new TileSet());
+        assertThrows(IllegalArgumentException.class, () -> index.count(5, 0, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> index.extract(0, 0, -1, 3));
+        assertEquals(0, index.count(0, 0, 100, 100));
+    }
+
+    private void assertMatchesFilteredTiles(TileSet tiles, TileIndex index, int minX, int minY, int maxX, int maxY) {
+        TileSet filtered = new TileSet();
+        tiles.forEach((x, y) -> {
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                filtered.add(x, y);
+            }
+        });
+
+        assertEquals(filtered.size(), index.count(minX, minY, maxX, maxY));
+        TileRows rows = index.extract(minX, minY, maxX, maxY);
+        assertEquals(filtered, rows.toTileSet());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.keyAt(i - 1) < rows.keyAt(i));
+        }
+
+        TileMetricsResult expected = new TileMetrics(filtered).calculate();
+        TileMetricsResult actual = index.calculate(minX, minY, maxX, maxY);
+        assertEquals(new HashSet<TileSet>(expected.clusters()), new HashSet<TileSet>(actual.clusters()));
+        assertEquals(expected.maxClusterSize(), actual.maxClusterSize());
+        assertEquals(expected.maxSquares(), actual.maxSquares());
+    }
+}
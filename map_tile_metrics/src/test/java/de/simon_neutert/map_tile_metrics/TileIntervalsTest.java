@@ -0,0 +1,88 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+class TileIntervalsTest {
+    @Test
+    void mergesAdjacentTilesIntoRuns() {
+        TileSet tiles = new TileSet();
+        tiles.add(3, 1);
+        tiles.add(1, 1);
+        tiles.add(2, 1);
+        tiles.add(5, 1);
+        tiles.add(0, 4);
+
+        TileIntervals intervals = TileIntervals.of(tiles);
+        assertEquals(5, intervals.size());
+        assertEquals(3, intervals.runCount());
+        assertArrayEquals(new int[][] { { 1, 1, 3 }, { 1, 5, 5 }, { 4, 0, 0 } }, intervals.toArray());
+        assertEquals(tiles, intervals.toTileSet());
+    }
+
+    @Test
+    void looksUpTiles() {
+        TileSet tiles = new TileSet();
+        for (int x = 2; x < 6; x++) {
+            tiles.add(x, 3);
+            tiles.add(x + 10, 3);
+            tiles.add(x, 7);
+        }
+
+        TileIntervals intervals = TileIntervals.of(tiles);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(tiles.contains(x, y), intervals.contains(x, y));
+            }
+        }
+        assertTrue(intervals.contains(new Point(12, 3)));
+        assertFalse(TileIntervals.of(new TileSet()).contains(0, 0));
+    }
+
+    @Test
+    void findsClusterTilesAndComponents() {
+        Random random = new Random(21);
+        for (int round = 0; round < 10; round++) {
+            TileSet tiles = new TileSet();
+            for (int x = 0; x < 40; x++) {
+                for (int y = 0; y < 40; y++) {
+                    if (random.nextInt(10) < 6 + round % 4) {
+                        tiles.add(x, y);
+                    }
+                }
+            }
+
+            Clusters clusters = new Clusters(tiles);
+            TileIntervals clusterTiles = TileIntervals.of(tiles).clusterTiles();
+            assertEquals(clusters.detectClusterPoints(tiles), clusterTiles.toTileSet());
+
+            HashSet<TileSet> components = new HashSet<TileSet>();
+            for (TileIntervals component : clusterTiles.components()) {
+                components.add(component.toTileSet());
+            }
+            assertEquals(new HashSet<TileSet>(clusters.calculateTiles().get("clusters")), components);
+        }
+    }
+
+    @Test
+    void joinsRunsOverlappingInAdjacentRows() {
+        TileSet tiles = new TileSet();
+        for (int x = 0; x < 3; x++) {
+            tiles.add(x, 0);
+            tiles.add(x + 2, 1);
+            tiles.add(x + 6, 1);
+            tiles.add(x + 5, 3);
+        }
+
+        ArrayList<TileIntervals> components = TileIntervals.of(tiles).components();
+        assertEquals(3, components.size());
+        assertEquals(6, components.get(0).size());
+        assertArrayEquals(new int[][] { { 1, 6, 8 } }, components.get(1).toArray());
+        assertArrayEquals(new int[][] { { 3, 5, 7 } }, components.get(2).toArray());
+    }
+}
@@ -0,0 +1,70 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+
+class TileJsonReaderTest {
+    @Test
+    void readsTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        HashSet<Point> points = new HashSet<Point>(JSON.std.listOfFrom(Point.class, content));
+
+        TileSet tiles = TileJsonReader.read(Paths.get("src/test/resources/test_data.json"));
+        assertEquals(points, tiles.toPoints());
+    }
+
+    @Test
+    void deduplicatesAndSkipsOtherFields() throws IOException {
+        TileSet tiles = new TileSet();
+        tiles.add(7, 7);
+
+        int added = TileJsonReader.readInto(stream(
+                "[{\"x\":1,\"y\":2},{\"y\":2,\"x\":1,\"name\":{\"a\":[1]}},{\"x\":7,\"y\":7},{\"x\":3,\"y\":4}]"),
+                tiles);
+        assertEquals(2, added);
+        assertEquals(3, tiles.size());
+        assertTrue(tiles.contains(1, 2));
+        assertTrue(tiles.contains(3, 4));
+    }
+
+    @Test
+    void streamsLinesOfTiles() throws IOException {
+        TileSet tiles = new TileSet();
+        long count = TileJsonReader.forEachLine(stream(
+                "{\"x\":1,\"y\":2}\n{\"y\":2,\"x\":1,\"name\":\"a\"}\n\n{\"x\":3,\"y\":4}\n"), tiles::add);
+        assertEquals(3, count);
+        assertEquals(2, tiles.size());
+        assertEquals(0, TileJsonReader.forEachLine(stream(""), tiles::add));
+        assertThrows(IOException.class, () -> TileJsonReader.forEachLine(stream("[{\"x\":1,\"y\":2}]"), tiles::add));
+        assertThrows(IOException.class, () -> TileJsonReader.forEachLine(stream("{\"x\":1}"), tiles::add));
+    }
+
+    @Test
+    void readsEmptyArray() throws IOException {
+        assertTrue(TileJsonReader.read(stream("[]")).isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidTiles() {
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("{\"x\":1,\"y\":2}")));
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("[{\"x\":1}]")));
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("[{\"x\":-1,\"y\":2}]")));
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("[{\"x\":\"1\",\"y\":2}]")));
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("[1]")));
+        assertThrows(IOException.class, () -> TileJsonReader.read(stream("[{\"x\":1,\"y\":2}")));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes());
+    }
+}
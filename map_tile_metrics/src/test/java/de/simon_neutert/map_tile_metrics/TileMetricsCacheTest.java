@@ -0,0 +1,103 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class TileMetricsCacheTest {
+    @Test
+    void servesRepeatedRequestsFromCache() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> points = JSON.std.listOfFrom(Point.class, content);
+        TileSet tiles = new TileSet(points);
+        Clusters clusters = new Clusters(tiles);
+
+        TileMetricsCache cache = new TileMetricsCache(1_000_000);
+        assertEquals(clusters.calculateTiles(), cache.clusters(tiles));
+        assertEquals(new MaxSquares(clusters.calculateTiles().get("clusters"), tiles).calculate(),
+                cache.maxSquares(tiles));
+
+        ArrayList<Point> shuffled = new ArrayList<Point>(points);
+        Collections.shuffle(shuffled);
+        assertSame(cache.clusters(tiles), cache.clusters(new TileSet(shuffled)));
+
+        TileMetricsCacheStatistics statistics = cache.statistics();
+        assertEquals(1, statistics.missCount());
+        assertEquals(3, statistics.hitCount());
+        assertEquals(1, statistics.entryCount());
+        assertEquals(0.75, statistics.hitRate());
+    }
+
+    @Test
+    void missesAfterTilesChange() {
+        TileSet tiles = square(0, 4);
+        TileMetricsCache cache = new TileMetricsCache(1_000);
+        assertEquals(1, cache.maxSquares(tiles).size());
+
+        tiles.add(4, 0);
+        tiles.add(4, 1);
+        tiles.add(4, 2);
+        tiles.add(4, 3);
+        tiles.add(4, 4);
+        tiles.add(0, 4);
+        tiles.add(1, 4);
+        tiles.add(2, 4);
+        tiles.add(3, 4);
+        assertEquals(5, cache.maxSquares(tiles).get(0).get(new Point(0, 0)));
+        assertEquals(2, cache.statistics().missCount());
+    }
+
+    @Test
+    void evictsEntriesBeyondMaximumWeight() {
+        TileMetricsCache cache = new TileMetricsCache(100);
+        TileSet last = null;
+        for (int i = 0; i < 20; i++) {
+            last = square(i * 10, 5);
+            cache.clusters(last);
+        }
+        TileMetricsCacheStatistics statistics = cache.statistics();
+        assertTrue(statistics.evictionCount() > 0);
+        assertTrue(statistics.entryCount() <= 100 / 11);
+
+        cache.clusters(last);
+        assertEquals(1, cache.statistics().hitCount());
+        cache.invalidateAll();
+        assertEquals(0, cache.statistics().entryCount());
+    }
+
+    @Test
+    void fingerprintIgnoresInsertionOrder() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 2);
+        tiles.add(3, 4);
+        TileSet reversed = new TileSet();
+        reversed.add(3, 4);
+        reversed.add(1, 2);
+        assertEquals(tiles.fingerprint(), reversed.fingerprint());
+
+        reversed.add(1, 2);
+        assertEquals(tiles.fingerprint(), reversed.fingerprint());
+        reversed.add(2, 1);
+        assertNotEquals(tiles.fingerprint(), reversed.fingerprint());
+        assertNotEquals(tiles, reversed);
+    }
+
+    private static TileSet square(int offset, int size) {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                tiles.add(offset + x, y);
+            }
+        }
+        return tiles;
+    }
+}
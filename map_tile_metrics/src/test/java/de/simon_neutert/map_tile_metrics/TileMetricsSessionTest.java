@@ -0,0 +1,183 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+class TileMetricsSessionTest {
+    @Test
+    void growsClustersAndSquaresTileByTile() {
+        TileMetricsSession session = new TileMetricsSession();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                session.addTiles(List.of(new Point(i, j)));
+            }
+        }
+        assertEquals(1, session.getClusterCount());
+        assertEquals(9, session.getMaxClusterSize());
+        assertEquals(1, session.getMaxClusterCount());
+        assertEquals(5, session.getMaxSquareSize());
+
+        HashMap<Point, Integer> expectedTile = new HashMap<Point, Integer>();
+        expectedTile.put(new Point(0, 0), 5);
+        assertEquals(List.of(expectedTile), session.maxSquares());
+    }
+
+    @Test
+    void reportsWhatBatchChanged() {
+        TileSet history = new TileSet();
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 3; j++) {
+                history.add(i, j);
+                history.add(i + 5, j);
+            }
+        }
+        TileMetricsSession session = new TileMetricsSession(history);
+        assertEquals(2, session.getClusterCount());
+        assertEquals(2, session.getMaxClusterCount());
+        assertEquals(0, session.getMaxSquareSize());
+
+        TileSet bridge = new TileSet();
+        bridge.add(4, 0);
+        bridge.add(4, 1);
+        bridge.add(4, 2);
+        bridge.add(4, 1);
+        TileMetricsUpdate update = session.addTiles(bridge);
+
+        assertEquals(3, update.addedTiles());
+        TileSet expectedClusterTiles = new TileSet();
+        expectedClusterTiles.add(3, 1);
+        expectedClusterTiles.add(4, 1);
+        expectedClusterTiles.add(5, 1);
+        assertEquals(expectedClusterTiles, update.newClusterTiles());
+        assertEquals(1, update.clusterCount());
+        assertEquals(2, update.previousClusterCount());
+        assertEquals(7, update.maxClusterSize());
+        assertEquals(2, update.previousMaxClusterSize());
+        assertTrue(update.maxClusterChanged());
+        assertFalse(update.maxSquareChanged());
+
+        TileMetricsUpdate repeated = session.addTiles(bridge);
+        assertEquals(0, repeated.addedTiles());
+        assertTrue(repeated.newClusterTiles().isEmpty());
+        assertFalse(repeated.maxClusterChanged());
+    }
+
+    @Test
+    void matchesFullCalculationForTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> jsonPoints = JSON.std.listOfFrom(Point.class, content);
+        HashSet<Point> points = new HashSet<Point>(jsonPoints);
+
+        HashMap<String, ArrayList<HashSet<Point>>> clusters = new Clusters(points).calculate();
+        ArrayList<HashMap<Point, Integer>> maxSquares = new MaxSquares(clusters.get("clusters"), points).calculate();
+
+        ArrayList<Point> shuffled = new ArrayList<Point>(points);
+        Collections.shuffle(shuffled, new Random(42));
+        TileMetricsSession session = new TileMetricsSession();
+        for (int from = 0; from < shuffled.size(); from += 250) {
+            session.addTiles(shuffled.subList(from, Math.min(from + 250, shuffled.size())));
+        }
+
+        assertEquals(clusters.get("clusters").size(), session.getClusterCount());
+        assertEquals(726, session.getMaxClusterSize());
+        assertEquals(clusters.get("maxClusters").size(), session.getMaxClusterCount());
+        assertEquals(new HashSet<HashSet<Point>>(clusters.get("clusters")), asPointSets(session.clusters()));
+        assertEquals(new HashSet<HashSet<Point>>(clusters.get("maxClusters")), asPointSets(session.maxClusters()));
+        assertEquals(16, session.getMaxSquareSize());
+        assertTrue(maxSquares.size() == session.maxSquares().size()
+                && maxSquares.containsAll(session.maxSquares()));
+    }
+
+    @Test
+    void evaluatesCandidatesWithoutAddingThem() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        ArrayList<Point> points = new ArrayList<Point>(new HashSet<Point>(JSON.std.listOfFrom(Point.class, content)));
+        Collections.sort(points, (a, b) -> a.y() != b.y() ? a.y() - b.y() : a.x() - b.x());
+        Collections.shuffle(points, new Random(5));
+        TileSet history = new TileSet(points.subList(0, points.size() * 9 / 10));
+        List<Point> rest = points.subList(history.size(), points.size());
+
+        TileMetricsSession session = new TileMetricsSession(history);
+        int maxClusterSize = session.getMaxClusterSize();
+        int maxSquareSize = session.getMaxSquareSize();
+
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            TileSet candidates = new TileSet();
+            for (int i = 0; i < 1 + random.nextInt(300); i++) {
+                Point point = rest.get(random.nextInt(rest.size()));
+                candidates.add(point.x() + random.nextInt(3) - 1, point.y() + random.nextInt(3) - 1);
+            }
+
+            TileMetricsGain gain = session.evaluate(candidates);
+            TileSet union = new TileSet(history.toPoints());
+            int added = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                if (union.add(candidates.xAt(i), candidates.yAt(i))) {
+                    added++;
+                }
+            }
+            TileMetricsSession expected = new TileMetricsSession(union);
+            assertEquals(added, gain.addedTiles());
+            assertEquals(expected.getMaxClusterSize(), gain.maxClusterSize());
+            assertEquals(expected.getMaxSquareSize(), gain.maxSquareSize());
+            assertEquals(maxClusterSize, gain.previousMaxClusterSize());
+            assertEquals(gain.maxClusterSize() - maxClusterSize, gain.maxClusterGain());
+        }
+
+        assertEquals(history, session.getTiles());
+        assertEquals(maxClusterSize, session.getMaxClusterSize());
+        assertEquals(maxSquareSize, session.getMaxSquareSize());
+    }
+
+    @Test
+    void evaluatesSquaresAndClustersJoinedByCandidates() {
+        TileMetricsSession session = new TileMetricsSession();
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 11; x++) {
+                if (x != 5) {
+                    tiles.add(x, y);
+                }
+            }
+        }
+        session.addTiles(tiles);
+        assertEquals(2, session.getClusterCount());
+        assertEquals(9, session.getMaxClusterSize());
+        assertEquals(5, session.getMaxSquareSize());
+
+        TileSet gap = new TileSet();
+        for (int y = 0; y < 5; y++) {
+            gap.add(5, y);
+        }
+        TileMetricsGain gain = session.evaluate(gap);
+        assertEquals(5, gain.addedTiles());
+        assertEquals(9, gain.newClusterTiles());
+        assertEquals(27, gain.maxClusterSize());
+        assertEquals(18, gain.maxClusterGain());
+        assertEquals(5, gain.maxSquareSize());
+        assertEquals(0, gain.maxSquareGain());
+
+        assertEquals(0, session.evaluate(new TileSet()).maxClusterGain());
+        assertEquals(2, session.getClusterCount());
+    }
+
+    private HashSet<HashSet<Point>> asPointSets(ArrayList<TileSet> clusters) {
+        HashSet<HashSet<Point>> pointSets = new HashSet<HashSet<Point>>();
+        clusters.forEach(cluster -> pointSets.add(cluster.toPoints()));
+        return pointSets;
+    }
+}
@@ -0,0 +1,101 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+class TileMetricsSnapshotTest {
+    @Test
+    void restoresSessionOfTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        List<Point> points = JSON.std.listOfFrom(Point.class, content);
+        TileSet tiles = new TileSet(points);
+        TileMetricsSession session = new TileMetricsSession(tiles);
+
+        Path path = Files.createTempFile("session", ".bin");
+        try {
+            TileMetricsSnapshot.write(session, path);
+            TileMetricsSession restored = TileMetricsSnapshot.read(path, tiles.fingerprint());
+
+            assertEquals(session.getTiles(), restored.getTiles());
+            assertEquals(session.getClusterCount(), restored.getClusterCount());
+            assertEquals(session.getMaxClusterSize(), restored.getMaxClusterSize());
+            assertEquals(session.getMaxClusterCount(), restored.getMaxClusterCount());
+            assertEquals(session.getMaxSquareSize(), restored.getMaxSquareSize());
+            assertEquals(session.maxSquares(), restored.maxSquares());
+            assertEquals(new HashSet<TileSet>(session.clusters()), new HashSet<TileSet>(restored.clusters()));
+
+            TileSet batch = new TileSet();
+            for (int i = 0; i < 200; i++) {
+                batch.add(tiles.xAt(i) + 1, tiles.yAt(i) + 1);
+            }
+            TileMetricsUpdate expected = session.addTiles(batch);
+            TileMetricsUpdate actual = restored.addTiles(batch);
+            assertEquals(expected.newClusterTiles(), actual.newClusterTiles());
+            assertEquals(expected.maxClusterSize(), actual.maxClusterSize());
+            assertEquals(expected.maxSquares(), actual.maxSquares());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void restoresEmptySession() throws IOException {
+        Path path = Files.createTempFile("session", ".bin");
+        try {
+            TileMetricsSnapshot.write(new TileMetricsSession(), path);
+            TileMetricsSession restored = TileMetricsSnapshot.read(path);
+            assertTrue(restored.getTiles().isEmpty());
+            assertEquals(0, restored.getClusterCount());
+            assertTrue(restored.maxSquares().isEmpty());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void rejectsOtherTilesAndDamagedSnapshots() throws IOException {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                tiles.add(x, y);
+            }
+        }
+        TileSet other = new TileSet();
+        other.add(1, 1);
+
+        Path path = Files.createTempFile("session", ".bin");
+        try {
+            TileMetricsSnapshot.write(new TileMetricsSession(tiles), path);
+            assertThrows(IOException.class, () -> TileMetricsSnapshot.read(path, other.fingerprint()));
+
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(path, bytes);
+            assertThrows(IOException.class, () -> TileMetricsSnapshot.read(path));
+
+            bytes[bytes.length - 1] ^= 1;
+            bytes[45] ^= 1;
+            Files.write(path, bytes);
+            assertThrows(IOException.class, () -> TileMetricsSnapshot.read(path, tiles.fingerprint()));
+
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+            assertThrows(IOException.class, () -> TileMetricsSnapshot.read(path));
+
+            Files.write(path, "{}".getBytes());
+            assertThrows(IOException.class, () -> TileMetricsSnapshot.read(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
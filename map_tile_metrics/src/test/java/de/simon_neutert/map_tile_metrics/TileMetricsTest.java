@@ -0,0 +1,130 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+class TileMetricsTest {
+    @Test
+    void matchesSeparateCalculationsForTestData() throws IOException {
+        for (String file : new String[] { "test_data.json", "test_data3.json", "test_data_micro.json" }) {
+            String content = new String(Files.readAllBytes(Paths.get("src/test/resources/" + file)));
+            assertMatchesSeparateCalculations(new TileSet(JSON.std.listOfFrom(Point.class, content)));
+        }
+    }
+
+    @Test
+    void matchesSeparateCalculationsOnRandomTiles() {
+        Random random = new Random(11);
+        for (int round = 0; round < 10; round++) {
+            TileSet tiles = new TileSet();
+            for (int i = 0; i < 50; i++) {
+                for (int j = 0; j < 50; j++) {
+                    if (random.nextInt(10) < 7 + round % 4) {
+                        tiles.add(i, j);
+                    }
+                }
+            }
+            assertMatchesSeparateCalculations(tiles);
+        }
+    }
+
+    @Test
+    void ordersClustersByFirstTile() {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                tiles.add(x + 10, y);
+                tiles.add(x, y + 1);
+            }
+        }
+
+        TileMetricsResult result = new TileMetrics(tiles).calculate();
+        assertEquals(2, result.clusters().size());
+        assertTrue(result.clusters().get(0).contains(11, 1));
+        assertTrue(result.clusters().get(1).contains(1, 2));
+        assertEquals(1, result.maxClusterSize());
+        assertEquals(2, result.maxClusters().size());
+        assertEquals(0, result.maxSquareSize());
+        assertTrue(result.maxSquares().isEmpty());
+    }
+
+    @Test
+    void handlesEmptyTiles() {
+        TileMetricsResult result = new TileMetrics(new TileSet()).calculate();
+        assertTrue(result.clusters().isEmpty());
+        assertTrue(result.maxClusters().isEmpty());
+        assertEquals(0, result.maxClusterSize());
+        assertTrue(result.maxSquares().isEmpty());
+    }
+
+    private void assertMatchesSeparateCalculations(TileSet tiles) {
+        HashMap<String, ArrayList<TileSet>> expectedClusters = new Clusters(tiles).calculateTiles();
+        ArrayList<HashMap<Point, Integer>> expectedSquares = new MaxSquares(expectedClusters.get("clusters"), tiles)
+                .calculate();
+
+        TileMetricsResult result = new TileMetrics(tiles).calculate();
+        assertEquals(new HashSet<TileSet>(expectedClusters.get("clusters")), new HashSet<TileSet>(result.clusters()));
+        assertEquals(new HashSet<TileSet>(expectedClusters.get("maxClusters")),
+                new HashSet<TileSet>(result.maxClusters()));
+        assertEquals(expectedSquares, result.maxSquares());
+    }
+
+    @Test
+    void reportsWithinRowsAndWhileCollecting() {
+        TileSet tiles = new TileSet();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 1000; x++) {
+                tiles.add(x, y);
+            }
+        }
+        int[] rowsScanned = new int[1];
+        int[] checks = new int[1];
+        TileMetrics.ScanListener listener = new TileMetrics.ScanListener() {
+            public void rowScanned(int row, DisjointSets clusterSets, SquareScan squares) {
+                rowsScanned[0]++;
+            }
+
+            public void tilesScanned() {
+                checks[0]++;
+            }
+        };
+
+        TileMetrics metrics = new TileMetrics(tiles);
+        TileMetrics.Scan scan = metrics.scan(listener);
+        assertEquals(3, rowsScanned[0]);
+        assertEquals(3000 / TileMetrics.CHECK_INTERVAL, checks[0]);
+
+        checks[0] = 0;
+        assertEquals(998, metrics.collect(scan, listener).maxClusterSize());
+        assertEquals(3000 / TileMetrics.CHECK_INTERVAL, checks[0]);
+    }
+
+    @Test
+    void answersThresholdQueriesForTestData() throws IOException {
+        for (String file : new String[] { "test_data.json", "test_data3.json", "test_data_micro.json" }) {
+            String content = new String(Files.readAllBytes(Paths.get("src/test/resources/" + file)));
+            TileMetrics metrics = new TileMetrics(new TileSet(JSON.std.listOfFrom(Point.class, content)));
+            TileMetricsResult result = metrics.calculate();
+            int maxSquareSize = result.maxSquareSize();
+            assertTrue(maxSquareSize >= MaxSquares.MIN_SQUARE_SIZE);
+
+            assertTrue(metrics.hasSquareAtLeast(maxSquareSize));
+            assertTrue(metrics.hasSquareAtLeast(1));
+            assertFalse(metrics.hasSquareAtLeast(maxSquareSize + 1));
+            assertEquals(result.maxSquares(), metrics.squaresAtLeast(maxSquareSize));
+            assertEquals(result.maxSquares(), metrics.squaresAtLeast(0));
+            assertTrue(metrics.squaresAtLeast(maxSquareSize + 1).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+
+class TilePyramidTest {
+    @Test
+    void derivesCoarserLevelsFromTestData() throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/test_data.json")));
+        TileSet tiles = new TileSet(JSON.std.listOfFrom(Point.class, content));
+
+        TilePyramid pyramid = new TilePyramid(tiles, 17);
+        HashMap<Integer, TileMetricsResult> results = pyramid.calculate(17, 15, 14);
+        assertEquals(3, results.size());
+
+        for (int zoom : new int[] { 17, 15, 14 }) {
+            int shift = 17 - zoom;
+            TileSet expected = new TileSet();
+            tiles.forEach((x, y) -> expected.add(x >> shift, y >> shift));
+            assertEquals(expected, pyramid.tiles(zoom));
+
+            TileMetricsResult direct = new TileMetrics(expected).calculate();
+            assertEquals(new HashSet<TileSet>(direct.clusters()), new HashSet<TileSet>(results.get(zoom).clusters()));
+            assertEquals(direct.maxSquares(), results.get(zoom).maxSquares());
+        }
+    }
+
+    @Test
+    void countsVisitedChildren() {
+        TileSet tiles = new TileSet();
+        tiles.add(0, 0);
+        tiles.add(1, 0);
+        tiles.add(1, 1);
+        tiles.add(2, 0);
+        tiles.add(7, 7);
+
+        TilePyramid pyramid = new TilePyramid(tiles, 3, TilePyramid.VisitRule.atLeast(2));
+        assertEquals(3, pyramid.visitedChildren(2, 0, 0));
+        assertEquals(1, pyramid.visitedChildren(2, 1, 0));
+        assertEquals(0, pyramid.visitedChildren(2, 2, 2));
+        assertEquals(5, pyramid.visitedChildren(0, 0, 0));
+
+        TileSet level2 = pyramid.tiles(2);
+        assertEquals(1, level2.size());
+        assertTrue(level2.contains(0, 0));
+        assertEquals(1, pyramid.tiles(1).size());
+        assertEquals(1, pyramid.visitedChildren(1, 1, 1));
+        assertEquals(tiles, pyramid.tiles(3));
+    }
+
+    @Test
+    void appliesShareRule() {
+        TileSet tiles = new TileSet();
+        tiles.add(0, 0);
+        tiles.add(1, 0);
+        tiles.add(4, 0);
+
+        TilePyramid pyramid = new TilePyramid(tiles, 5, TilePyramid.VisitRule.share(0.5));
+        TileSet level4 = pyramid.tiles(4);
+        assertEquals(1, level4.size());
+        assertTrue(level4.contains(0, 0));
+        assertTrue(pyramid.tiles(2).isEmpty());
+    }
+
+    @Test
+    void ignoresChangesToTheGivenTiles() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 1);
+        TilePyramid pyramid = new TilePyramid(tiles, 17);
+        tiles.add(5, 5);
+
+        assertEquals(1, pyramid.tiles(17).size());
+        assertEquals(1, pyramid.tiles(16).size());
+        assertEquals(0, pyramid.visitedChildren(16, 2, 2));
+
+        pyramid.tiles(17).add(7, 7);
+        assertFalse(pyramid.tiles(17).contains(7, 7));
+    }
+
+    @Test
+    void rejectsLevelsOutsideThePyramid() {
+        TilePyramid pyramid = new TilePyramid(new TileSet(), 17);
+        assertThrows(IllegalArgumentException.class, () -> pyramid.tiles(18));
+        assertThrows(IllegalArgumentException.class, () -> pyramid.tiles(-1));
+        assertTrue(pyramid.tiles(0).isEmpty());
+    }
+}
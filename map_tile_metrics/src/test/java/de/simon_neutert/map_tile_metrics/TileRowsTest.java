@@ -0,0 +1,56 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileRowsTest {
+    @Test
+    void sortsTilesIntoRows() {
+        TileSet tiles = new TileSet();
+        tiles.add(5, 3);
+        tiles.add(1, 0);
+        tiles.add(2, 3);
+        tiles.add(0, 0);
+        tiles.add(9, 7);
+
+        TileRows rows = new TileRows(tiles);
+        assertEquals(5, rows.size());
+        assertEquals(3, rows.rowCount());
+
+        assertEquals(0, rows.rowY(0));
+        assertEquals(0, rows.rowStart(0));
+        assertEquals(2, rows.rowEnd(0));
+        assertEquals(0, rows.xAt(0));
+        assertEquals(1, rows.xAt(1));
+
+        assertEquals(3, rows.rowY(1));
+        assertEquals(2, rows.xAt(2));
+        assertEquals(5, rows.xAt(3));
+
+        assertEquals(7, rows.rowY(2));
+        assertEquals(5, rows.rowEnd(2));
+    }
+
+    @Test
+    void looksUpTiles() {
+        TileSet tiles = new TileSet();
+        tiles.add(5, 3);
+        tiles.add(2, 3);
+
+        TileRows rows = new TileRows(tiles);
+        assertTrue(rows.contains(5, 3));
+        assertFalse(rows.contains(3, 3));
+        assertFalse(rows.contains(-1, 3));
+        assertEquals(1, rows.indexOf(5, 3));
+        assertEquals(-1, rows.indexOf(4, 3));
+        assertEquals(tiles, rows.toTileSet());
+    }
+
+    @Test
+    void handlesEmptyTiles() {
+        TileRows rows = new TileRows(new TileSet());
+        assertEquals(0, rows.size());
+        assertEquals(0, rows.rowCount());
+    }
+}
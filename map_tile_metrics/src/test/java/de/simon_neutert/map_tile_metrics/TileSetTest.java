@@ -0,0 +1,91 @@
+package de.simon_neutert.map_tile_metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+
+class TileSetTest {
+    @Test
+    void addAndContains() {
+        TileSet tiles = new TileSet();
+        assertTrue(tiles.isEmpty());
+        assertTrue(tiles.add(1, 2));
+        assertFalse(tiles.add(1, 2));
+        assertTrue(tiles.add(new Point(2, 1)));
+
+        assertEquals(2, tiles.size());
+        assertTrue(tiles.contains(1, 2));
+        assertTrue(tiles.contains(new Point(2, 1)));
+        assertFalse(tiles.contains(2, 2));
+    }
+
+    @Test
+    void negativeCoordinatesAreNeverContained() {
+        TileSet tiles = new TileSet();
+        tiles.add(0, 0);
+        assertFalse(tiles.contains(-1, 0));
+        assertFalse(tiles.contains(0, -1));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            tiles.add(-1, 0);
+        });
+        assertEquals("x and y must be positive", exception.getMessage());
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        TileSet tiles = new TileSet(2);
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                tiles.add(i, j);
+            }
+        }
+        assertEquals(90000, tiles.size());
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                assertTrue(tiles.contains(i, j));
+            }
+        }
+        assertFalse(tiles.contains(300, 0));
+        assertEquals(0, tiles.indexOf(0, 0));
+        assertEquals(89999, tiles.indexOf(299, 299));
+    }
+
+    @Test
+    void packedKeysSortRowMajor() {
+        assertTrue(TileSet.pack(5, 1) < TileSet.pack(0, 2));
+        assertTrue(TileSet.pack(1, 2) < TileSet.pack(2, 2));
+        long key = TileSet.pack(34254, 22223);
+        assertEquals(34254, TileSet.x(key));
+        assertEquals(22223, TileSet.y(key));
+    }
+
+    @Test
+    void convertsFromAndToPoints() {
+        HashSet<Point> points = new HashSet<Point>();
+        points.add(new Point(0, 0));
+        points.add(new Point(7, 3));
+        points.add(new Point(131071, 131071));
+
+        TileSet tiles = new TileSet(points);
+        assertEquals(3, tiles.size());
+        assertEquals(points, tiles.toPoints());
+    }
+
+    @Test
+    void equalityIgnoresInsertionOrder() {
+        TileSet tiles = new TileSet();
+        tiles.add(1, 1);
+        tiles.add(2, 1);
+        TileSet other = new TileSet();
+        other.add(2, 1);
+        other.add(1, 1);
+
+        assertEquals(tiles, other);
+        assertEquals(tiles.hashCode(), other.hashCode());
+        other.add(3, 1);
+        assertNotEquals(tiles, other);
+    }
+}
@@ -0,0 +1,118 @@
+package de.simon_neutert.map_tile_metrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simon_neutert.map_tile_metrics.Clusters;
+import de.simon_neutert.map_tile_metrics.MaxSquares;
+import de.simon_neutert.map_tile_metrics.ParallelTileMetrics;
+import de.simon_neutert.map_tile_metrics.Point;
+import de.simon_neutert.map_tile_metrics.TileBitmap;
+import de.simon_neutert.map_tile_metrics.TileMetrics;
+import de.simon_neutert.map_tile_metrics.TileMetricsResult;
+import de.simon_neutert.map_tile_metrics.TileMetricsSession;
+import de.simon_neutert.map_tile_metrics.TileSet;
+
+/**
+ * Benchmarks every metric engine on the test_data*.json fixtures, the same
+ * inputs the tests verify the results with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixtureBenchmark {
+    @Param({ "test_data.json", "test_data3.json", "test_data_micro.json" })
+    public String fixture;
+
+    private HashSet<Point> points;
+    private ArrayList<HashSet<Point>> pointClusters;
+    private TileSet tiles;
+    private ArrayList<TileSet> tileClusters;
+    private TileBitmap bitmap;
+    private TileBitmap bitmapClusterTiles;
+
+    @Setup
+    public void setUp() {
+        points = Fixtures.load(fixture);
+        pointClusters = new Clusters(points).calculate().get("clusters");
+        tiles = new TileSet(points);
+        tileClusters = new Clusters(tiles).calculateTiles().get("clusters");
+        bitmap = new TileBitmap(tiles);
+        bitmapClusterTiles = bitmap.clusterTiles();
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<HashSet<Point>>> clustersOnPoints() {
+        return new Clusters(points).calculate();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> maxSquaresOnPoints() {
+        return new MaxSquares(pointClusters, points).calculate();
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<TileSet>> clustersOnTileSet() {
+        return new Clusters(tiles).calculateTiles();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> maxSquaresOnTileSet() {
+        return new MaxSquares(tileClusters, tiles).calculate();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> parallelMetrics() {
+        ParallelTileMetrics metrics = new ParallelTileMetrics(tiles);
+        metrics.calculateClusters();
+        return metrics.calculateMaxSquares();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> separateMetricsOnTileSet() {
+        HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+        return new MaxSquares(clusters.get("clusters"), tiles).calculate();
+    }
+
+    @Benchmark
+    public TileMetricsResult fusedMetrics() {
+        return new TileMetrics(tiles).calculate();
+    }
+
+    @Benchmark
+    public TileMetricsSession sessionFromScratch() {
+        return new TileMetricsSession(tiles);
+    }
+
+    @Benchmark
+    public TileSet loadTileSet() {
+        return new TileSet(points);
+    }
+
+    @Benchmark
+    public TileBitmap clusterTilesOnBitmap() {
+        return bitmap.clusterTiles();
+    }
+
+    @Benchmark
+    public TileBitmap borderOnBitmap() {
+        return bitmapClusterTiles.expandBorder(bitmap);
+    }
+}
@@ -0,0 +1,31 @@
+package de.simon_neutert.map_tile_metrics.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import de.simon_neutert.map_tile_metrics.Point;
+
+/**
+ * Loads the test_data*.json fixtures of the library tests from the classpath.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static HashSet<Point> load(String name) {
+        try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown fixture " + name);
+            }
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return new HashSet<Point>(JSON.std.listOfFrom(Point.class, content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package de.simon_neutert.map_tile_metrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simon_neutert.map_tile_metrics.Clusters;
+import de.simon_neutert.map_tile_metrics.MaxSquares;
+import de.simon_neutert.map_tile_metrics.ParallelTileMetrics;
+import de.simon_neutert.map_tile_metrics.Point;
+import de.simon_neutert.map_tile_metrics.TileSet;
+
+/**
+ * Sweeps the size of a {@link TilePattern#REGION} up to a million tiles. The
+ * gc profiler configured in build.gradle reports the allocation rate next to
+ * the time, so the growth of both can be compared across sizes. The HashSet
+ * based path is left out, it does not finish the larger sizes in reasonable
+ * time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ScalingBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int size;
+
+    private TileSet tiles;
+
+    @Setup
+    public void setUp() {
+        tiles = TilePattern.REGION.generate(size, 17);
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> tileSetMetrics() {
+        HashMap<String, ArrayList<TileSet>> clusters = new Clusters(tiles).calculateTiles();
+        return new MaxSquares(clusters.get("clusters"), tiles).calculate();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> parallelMetrics() {
+        ParallelTileMetrics metrics = new ParallelTileMetrics(tiles);
+        metrics.calculateClusters();
+        return metrics.calculateMaxSquares();
+    }
+}
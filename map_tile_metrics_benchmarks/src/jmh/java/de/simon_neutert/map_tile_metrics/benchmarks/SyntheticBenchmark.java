@@ -0,0 +1,82 @@
+package de.simon_neutert.map_tile_metrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simon_neutert.map_tile_metrics.Clusters;
+import de.simon_neutert.map_tile_metrics.MaxSquares;
+import de.simon_neutert.map_tile_metrics.ParallelTileMetrics;
+import de.simon_neutert.map_tile_metrics.Point;
+import de.simon_neutert.map_tile_metrics.TileSet;
+
+/**
+ * Benchmarks the metric engines on every synthetic {@link TilePattern}, to see
+ * how the shape of the input changes the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyntheticBenchmark {
+    @Param({ "SOLID_SQUARE", "RANDOM_WALK", "SPARSE_NOISE", "REGION" })
+    public TilePattern pattern;
+
+    @Param({ "10000", "100000" })
+    public int size;
+
+    private HashSet<Point> points;
+    private ArrayList<HashSet<Point>> pointClusters;
+    private TileSet tiles;
+    private ArrayList<TileSet> tileClusters;
+
+    @Setup
+    public void setUp() {
+        tiles = pattern.generate(size, 17);
+        tileClusters = new Clusters(tiles).calculateTiles().get("clusters");
+        points = tiles.toPoints();
+        pointClusters = new Clusters(points).calculate().get("clusters");
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<HashSet<Point>>> clustersOnPoints() {
+        return new Clusters(points).calculate();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> maxSquaresOnPoints() {
+        return new MaxSquares(pointClusters, points).calculate();
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<TileSet>> clustersOnTileSet() {
+        return new Clusters(tiles).calculateTiles();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> maxSquaresOnTileSet() {
+        return new MaxSquares(tileClusters, tiles).calculate();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Point, Integer>> parallelMetrics() {
+        ParallelTileMetrics metrics = new ParallelTileMetrics(tiles);
+        metrics.calculateClusters();
+        return metrics.calculateMaxSquares();
+    }
+}
@@ -0,0 +1,111 @@
+package de.simon_neutert.map_tile_metrics.benchmarks;
+
+import java.util.Random;
+
+import de.simon_neutert.map_tile_metrics.TileSet;
+
+/**
+ * Synthetic tile sets to benchmark against.
+ *
+ * <p>
+ * Every pattern is generated from a fixed seed, so all runs of a benchmark see
+ * the same tiles. The tiles are placed away from the x=0/y=0 edge.
+ * </p>
+ */
+public enum TilePattern {
+    /**
+     * One solid square, a single cluster and a single max square.
+     */
+    SOLID_SQUARE {
+        @Override
+        TileSet generate(int tileCount, Random random) {
+            int side = (int) Math.ceil(Math.sqrt(tileCount));
+            TileSet tiles = new TileSet(side * side);
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    tiles.add(ORIGIN + x, ORIGIN + y);
+                }
+            }
+            return tiles;
+        }
+    },
+    /**
+     * Tracks of a random walk with momentum, painted with a three tile wide
+     * brush. Resembles the history of an explorer: long thin tracks, some of
+     * them overlapping into small clusters.
+     */
+    RANDOM_WALK {
+        @Override
+        TileSet generate(int tileCount, Random random) {
+            TileSet tiles = new TileSet(tileCount);
+            int x = ORIGIN * 4;
+            int y = ORIGIN * 4;
+            int direction = 0;
+            while (tiles.size() < tileCount) {
+                if (random.nextInt(8) == 0) {
+                    direction = random.nextInt(4);
+                }
+                x += direction == 0 ? 1 : direction == 1 ? -1 : 0;
+                y += direction == 2 ? 1 : direction == 3 ? -1 : 0;
+                x = Math.max(x, 1);
+                y = Math.max(y, 1);
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        tiles.add(x + dx, y + dy);
+                    }
+                }
+            }
+            return tiles;
+        }
+    },
+    /**
+     * Isolated random tiles covering a tenth of a square area, almost no
+     * clusters at all.
+     */
+    SPARSE_NOISE {
+        @Override
+        TileSet generate(int tileCount, Random random) {
+            int side = (int) Math.ceil(Math.sqrt(tileCount * 10.0));
+            TileSet tiles = new TileSet(tileCount);
+            while (tiles.size() < tileCount) {
+                tiles.add(ORIGIN + random.nextInt(side), ORIGIN + random.nextInt(side));
+            }
+            return tiles;
+        }
+    },
+    /**
+     * A round region where nine out of ten tiles are visited, the shape of a
+     * well explored home area. Large sizes of this pattern model million tile
+     * regions.
+     */
+    REGION {
+        @Override
+        TileSet generate(int tileCount, Random random) {
+            int radius = (int) Math.ceil(Math.sqrt(tileCount / 0.9 / Math.PI));
+            TileSet tiles = new TileSet(tileCount);
+            for (int y = -radius; y <= radius && tiles.size() < tileCount; y++) {
+                for (int x = -radius; x <= radius && tiles.size() < tileCount; x++) {
+                    if (x * x + y * y <= radius * radius && random.nextInt(10) != 0) {
+                        tiles.add(ORIGIN + radius + x, ORIGIN + radius + y);
+                    }
+                }
+            }
+            return tiles;
+        }
+    };
+
+    private static final int ORIGIN = 1000;
+
+    /**
+     * Generates about the given number of tiles of this pattern.
+     *
+     * @param tileCount the number of tiles to generate
+     * @param seed      the seed of the random generator
+     * @return the generated tiles
+     */
+    public TileSet generate(int tileCount, long seed) {
+        return generate(tileCount, new Random(seed));
+    }
+
+    abstract TileSet generate(int tileCount, Random random);
+}